@@ -0,0 +1,168 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A message broadcast to the subscribers of a group of events, possibly through the nodes of a cluster.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public final class BroadcastMessage implements Serializable {
+
+    static private final long serialVersionUID = 1L;
+
+    /**
+     * The REGEX pattern used to split a whitespace separated list of event names.
+     */
+    static private final Pattern WHITESPACE_SEPARATED_LIST_PATTERN = Pattern.compile("\\s+");
+
+    /**
+     * The name of the group of events.
+     */
+    private final String group;
+
+    /**
+     * The space separated list of event names.
+     */
+    private final String events;
+
+    /**
+     * The markup rendered by the publisher, by client ID of the updated component.
+     */
+    private final LinkedHashMap<String, String> updates;
+
+    /**
+     * The names of the events without the keys of the rows they target, computed once for all the subscribers.
+     */
+    private transient volatile List<String> eventNames;
+
+    /**
+     * Constructs a message.
+     *
+     * @param group the name of the group of events.
+     * @param events the space separated list of event names.
+     */
+    public BroadcastMessage(String group, String events) {
+        this(group, events, Collections.emptyMap());
+    }
+
+    /**
+     * Constructs a message that carries the markup of the updated components, so that the client applies it instead of
+     * sending a request to render them.
+     *
+     * @param group the name of the group of events.
+     * @param events the space separated list of event names.
+     * @param updates the markup of the updated components, by client ID.
+     */
+    public BroadcastMessage(String group, String events, Map<String, String> updates) {
+        this.group = group;
+        this.events = events;
+        this.updates = new LinkedHashMap<>(updates);
+    }
+
+    /**
+     * Gets the name of the group of events.
+     *
+     * @return the name of the group.
+     */
+    public String getGroup() {
+        return this.group;
+    }
+
+    /**
+     * Gets the space separated list of event names.
+     *
+     * @return the event names.
+     */
+    public String getEvents() {
+        return this.events;
+    }
+
+    /**
+     * Gets the names of the events, without the keys of the rows they target: an event name may be followed by '@' and
+     * the key of a row.
+     *
+     * @return the event names.
+     */
+    public List<String> getEventNames() {
+        List<String> names = this.eventNames;
+
+        if (names == null) {
+            names = Collections.unmodifiableList(Arrays.stream(WHITESPACE_SEPARATED_LIST_PATTERN.split(events.trim()))
+                    .map(name -> name.indexOf('@') > 0 ? name.substring(0, name.indexOf('@')) : name)
+                    .collect(Collectors.toList()));
+            this.eventNames = names;
+        }
+
+        return names;
+    }
+
+    /**
+     * Gets the markup of the updated components.
+     *
+     * @return the markup by client ID, empty if the message carries no update.
+     */
+    public Map<String, String> getUpdates() {
+        return Collections.unmodifiableMap(this.updates);
+    }
+
+    /**
+     * Merges a later message of the same group into this one.
+     *
+     * @param later the later message.
+     * @return the merged message, whose events are the events of both messages without duplicates, and whose updates
+     * are the updates of both messages, the later ones overriding the earlier ones; it carries no update if any of
+     * the messages carries none, since the client must then render the components itself.
+     */
+    BroadcastMessage merge(BroadcastMessage later) {
+        Set<String> names = new LinkedHashSet<>();
+
+        for (String list : new String[] {this.events, later.events}) {
+            if (!list.trim().isEmpty()) {
+                names.addAll(Arrays.asList(WHITESPACE_SEPARATED_LIST_PATTERN.split(list.trim())));
+            }
+        }
+
+        Map<String, String> merged = new LinkedHashMap<>();
+
+        if (!this.updates.isEmpty() && !later.updates.isEmpty()) {
+            merged.putAll(this.updates);
+            merged.putAll(later.updates);
+        }
+
+        return new BroadcastMessage(group, String.join(" ", names), merged);
+    }
+}
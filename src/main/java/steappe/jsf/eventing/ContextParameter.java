@@ -0,0 +1,177 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.util.Optional;
+import javax.faces.context.FacesContext;
+import javax.servlet.ServletContext;
+
+/**
+ * The context parameters of the eventing framework, declared in the deployment descriptor of the web application.
+ * <p>
+ * The name of a context parameter is the name of the enum constant prefixed by "steappe.jsf.eventing.", e.g.
+ * "steappe.jsf.eventing.DELEGATED_PRODUCERS".
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public enum ContextParameter {
+
+    /**
+     * Whether the event producers are rendered as data attributes handled by a delegated listener, rather than as
+     * inline scripts. It defaults to false.
+     */
+    DELEGATED_PRODUCERS,
+
+    /**
+     * Whether the event stream servlet serves the event streams. It defaults to false: the servlet declared in the web
+     * fragment of the library answers 404 (Not Found), so that the applications that do not push events expose no
+     * endpoint.
+     */
+    EVENT_STREAM,
+
+    /**
+     * The name of the class of the authorizer of the subscriptions of the event streams. When absent, the first
+     * authorizer provided as a service is used, or else the one that only accepts the clients of an existing session.
+     */
+    EVENT_STREAM_AUTHORIZER,
+
+    /**
+     * The interval, in seconds, between two heartbeats sent on the idle event streams. It defaults to 20 seconds.
+     */
+    EVENT_STREAM_HEARTBEAT,
+
+    /**
+     * The number of published messages kept to resume the event streams from their last event ID. It defaults to
+     * 1024 messages.
+     */
+    EVENT_STREAM_HISTORY,
+
+    /**
+     * The name of the class of the backplane that shares the published messages between the nodes of a cluster.
+     * When absent, the first backplane provided as a service is used, or else a loopback backplane.
+     */
+    EVENT_BACKPLANE,
+
+    /**
+     * The exporter of the traces of the requests sent by the event observers: "log", "file", or the name of a class
+     * implementing {@link TraceExporter}. When absent, the requests are not traced.
+     */
+    TRACE_EXPORTER,
+
+    /**
+     * The path of the file the traces are appended to by the "file" trace exporter. It defaults to
+     * "steappe-eventing-traces.jsonl" in the temporary directory of the JVM.
+     */
+    TRACE_FILE,
+
+    /**
+     * Whether the action listeners of the parallel event observers run on worker threads. It defaults to false: their
+     * listeners run on the request thread, like the ones of the other event observers, because the request and session
+     * contexts of CDI are not active on the worker threads.
+     */
+    PARALLEL_LISTENERS,
+
+    /**
+     * The number of threads running the action listeners of the parallel event observers, on the JVMs without virtual
+     * threads. It defaults to twice the number of processors.
+     */
+    PARALLEL_LISTENER_THREADS;
+
+    /**
+     * The prefix of the names of the context parameters.
+     */
+    static private final String PREFIX = "steappe.jsf.eventing.";
+
+    /**
+     * Gets the name of this context parameter.
+     *
+     * @return the name of the context parameter.
+     */
+    public String getName() {
+        return PREFIX + name();
+    }
+
+    /**
+     * Gets the value of this context parameter.
+     *
+     * @param context the faces context.
+     * @return the optional value of the context parameter.
+     */
+    public Optional<String> getValue(FacesContext context) {
+        return normalize(context.getExternalContext().getInitParameter(getName()));
+    }
+
+    /**
+     * Gets the value of this context parameter outside of a faces request.
+     *
+     * @param context the servlet context.
+     * @return the optional value of the context parameter.
+     */
+    public Optional<String> getValue(ServletContext context) {
+        return normalize(context.getInitParameter(getName()));
+    }
+
+    /**
+     * Indicates whether this boolean context parameter is enabled.
+     *
+     * @param context the faces context.
+     * @return true if the value of the context parameter is "true", false if it is another value or if it is absent.
+     */
+    public boolean isEnabled(FacesContext context) {
+        return getValue(context).map(Boolean::parseBoolean).orElse(false);
+    }
+
+    /**
+     * Indicates whether this boolean context parameter is enabled, outside of a faces request.
+     *
+     * @param context the servlet context.
+     * @return true if the value of the context parameter is "true", false if it is another value or if it is absent.
+     */
+    public boolean isEnabled(ServletContext context) {
+        return getValue(context).map(Boolean::parseBoolean).orElse(false);
+    }
+
+    /**
+     * Gets the value of this integer context parameter outside of a faces request.
+     *
+     * @param context the servlet context.
+     * @param defaultValue the value to return when the context parameter is absent.
+     * @return the value of the context parameter, or the default value.
+     * @throws NumberFormatException if the value of the context parameter is not an integer.
+     */
+    public int getInt(ServletContext context, int defaultValue) {
+        return getValue(context).map(Integer::valueOf).orElse(defaultValue);
+    }
+
+    /**
+     * Normalizes the raw value of a context parameter.
+     *
+     * @param value the raw value, possibly null.
+     * @return the trimmed value, or nothing if the raw value is null or blank.
+     */
+    static private Optional<String> normalize(String value) {
+        return Optional.ofNullable(value).map(String::trim).filter(trimmed -> !trimmed.isEmpty());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.util.function.Consumer;
+
+/**
+ * The backplane that shares the broadcast messages between the nodes of a cluster.
+ * <p>
+ * The implementation is the one named by the context parameter EVENT_BACKPLANE, or else the first one found with
+ * {@link java.util.ServiceLoader} (META-INF/services/steappe.jsf.eventing.EventBackplane), or else the
+ * {@link LoopbackBackplane}, which does not leave the node.
+ * <p>
+ * A backplane delivers every sent message to the receivers of all the nodes, the sending node included.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public interface EventBackplane {
+
+    /**
+     * Starts this backplane.
+     *
+     * @param receiver the receiver of the messages sent by any node, this one included.
+     */
+    void start(Consumer<BroadcastMessage> receiver);
+
+    /**
+     * Sends a message to all the nodes.
+     *
+     * @param message the message to send.
+     */
+    void send(BroadcastMessage message);
+
+    /**
+     * Stops this backplane: the receiver given at start receives no more message.
+     */
+    void stop();
+}
@@ -0,0 +1,654 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.faces.FacesException;
+import javax.faces.context.FacesContext;
+import javax.faces.context.ResponseWriter;
+import javax.servlet.ServletContext;
+
+/**
+ * The broadcaster of the server-side events of a web application.
+ * <p>
+ * A published message is sent through the backplane (see {@link EventBackplane}), which delivers it to the
+ * broadcasters of all the nodes. Each broadcaster then fans it out to its local subscribers of the group of the
+ * message. The subscriptions are sharded by group in a concurrent map, and the last delivered messages are kept in a
+ * lock-free ring so that the subscribers can resume from a known message ID.
+ * <p>
+ * The thread that delivers a message only assigns its ID, keeps it in the ring and appends it to the queue of its
+ * group, under a short lock of the group, without waiting for the subscribers. Each group has its own serial queue,
+ * drained by a shared pool of threads: the messages of a group are fanned out in the order of their IDs, and a slow
+ * subscriber only holds up the messages of its groups. The queue of a group is bounded: when it is full, a new message
+ * is merged into the last queued one, like the messages waiting to be written to a slow connection.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventBroadcaster {
+
+    static private final Logger LOGGER = Logger.getLogger(EventBroadcaster.class.getName());
+
+    /**
+     * The name of the servlet context attribute that holds the broadcaster.
+     */
+    static private final String ATTRIBUTE_NAME = EventBroadcaster.class.getName();
+
+    /**
+     * The maximum number of messages waiting in the queue of a group to be fanned out.
+     */
+    static final int MAX_QUEUED_MESSAGES = 256;
+
+    /**
+     * The maximum number of messages that a thread of the pool fans out for a group before it lets the other groups
+     * run.
+     */
+    static private final int MAX_FAN_OUT_BATCH = 64;
+
+    /**
+     * The groups of events that have subscribers, by name.
+     */
+    private final ConcurrentMap<String, Group> groups = new ConcurrentHashMap<>();
+
+    /**
+     * The ring of the last delivered messages.
+     */
+    private final AtomicReferenceArray<DeliveredMessage> history;
+
+    /**
+     * The ID of the last delivered message.
+     */
+    private final AtomicLong lastMessageId = new AtomicLong();
+
+    /**
+     * The ID below which all the delivered messages were fanned out to the subscribers.
+     */
+    private final AtomicLong fannedOutMessageId = new AtomicLong();
+
+    /**
+     * The pool of threads that drain the queues of the groups; it runs at most one task per group at a time.
+     */
+    private final ExecutorService fanOut;
+
+    /**
+     * The backplane shared with the other nodes.
+     */
+    private final EventBackplane backplane;
+
+    /**
+     * Constructs a broadcaster and starts its backplane.
+     *
+     * @param backplane the backplane shared with the other nodes.
+     * @param historyCapacity the number of delivered messages kept to resume the subscribers.
+     */
+    public EventBroadcaster(EventBackplane backplane, int historyCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        this.history = new AtomicReferenceArray<>(Math.max(1, historyCapacity));
+        this.fanOut = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "steappe-eventing-fanout-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.backplane = backplane;
+        this.backplane.start(this::deliver);
+    }
+
+    /**
+     * Gets the broadcaster of a web application, and creates it if needed.
+     *
+     * @param context the servlet context of the web application.
+     * @return the broadcaster.
+     */
+    static public EventBroadcaster getInstance(ServletContext context) {
+        EventBroadcaster broadcaster = (EventBroadcaster) context.getAttribute(ATTRIBUTE_NAME);
+
+        if (broadcaster == null) {
+            synchronized (EventBroadcaster.class) {
+                broadcaster = (EventBroadcaster) context.getAttribute(ATTRIBUTE_NAME);
+
+                if (broadcaster == null) {
+                    int historyCapacity = ContextParameter.EVENT_STREAM_HISTORY.getInt(context, 1024);
+                    broadcaster = new EventBroadcaster(createBackplane(context), historyCapacity);
+                    context.setAttribute(ATTRIBUTE_NAME, broadcaster);
+                }
+            }
+        }
+
+        return broadcaster;
+    }
+
+    /**
+     * Gets the broadcaster of the current web application, and creates it if needed.
+     *
+     * @param context the faces context.
+     * @return the broadcaster.
+     */
+    static public EventBroadcaster getInstance(FacesContext context) {
+        return getInstance((ServletContext) context.getExternalContext().getContext());
+    }
+
+    /**
+     * Destroys the broadcaster of a web application, if any: it is stopped.
+     *
+     * @param context the servlet context of the web application.
+     */
+    static void destroy(ServletContext context) {
+        synchronized (EventBroadcaster.class) {
+            Optional.ofNullable((EventBroadcaster) context.getAttribute(ATTRIBUTE_NAME)).ifPresent(broadcaster -> {
+                context.removeAttribute(ATTRIBUTE_NAME);
+                broadcaster.stop();
+            });
+        }
+    }
+
+    /**
+     * Stops this broadcaster: its backplane is stopped, and the messages it delivers are no longer fanned out.
+     */
+    void stop() {
+        backplane.stop();
+        fanOut.shutdownNow();
+    }
+
+    /**
+     * Creates the backplane of a web application.
+     *
+     * @param context the servlet context of the web application.
+     * @return the backplane named by the context parameter, or else the first one provided as a service, or else a
+     * loopback backplane.
+     */
+    static private EventBackplane createBackplane(ServletContext context) {
+        Optional<String> className = ContextParameter.EVENT_BACKPLANE.getValue(context);
+        EventBackplane backplane;
+
+        if (className.isPresent()) {
+            try {
+                ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+                backplane = (EventBackplane) Class.forName(className.get(), true, classLoader).getDeclaredConstructor().newInstance();
+            }
+            catch (ReflectiveOperationException | ClassCastException e) {
+                throw new FacesException("cannot create the event backplane: " + className.get(), e);
+            }
+        }
+        else {
+            Iterator<EventBackplane> providers = ServiceLoader.load(EventBackplane.class).iterator();
+            backplane = providers.hasNext() ? providers.next() : new LoopbackBackplane();
+        }
+
+        return backplane;
+    }
+
+    /**
+     * Publishes a list of events to the subscribers of their group, on all the nodes.
+     *
+     * @param group the name of the group of events.
+     * @param events the space separated list of event names.
+     */
+    public void publish(String group, String events) {
+        backplane.send(new BroadcastMessage(group, events));
+    }
+
+    /**
+     * Publishes a list of events to the subscribers of their group, on all the nodes, with the markup of some
+     * components rendered once in the current view. The event observers marked as pushed apply the markup instead of
+     * sending a request to render these components, provided that it covers all their render targets.
+     *
+     * @param context the faces context, whose view holds the components to render.
+     * @param group the name of the group of events.
+     * @param events the space separated list of event names.
+     * @param clientIds the client IDs of the components to render.
+     */
+    public void publishRendered(FacesContext context, String group, String events, String... clientIds) {
+        backplane.send(new BroadcastMessage(group, events, renderUpdates(context, clientIds)));
+    }
+
+    /**
+     * Renders some components of the current view, e.g. to push their markup through a Web Socket along with the
+     * events, as an object whose 'events' property holds the event names and whose 'updates' property holds the map
+     * returned by this method.
+     * <p>
+     * The markup is shared by all the clients: the rendered components must not depend on the state of the view of
+     * the client nor on its user, and their client IDs must be the same in the views of all the clients.
+     *
+     * @param context the faces context, whose view holds the components to render.
+     * @param clientIds the client IDs of the components to render.
+     * @return the markup of the components, by client ID.
+     * @throws IllegalArgumentException if no component of the view has one of the client IDs.
+     */
+    static public Map<String, String> renderUpdates(FacesContext context, String... clientIds) {
+        Map<String, String> updates = new LinkedHashMap<>();
+        ResponseWriter responseWriter = context.getResponseWriter();
+
+        try {
+            for (String clientId : clientIds) {
+                StringWriter markup = new StringWriter(1024);
+                ResponseWriter writer = responseWriter != null ?
+                        responseWriter.cloneWithWriter(markup) :
+                        context.getRenderKit().createResponseWriter(markup, "text/html", "UTF-8");
+                context.setResponseWriter(writer);
+
+                boolean found = context.getViewRoot().invokeOnComponent(context, clientId, (ctx, component) -> {
+                    try {
+                        component.encodeAll(ctx);
+                        ctx.getResponseWriter().flush();
+                    }
+                    catch (IOException e) {
+                        throw new FacesException("cannot render the component: " + clientId, e);
+                    }
+                });
+
+                if (!found) {
+                    throw new IllegalArgumentException("no such component: " + clientId);
+                }
+
+                updates.put(clientId, markup.toString());
+            }
+        }
+        finally {
+            if (responseWriter != null) {
+                context.setResponseWriter(responseWriter);
+            }
+        }
+
+        return updates;
+    }
+
+    /**
+     * Subscribes to some groups of events.
+     *
+     * @param groups the names of the groups of events.
+     * @param subscriber the subscriber.
+     */
+    public void subscribe(Collection<String> groups, EventSubscriber subscriber) {
+        /**
+         * the subscriber is added within the update of the map, so that a concurrent unsubscription cannot remove the
+         * group as empty before it is added
+         */
+        groups.forEach(name ->
+                this.groups.compute(name, (key, group) -> {
+                    Group updated = group != null ? group : new Group();
+                    updated.subscribers.add(subscriber);
+                    return updated;
+                })
+        );
+    }
+
+    /**
+     * Unsubscribes from some groups of events.
+     *
+     * @param groups the names of the groups of events.
+     * @param subscriber the subscriber.
+     */
+    public void unsubscribe(Collection<String> groups, EventSubscriber subscriber) {
+        groups.forEach(name ->
+                this.groups.computeIfPresent(name, (key, group) -> {
+                    group.subscribers.remove(subscriber);
+                    return group.subscribers.isEmpty() ? null : group;
+                })
+        );
+    }
+
+    /**
+     * Gets the ID of the last delivered message.
+     *
+     * @return the ID of the last delivered message, or 0 if none.
+     */
+    public long getLastMessageId() {
+        return lastMessageId.get();
+    }
+
+    /**
+     * Gets the ID from which a subscriber that received a message can resume without missing any message: the groups
+     * are fanned out independently, so a message with a lower ID may still be waiting in the queue of another group.
+     *
+     * @param messageId the ID of the received message.
+     * @return the ID of the message if all the messages with a lower ID were fanned out, or else the ID below which
+     * all the messages were fanned out.
+     */
+    public long getResumeId(long messageId) {
+        long fannedOutId = fannedOutMessageId.get();
+        return fannedOutId >= messageId - 1 || fannedOutId >= lastMessageId.get() ? messageId : fannedOutId;
+    }
+
+    /**
+     * Delivers again to a subscriber the messages kept in the history whose ID is greater than a known ID.
+     * <p>
+     * The messages whose ID is not greater than the returned one may still be waiting for their fan-out: a subscriber
+     * subscribed before the replay receives them twice, and must ignore them. The later ones are not replayed: they
+     * are delivered by their fan-out.
+     *
+     * @param knownMessageId the ID of the last message known by the subscriber.
+     * @param groups the names of the groups of events subscribed by the subscriber.
+     * @param subscriber the subscriber.
+     * @return the ID of the last message such that the history held every message with a lower ID, unless it was
+     * already dropped from the history.
+     */
+    public long replay(long knownMessageId, Collection<String> groups, EventSubscriber subscriber) {
+        long lastId = lastMessageId.get();
+        long firstId = Math.max(knownMessageId + 1, lastId - history.length() + 1);
+
+        for (long id = firstId; id <= lastId; id++) {
+            DeliveredMessage delivered = history.get(slot(id));
+
+            if (delivered == null || delivered.id < id) {
+                /**
+                 * the message has its ID but is not in the history yet
+                 */
+                return id - 1;
+            }
+
+            if (delivered.id == id && groups.contains(delivered.message.getGroup())) {
+                subscriber.deliver(id, delivered.message);
+            }
+        }
+
+        return lastId;
+    }
+
+    /**
+     * Gets the slot of the ring that keeps a message.
+     *
+     * @param id the ID of the message.
+     * @return the index of the slot.
+     */
+    private int slot(long id) {
+        return (int) (id % history.length());
+    }
+
+    /**
+     * Delivers a message received from the backplane to the local subscribers of its group.
+     *
+     * @param message the message.
+     */
+    private void deliver(BroadcastMessage message) {
+        Group group = groups.get(message.getGroup());
+
+        if (group == null) {
+            fannedOut(Collections.singletonList(keep(message)));
+            return;
+        }
+
+        boolean started;
+
+        /**
+         * the ID is assigned within the lock of the group, so that the messages of the group are queued in the order
+         * of their IDs
+         */
+        synchronized (group) {
+            started = group.enqueue(keep(message));
+        }
+
+        if (started) {
+            try {
+                fanOut.execute(() -> drain(group));
+            }
+            catch (RejectedExecutionException e) {
+                /**
+                 * the broadcaster is stopped: the message is no longer fanned out
+                 */
+            }
+        }
+    }
+
+    /**
+     * Assigns its ID to a delivered message, and keeps it in the ring.
+     *
+     * @param message the message.
+     * @return the message with its ID.
+     */
+    private DeliveredMessage keep(BroadcastMessage message) {
+        DeliveredMessage delivered = new DeliveredMessage(lastMessageId.incrementAndGet(), message);
+        int slot = slot(delivered.id);
+        DeliveredMessage current;
+
+        /**
+         * a later message sharing the same slot may have been kept first, by a concurrent delivery
+         */
+        do {
+            current = history.get(slot);
+        }
+        while ((current == null || current.id < delivered.id) && !history.compareAndSet(slot, current, delivered));
+
+        return delivered;
+    }
+
+    /**
+     * Fans out the messages queued for a group, in the order of their IDs.
+     *
+     * @param group the group.
+     */
+    private void drain(Group group) {
+        for (int count = 0; count < MAX_FAN_OUT_BATCH; count++) {
+            QueuedMessage queued = group.poll();
+
+            if (queued == null) {
+                return;
+            }
+
+            group.subscribers.forEach(subscriber -> {
+                try {
+                    subscriber.deliver(queued.id, queued.message);
+                }
+                catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "cannot deliver a message to a subscriber", e);
+                }
+            });
+
+            fannedOut(queued.delivered);
+        }
+
+        /**
+         * the thread lets the other groups run before it fans out the next messages of this group
+         */
+        try {
+            fanOut.execute(() -> drain(group));
+        }
+        catch (RejectedExecutionException e) {
+            /**
+             * the broadcaster is stopped: the messages are no longer fanned out
+             */
+        }
+    }
+
+    /**
+     * Records that some messages were fanned out, and moves the ID below which all the messages were fanned out as
+     * far as possible.
+     *
+     * @param messages the fanned out messages.
+     */
+    private void fannedOut(List<DeliveredMessage> messages) {
+        messages.forEach(delivered -> delivered.fannedOut = true);
+
+        /**
+         * a message dropped from the ring is considered fanned out; a message that has its ID but is not in the ring
+         * yet stops the progress, which is resumed once it is fanned out
+         */
+        while (true) {
+            long fannedOutId = fannedOutMessageId.get();
+            long nextId = fannedOutId + 1;
+
+            if (nextId > lastMessageId.get()) {
+                return;
+            }
+
+            DeliveredMessage next = history.get(slot(nextId));
+
+            if (next == null || next.id < nextId || (next.id == nextId && !next.fannedOut)) {
+                return;
+            }
+
+            fannedOutMessageId.compareAndSet(fannedOutId, nextId);
+        }
+    }
+
+    /**
+     * A message delivered by this broadcaster, with its ID.
+     */
+    static private final class DeliveredMessage {
+
+        /**
+         * The ID of the message.
+         */
+        private final long id;
+
+        /**
+         * The message.
+         */
+        private final BroadcastMessage message;
+
+        /**
+         * Whether the message was fanned out to the subscribers.
+         */
+        private volatile boolean fannedOut;
+
+        /**
+         * Constructs a delivered message.
+         *
+         * @param id the ID of the message.
+         * @param message the message.
+         */
+        private DeliveredMessage(long id, BroadcastMessage message) {
+            this.id = id;
+            this.message = message;
+        }
+    }
+
+    /**
+     * A message waiting to be fanned out, into which the later messages of its group are merged when the queue of the
+     * group is full.
+     */
+    static private final class QueuedMessage {
+
+        /**
+         * The delivered messages merged into this one, in the order of their IDs.
+         */
+        private final List<DeliveredMessage> delivered = new ArrayList<>(1);
+
+        /**
+         * The ID of the last message merged into this one.
+         */
+        private long id;
+
+        /**
+         * The merged message.
+         */
+        private BroadcastMessage message;
+
+        /**
+         * Constructs a queued message.
+         *
+         * @param delivered the delivered message.
+         */
+        private QueuedMessage(DeliveredMessage delivered) {
+            this.delivered.add(delivered);
+            this.id = delivered.id;
+            this.message = delivered.message;
+        }
+
+        /**
+         * Merges a later message of the same group into this one.
+         *
+         * @param later the later message.
+         */
+        private void merge(DeliveredMessage later) {
+            this.delivered.add(later);
+            this.id = later.id;
+            this.message = this.message.merge(later.message);
+        }
+    }
+
+    /**
+     * A group of events that has subscribers, with the queue of its messages waiting to be fanned out.
+     */
+    static private final class Group {
+
+        /**
+         * The subscribers of the group.
+         */
+        private final Set<EventSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+        /**
+         * The messages waiting to be fanned out, guarded by the group.
+         */
+        private final Deque<QueuedMessage> queue = new ArrayDeque<>();
+
+        /**
+         * Whether a thread of the pool is draining the queue, guarded by the group.
+         */
+        private boolean draining;
+
+        /**
+         * Appends a message to the queue, or merges it into the last queued message if the queue is full.
+         *
+         * @param delivered the delivered message.
+         * @return true if the queue must be drained by a new task, false if a task is already draining it.
+         */
+        private synchronized boolean enqueue(DeliveredMessage delivered) {
+            if (queue.size() >= MAX_QUEUED_MESSAGES) {
+                queue.getLast().merge(delivered);
+            }
+            else {
+                queue.add(new QueuedMessage(delivered));
+            }
+
+            boolean started = !draining;
+            draining = true;
+            return started;
+        }
+
+        /**
+         * Takes the next message to fan out.
+         *
+         * @return the next message, or null if the queue is empty: the queue is then no longer drained.
+         */
+        private synchronized QueuedMessage poll() {
+            QueuedMessage queued = queue.poll();
+            draining = queued != null;
+            return queued;
+        }
+    }
+}
@@ -24,15 +24,20 @@
 
 package steappe.jsf.eventing;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Stream;
 import javax.faces.application.ResourceDependencies;
 import javax.faces.application.ResourceDependency;
 import javax.faces.component.FacesComponent;
 import javax.faces.component.StateHelper;
 import javax.faces.component.UICommand;
+import javax.faces.context.FacesContext;
 import static javax.faces.component.UICommand.COMPONENT_FAMILY;
+import javax.faces.event.AbortProcessingException;
+import javax.faces.event.ActionEvent;
+import javax.faces.event.FacesEvent;
 
 /**
  * The event observer UI component.
@@ -52,9 +57,12 @@ public class EventObserverComponent extends UICommand {
     private final StateHelper stateHelper;
     
     /**
-     * The list of events observed by this observer - intentionally not saved in the component's state holder.
+     * The list of events observed by this observer - intentionally not saved in the component's state holder, because
+     * it is rebuilt each time the tag of this observer is applied. The observed events declared with literals only are
+     * shared by the event observers of all the views. They are only saved with the full state of this observer, when
+     * the view is not rebuilt from its tags before its state is restored (see {@link #saveState(FacesContext)}).
      */
-    private final List<ObservedEvent> observedEvents = new LinkedList<>();
+    private final List<ObservedEvent> observedEvents = new ArrayList<>(2);
 
     /**
      * Constructs this UI component.
@@ -70,6 +78,33 @@ public class EventObserverComponent extends UICommand {
         return COMPONENT_FAMILY;
     }
     
+    /**
+     * Broadcasts an event to the action listeners of this UI component, within a span of the trace of the request. The
+     * action listeners of a parallel event observer are submitted to run concurrently (see {@link ParallelListeners}),
+     * if the application enables it (see {@link ContextParameter#PARALLEL_LISTENERS}).
+     * 
+     * @param event the event to broadcast.
+     * @throws AbortProcessingException if the processing of the event was aborted by a listener.
+     */
+    @Override
+    public void broadcast(FacesEvent event) throws AbortProcessingException {
+        FacesContext context = getFacesContext();
+        
+        if (event instanceof ActionEvent && isParallel() && ContextParameter.PARALLEL_LISTENERS.isEnabled(context)) {
+            ParallelListeners.getInstance(context).submit(context, this, (ActionEvent) event);
+        }
+        else {
+            Optional<TraceSpan> span = EventTrace.startSpan(context, "steappe.eventing.action");
+            
+            try {
+                super.broadcast(event);
+            }
+            finally {
+                span.ifPresent(TraceSpan::end);
+            }
+        }
+    }
+    
     /**
      * Sets the name of of the event group.
      * 
@@ -88,6 +123,165 @@ public class EventObserverComponent extends UICommand {
         return StringKeys.group.get(stateHelper, EventProducerHandler.DEFAULT_GROUP);
     }
     
+    /**
+     * Sets whether the targets rendered in response to an observed event are omitted from the partial response when
+     * their markup did not change since their previous rendering in the same view.
+     * 
+     * @param skipUnchanged true to omit the unchanged targets.
+     */
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        BooleanKeys.skipUnchanged.put(stateHelper, skipUnchanged);
+    }
+    
+    /**
+     * Indicates whether the targets rendered in response to an observed event are omitted from the partial response
+     * when their markup did not change since their previous rendering in the same view. It defaults to false.
+     * 
+     * @return true if the unchanged targets are omitted.
+     */
+    public boolean isSkipUnchanged() {
+        return BooleanKeys.skipUnchanged.get(stateHelper, false);
+    }
+    
+    /**
+     * Sets whether the requests of this event observer are sent with the streaming transport, which applies each
+     * update of the partial response as soon as it is received.
+     * 
+     * @param streaming true to use the streaming transport.
+     */
+    public void setStreaming(boolean streaming) {
+        BooleanKeys.streaming.put(stateHelper, streaming);
+    }
+    
+    /**
+     * Indicates whether the requests of this event observer are sent with the streaming transport. It defaults to
+     * false.
+     * 
+     * @return true if the streaming transport is used.
+     */
+    public boolean isStreaming() {
+        return BooleanKeys.streaming.get(stateHelper, false);
+    }
+    
+    /**
+     * Sets whether the action listeners of this event observer run concurrently with the ones of the other parallel
+     * event observers of the same request, on a worker thread.
+     * 
+     * @param parallel true to run the action listeners concurrently.
+     */
+    public void setParallel(boolean parallel) {
+        BooleanKeys.parallel.put(stateHelper, parallel);
+    }
+    
+    /**
+     * Indicates whether the action listeners of this event observer run concurrently with the ones of the other
+     * parallel event observers of the same request. It defaults to false.
+     * 
+     * @return true if the action listeners run concurrently.
+     */
+    public boolean isParallel() {
+        return BooleanKeys.parallel.get(stateHelper, false);
+    }
+    
+    /**
+     * Sets whether this event observer applies the markup pushed by the server along with the observed events, instead
+     * of sending a request to render its targets.
+     * 
+     * @param pushed true to apply the pushed markup.
+     */
+    public void setPushed(boolean pushed) {
+        BooleanKeys.pushed.put(stateHelper, pushed);
+    }
+    
+    /**
+     * Indicates whether this event observer applies the markup pushed by the server along with the observed events.
+     * It defaults to false.
+     * 
+     * @return true if the pushed markup is applied.
+     */
+    public boolean isPushed() {
+        return BooleanKeys.pushed.get(stateHelper, false);
+    }
+    
+    /**
+     * Sets whether the requests of this event observer post only the fields of the components they execute, instead of
+     * all the fields of the form.
+     * 
+     * @param partialSubmit true to post the fields of the executed components only.
+     */
+    public void setPartialSubmit(boolean partialSubmit) {
+        BooleanKeys.partialSubmit.put(stateHelper, partialSubmit);
+    }
+    
+    /**
+     * Indicates whether the requests of this event observer post only the fields of the components they execute. It
+     * defaults to false.
+     * 
+     * @return true if the fields of the executed components only are posted.
+     */
+    public boolean isPartialSubmit() {
+        return BooleanKeys.partialSubmit.get(stateHelper, false);
+    }
+    
+    /**
+     * Sets whether this event observer, when nested in an iterating UI component (a data table or a repeat), is
+     * registered once for all the rows of the iterator, the client IDs of the row being replaced by a placeholder.
+     * 
+     * @param rowAware true to register this event observer once for all the rows.
+     */
+    public void setRowAware(boolean rowAware) {
+        BooleanKeys.rowAware.put(stateHelper, rowAware);
+    }
+    
+    /**
+     * Indicates whether this event observer is registered once for all the rows of the iterating UI component it is
+     * nested in. It defaults to false.
+     * 
+     * @return true if this event observer is registered once for all the rows.
+     */
+    public boolean isRowAware() {
+        return BooleanKeys.rowAware.get(stateHelper, false);
+    }
+    
+    /**
+     * Sets the number of seconds during which the client may reuse the responses of this event observer, instead of
+     * sending the same request again.
+     * 
+     * @param cacheTtl the time to live of the cached responses, in seconds, or 0 to disable the cache.
+     */
+    public void setCacheTtl(int cacheTtl) {
+        IntegerKeys.cacheTtl.put(stateHelper, cacheTtl);
+    }
+    
+    /**
+     * Gets the number of seconds during which the client may reuse the responses of this event observer. It defaults
+     * to 0, i.e. the responses are not cached.
+     * 
+     * @return the time to live of the cached responses, in seconds.
+     */
+    public int getCacheTtl() {
+        return IntegerKeys.cacheTtl.get(stateHelper, 0);
+    }
+    
+    /**
+     * Sets the space separated list of the events that invalidate the cached responses of this event observer.
+     * 
+     * @param cacheInvalidatedBy the list of events, each one being either an event name of the group of this event
+     * observer, or a group name and an event name separated by a colon.
+     */
+    public void setCacheInvalidatedBy(String cacheInvalidatedBy) {
+        StringKeys.cacheInvalidatedBy.put(stateHelper, cacheInvalidatedBy);
+    }
+    
+    /**
+     * Gets the space separated list of the events that invalidate the cached responses of this event observer.
+     * 
+     * @return the list of events, or null if none.
+     */
+    public String getCacheInvalidatedBy() {
+        return StringKeys.cacheInvalidatedBy.get(stateHelper).orElse(null);
+    }
+    
     /**
      * Adds an observed event.
      * 
@@ -97,6 +291,56 @@ public class EventObserverComponent extends UICommand {
         observedEvents.add(observedEvent);
     }
     
+    /**
+     * Removes all the observed events.
+     */
+    public void clearObservedEvents() {
+        observedEvents.clear();
+    }
+    
+    /**
+     * Saves the state of this UI component. With partial state saving, the view is rebuilt from its tags before its
+     * state is restored, so the observed events are applied again by their tags and nothing is saved for them. When
+     * the full state is saved (full state saving, or an event observer added dynamically), the view is restored
+     * without its tags: the observed events are then saved along with the state of the component.
+     * 
+     * @param context the faces context.
+     * @return the state of this UI component.
+     */
+    @Override
+    public Object saveState(FacesContext context) {
+        Object state = super.saveState(context);
+        
+        if (!initialStateMarked()) {
+            state = new Object[] {state, observedEvents.stream().map(ObservedEvent::saveState).toArray()};
+        }
+        
+        return state;
+    }
+    
+    /**
+     * Restores the state of this UI component, and its observed events if they were saved with its full state.
+     * 
+     * @param context the faces context.
+     * @param state the state of this UI component.
+     */
+    @Override
+    public void restoreState(FacesContext context, Object state) {
+        if (initialStateMarked()) {
+            super.restoreState(context, state);
+        }
+        else {
+            Object[] values = (Object[]) state;
+            super.restoreState(context, values[0]);
+            
+            observedEvents.clear();
+            
+            for (Object value : (Object[]) values[1]) {
+                observedEvents.add(ObservedEvent.restoreState(value));
+            }
+        }
+    }
+    
     /**
      * Gets the observed events.
      * 
@@ -110,11 +354,41 @@ public class EventObserverComponent extends UICommand {
      * The names of the tag attributes of type String used by this UI component.
      */
     private static enum StringKeys implements ComponentStateKey<String> {
-        group;
+        group,
+        cacheInvalidatedBy;
 
         @Override
         public Class<String> type() {
             return String.class;
         }
     }
+    
+    /**
+     * The names of the tag attributes of type boolean used by this UI component.
+     */
+    private static enum BooleanKeys implements ComponentStateKey<Boolean> {
+        skipUnchanged,
+        streaming,
+        parallel,
+        rowAware,
+        pushed,
+        partialSubmit;
+
+        @Override
+        public Class<Boolean> type() {
+            return Boolean.class;
+        }
+    }
+    
+    /**
+     * The names of the tag attributes of type integer used by this UI component.
+     */
+    private static enum IntegerKeys implements ComponentStateKey<Integer> {
+        cacheTtl;
+
+        @Override
+        public Class<Integer> type() {
+            return Integer.class;
+        }
+    }
 }
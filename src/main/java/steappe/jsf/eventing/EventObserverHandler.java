@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.IOException;
+import javax.faces.component.UIComponent;
+import javax.faces.view.facelets.ComponentConfig;
+import javax.faces.view.facelets.ComponentHandler;
+import javax.faces.view.facelets.FaceletContext;
+
+/**
+ * The handler of the event observer tag.
+ * <p>
+ * The observed events of an event observer are not part of its state: they are declared by the nested tags, and they
+ * are rebuilt each time the tag is applied, either when the view is built (including the restore view phase of
+ * stateless views and of views restored with partial state saving) or when it is refreshed.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventObserverHandler extends ComponentHandler {
+
+    /**
+     * Constructs the tag handler.
+     *
+     * @param config specifies the definition of the tag.
+     */
+    public EventObserverHandler(ComponentConfig config) {
+        super(config);
+    }
+
+    @Override
+    public void applyNextHandler(FaceletContext ctx, UIComponent c) throws IOException {
+        if (c instanceof EventObserverComponent) {
+            EventObserverComponent eventObserver = (EventObserverComponent) c;
+            eventObserver.clearObservedEvents();
+        }
+
+        super.applyNextHandler(ctx, c);
+    }
+}
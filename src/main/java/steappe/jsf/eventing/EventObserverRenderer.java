@@ -25,11 +25,20 @@
 package steappe.jsf.eventing;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.faces.component.NamingContainer;
 import javax.faces.component.UIComponent;
+import javax.faces.component.UIData;
+import javax.faces.component.UINamingContainer;
 import javax.faces.context.FacesContext;
+import javax.faces.context.PartialViewContext;
 import javax.faces.context.ResponseWriter;
 import javax.faces.event.ActionEvent;
 import javax.faces.event.PhaseId;
@@ -52,9 +61,51 @@ public class EventObserverRenderer extends Renderer {
      */
     static public final String RENDERER_TYPE = "steappe.jsf.eventing.observer";
     
-    static private final char QUOTE = '\'';
+    /**
+     * The name of the request parameter that lists the client IDs of the updates that the client-side eventing
+     * framework discarded from the response of a superseded request.
+     */
+    static public final String DISCARDED_UPDATES_PARAMETER = "steappe.eventing.discarded";
+    
+    /**
+     * The name of the request parameter that lists the events of a request sent speculatively by the client-side
+     * eventing framework.
+     */
+    static public final String SPECULATIVE_EVENTS_PARAMETER = "steappe.eventing.speculative";
+    
+    /**
+     * The name of the request parameter that holds the trace context of a request, as a W3C traceparent: the trace ID
+     * is generated by the client-side eventing framework for each dispatch of events.
+     */
+    static public final String TRACE_PARAMETER = "steappe.eventing.traceparent";
+    
+    /**
+     * The name of the request parameter that lists the events whose model is requested by the client-side eventing
+     * framework.
+     */
+    static public final String MODEL_EVENTS_PARAMETER = "steappe.eventing.model";
+    
+    /**
+     * The name of the request parameter that lists the keys of the rows targeted by the request of a row-aware event
+     * observer.
+     */
+    static public final String ROWS_PARAMETER = "steappe.eventing.rows";
+    
+    /**
+     * The placeholder of the key of the row in the client IDs registered by a row-aware event observer.
+     */
+    static private final String ROW_PLACEHOLDER = "{row}";
     
-    static private final char COMMA = ',';
+    /**
+     * The name of the faces context attribute that holds the client ID templates of the row-aware event observers
+     * already registered in the response.
+     */
+    static private final String REGISTERED_ROWS_ATTRIBUTE = EventObserverRenderer.class.getName() + ".rows";
+    
+    /**
+     * The REGEX pattern used to split a whitespace separated list.
+     */
+    static private final Pattern WHITESPACE_SEPARATED_LIST_PATTERN = Pattern.compile("\\s+");
     
     /**
      * Converts relative client IDs into absolute client IDs.
@@ -117,16 +168,38 @@ public class EventObserverRenderer extends Renderer {
             ResponseWriter writer = context.getResponseWriter();
             writer.startElement("span", eventObserver);
             writer.writeAttribute("id", clientId, "id");
-            writer.startElement("script", eventObserver);
-            writer.append("\n");
             
-            ObservedEvent[] observedEvents = eventObserver.getObservedEvents().toArray(ObservedEvent[]::new);
+            /**
+             * a full rendering of the view replaces the markup of all the targets on the client side
+             */
+            if (!context.getPartialViewContext().isPartialRequest()) {
+                FragmentHashes.clear(context);
+            }
+            
+            Optional<Row> row = eventObserver.isRowAware() ? Row.of(context, eventObserver) : Optional.empty();
             
             /**
-             * encode the observed events
+             * a row-aware event observer is only registered by the first of its rows rendered in the response: the
+             * other rows just render the element that identifies them on the client side
              */
-            for (ObservedEvent observedEvent : observedEvents) {
-                encodeEvent(context, eventObserver, observedEvent);
+            if (!row.isPresent() || registerRows(context, row.get().toTemplate(clientId))) {
+                ObservedEvent[] observedEvents = eventObserver.getObservedEvents().toArray(ObservedEvent[]::new);
+                Optional<ViewInterests> interests = ViewInterests.getStreamedInstance(context);
+                ScriptWriter script = new ScriptWriter(256 * observedEvents.length + 1);
+                script.append('\n');
+                
+                /**
+                 * encode the observed events, and write their registrations in a single chunk
+                 */
+                for (ObservedEvent observedEvent : observedEvents) {
+                    encodeEvent(context, eventObserver, observedEvent, row, interests, script);
+                }
+                
+                interests.ifPresent(viewInterests -> observeCacheInvalidations(eventObserver, viewInterests));
+                
+                writer.startElement("script", eventObserver);
+                script.writeTo(writer);
+                writer.endElement("script");
             }
         }
     }
@@ -135,10 +208,24 @@ public class EventObserverRenderer extends Renderer {
     public void encodeEnd(FacesContext context, UIComponent component) throws IOException {
         if (component instanceof EventObserverComponent) {
             ResponseWriter writer = context.getResponseWriter();
-            writer.endElement("script");
             writer.endElement("span");
         }
     }
+    
+    /**
+     * Records that the rows of a row-aware event observer are registered in the response.
+     * 
+     * @param context the faces context.
+     * @param template the client ID template of the event observer.
+     * @return true if the rows were not registered yet in the response.
+     */
+    @SuppressWarnings("unchecked")
+    static private boolean registerRows(FacesContext context, String template) {
+        Set<String> templates = (Set<String>) context.getAttributes().computeIfAbsent(REGISTERED_ROWS_ATTRIBUTE, name ->
+                new HashSet<>()
+        );
+        return templates.add(template);
+    }
 
     @Override
     public void decode(FacesContext context, UIComponent component) {
@@ -146,49 +233,423 @@ public class EventObserverRenderer extends Renderer {
             EventObserverComponent eventObserver = (EventObserverComponent) component;
             
             String clientId = eventObserver.getClientId(context);
-            String source = context.getExternalContext().getRequestParameterMap().get("javax.faces.source");
+            Map<String, String> parameters = context.getExternalContext().getRequestParameterMap();
+            String source = parameters.get("javax.faces.source");
+            String speculativeEvents = parameters.get(SPECULATIVE_EVENTS_PARAMETER);
+            Optional<Row> row = eventObserver.isRowAware() ? Row.of(context, eventObserver) : Optional.empty();
+            Optional<Set<String>> rows = Optional.ofNullable(parameters.get(ROWS_PARAMETER)).map(keys ->
+                    new HashSet<>(Arrays.asList(WHITESPACE_SEPARATED_LIST_PATTERN.split(keys.trim())))
+            );
 
-            if (clientId.equals(source)) {
-                ActionEvent event = new ActionEvent(eventObserver);
-                PhaseId phaseId = eventObserver.isImmediate() ?
-                        PhaseId.APPLY_REQUEST_VALUES :
-                        PhaseId.INVOKE_APPLICATION;
-                event.setPhaseId(phaseId);
-                eventObserver.queueEvent(event);
+            if (clientId.equals(source) && speculativeEvents != null
+                    && !isSideEffectFree(context, eventObserver, speculativeEvents)) {
+                /**
+                 * only the events declared free of side effects can be requested speculatively: the response is left
+                 * empty, and the client discards it
+                 */
+                context.responseComplete();
+            }
+            else if (clientId.equals(source)) {
+                EventTrace.start(context, parameters.get(TRACE_PARAMETER)).ifPresent(trace ->
+                        trace.getRequestSpan()
+                                .setAttribute("steappe.eventing.observer", clientId)
+                                .setAttribute("steappe.eventing.speculative", speculativeEvents != null)
+                                .setAttribute("faces.view_id", context.getViewRoot().getViewId())
+                );
+                Optional<TraceSpan> span = EventTrace.startSpan(context, "steappe.eventing.decode");
+                
+                boolean speculative = speculativeEvents != null;
+                EventingContext eventingContext = EventingContext.create(context, eventObserver, speculative);
+                
+                if (speculative) {
+                    /**
+                     * the state of a speculative request is not saved: with server-side state saving, it would take a
+                     * slot of the logical view, and could evict the state that the page holds; the client keeps the
+                     * state of the view it posted when it applies the response
+                     */
+                    context.getViewRoot().setTransient(true);
+                }
+                invalidateDiscardedUpdates(context, eventingContext);
+                requestModels(context, eventObserver, eventingContext, parameters.get(MODEL_EVENTS_PARAMETER));
+                
+                /**
+                 * the row of a row-aware event observer at the origin of the request may not be among the targeted
+                 * rows: it is only the source of the request
+                 */
+                if (!row.isPresent() || rows.map(keys -> keys.contains(row.get().getKey())).orElse(true)) {
+                    queueActionEvent(eventObserver);
+                }
+                
+                span.ifPresent(TraceSpan::end);
+            }
+            else if (row.isPresent() && source != null && row.get().isSibling(source, clientId)
+                    && rows.map(keys -> keys.contains(row.get().getKey())).orElse(false)) {
+                /**
+                 * the other rows targeted by the request of a row-aware event observer invoke their action listeners
+                 * too, each one in the context of its row
+                 */
+                queueActionEvent(eventObserver);
+            }
+            else if (eventObserver.isParallel() && isExecuted(context, clientId)) {
+                /**
+                 * a parallel event observer executed by the request of another component invokes its action
+                 * listeners too, concurrently with the ones of the other parallel event observers
+                 */
+                queueActionEvent(eventObserver);
+            }
+        }
+    }
+    
+    /**
+     * Queues the action event of an event observer, to be broadcast to its action listeners.
+     * 
+     * @param eventObserver the event observer.
+     */
+    private void queueActionEvent(EventObserverComponent eventObserver) {
+        ActionEvent event = new ActionEvent(eventObserver);
+        PhaseId phaseId = eventObserver.isImmediate() ?
+                PhaseId.APPLY_REQUEST_VALUES :
+                PhaseId.INVOKE_APPLICATION;
+        event.setPhaseId(phaseId);
+        eventObserver.queueEvent(event);
+    }
+    
+    /**
+     * Requests the models of the observed events listed by the client.
+     * 
+     * @param context the faces context.
+     * @param eventObserver the event observer.
+     * @param eventingContext the eventing context of the request.
+     * @param events the space separated list of the names of the events whose model is requested, possibly null.
+     */
+    private void requestModels(
+            FacesContext context,
+            EventObserverComponent eventObserver,
+            EventingContext eventingContext,
+            String events) {
+        if (events != null && !events.trim().isEmpty()) {
+            Set<String> names = new HashSet<>(Arrays.asList(WHITESPACE_SEPARATED_LIST_PATTERN.split(events.trim())));
+            
+            eventObserver.getObservedEvents().filter(observedEvent ->
+                    observedEvent.getModel().isPresent() && names.contains(observedEvent.getEvent(context))
+            ).forEach(eventingContext::addModelEvent);
+        }
+    }
+    
+    /**
+     * Indicates whether an event observer is explicitly listed among the components executed by the current request.
+     * 
+     * @param context the faces context.
+     * @param clientId the client ID of the event observer.
+     * @return true if the event observer is executed by the request.
+     */
+    private boolean isExecuted(FacesContext context, String clientId) {
+        PartialViewContext partialViewContext = context.getPartialViewContext();
+        return partialViewContext.isAjaxRequest() && partialViewContext.getExecuteIds().contains(clientId);
+    }
+    
+    /**
+     * Indicates whether all the events of a list are observed by an event observer and free of side effects.
+     * 
+     * @param context the faces context.
+     * @param eventObserver the event observer.
+     * @param events the space separated list of event names.
+     * @return true if the request for these events has no side effect.
+     */
+    private boolean isSideEffectFree(FacesContext context, EventObserverComponent eventObserver, String events) {
+        Set<String> sideEffectFreeEvents = eventObserver.getObservedEvents().filter(observedEvent ->
+                observedEvent.isSideEffectFree(context)
+        ).map(observedEvent -> observedEvent.getEvent(context)).collect(Collectors.toSet());
+        
+        String[] names = WHITESPACE_SEPARATED_LIST_PATTERN.split(events.trim());
+        return names.length > 0 && !names[0].isEmpty() && sideEffectFreeEvents.containsAll(Arrays.asList(names));
+    }
+    
+    /**
+     * Invalidates the hashes of the targets whose updates were discarded by the client, because the response that
+     * carried them was superseded by a newer request: the markup they hold on the client side is not the one that was
+     * hashed. They are also rendered when the action listeners mark other targets as dirty.
+     * 
+     * @param context the faces context.
+     * @param eventingContext the eventing context of the request.
+     */
+    private void invalidateDiscardedUpdates(FacesContext context, EventingContext eventingContext) {
+        String discarded = context.getExternalContext().getRequestParameterMap().get(DISCARDED_UPDATES_PARAMETER);
+        
+        if (discarded != null && !discarded.trim().isEmpty()) {
+            char separatorChar = UINamingContainer.getSeparatorChar(context);
+            String[] clientIds = discarded.trim().split("\\s+");
+            
+            FragmentHashes.getInstance(context, false).ifPresent(hashes -> {
+                for (String clientId : clientIds) {
+                    hashes.invalidate(clientId, separatorChar);
+                }
+            });
+            
+            for (String clientId : clientIds) {
+                eventingContext.addDiscardedUpdate(clientId);
             }
         }
     }
     
+    /**
+     * Encodes the options of an observed event, as the properties of a JavaScript object.
+     * 
+     * @param context the faces context.
+     * @param eventObserver the event observer.
+     * @param observedEvent the observed event.
+     * @param template the client ID template of a row-aware event observer, or null.
+     * @return the comma separated properties, empty if all the options have their default value.
+     */
+    private ScriptWriter encodeOptions(
+            FacesContext context,
+            EventObserverComponent eventObserver,
+            ObservedEvent observedEvent,
+            String template) {
+        ScriptWriter options = new ScriptWriter(64);
+        
+        if (observedEvent.isSupersede(context)) {
+            appendOption(options, "supersede").append("true");
+        }
+        
+        if (eventObserver.isStreaming()) {
+            appendOption(options, "streaming").append("true");
+        }
+        
+        if (eventObserver.isPushed()) {
+            appendOption(options, "pushed").append("true");
+        }
+        
+        if (eventObserver.isPartialSubmit()) {
+            appendOption(options, "partialSubmit").append("true");
+        }
+        
+        if (observedEvent.isSideEffectFree(context)) {
+            appendOption(options, "sideEffectFree").append("true");
+        }
+        
+        if (observedEvent.getModel().isPresent()) {
+            appendOption(options, "model").append("true");
+        }
+        
+        if (template != null) {
+            appendOption(options, "rows").string(template);
+        }
+        
+        if (eventObserver.getCacheTtl() > 0) {
+            appendOption(options, "cacheTtl").append(Integer.toString(eventObserver.getCacheTtl()));
+            
+            String cacheInvalidatedBy = eventObserver.getCacheInvalidatedBy();
+            
+            if (cacheInvalidatedBy != null) {
+                appendOption(options, "cacheInvalidatedBy").name(cacheInvalidatedBy.trim());
+            }
+        }
+        
+        return options;
+    }
+    
+    /**
+     * Records the events that invalidate the cached responses of an event observer in the interests of the view, so
+     * that their messages are written to the event stream even if no event observer of the view observes them.
+     * 
+     * @param eventObserver the event observer.
+     * @param interests the interests of the view.
+     */
+    private void observeCacheInvalidations(EventObserverComponent eventObserver, ViewInterests interests) {
+        String cacheInvalidatedBy = eventObserver.getCacheInvalidatedBy();
+        
+        if (eventObserver.getCacheTtl() > 0 && cacheInvalidatedBy != null && !cacheInvalidatedBy.trim().isEmpty()) {
+            for (String name : WHITESPACE_SEPARATED_LIST_PATTERN.split(cacheInvalidatedBy.trim())) {
+                int separator = name.indexOf(':');
+                
+                if (separator >= 0) {
+                    interests.observe(name.substring(0, separator), name.substring(separator + 1));
+                }
+                else {
+                    interests.observe(eventObserver.getGroup(), name);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Appends the name of an option to the properties of a JavaScript object, to be followed by its value.
+     * 
+     * @param options the properties being built.
+     * @param name the name of the option.
+     * @return the properties being built, where the value of the option is to be appended.
+     */
+    static private ScriptWriter appendOption(ScriptWriter options, String name) {
+        if (!options.isEmpty()) {
+            options.comma();
+        }
+        
+        return options.append(name).append(':');
+    }
+    
     /**
      * Encodes the JavaScript instruction to register an observed event in the client-side event framework.
      * 
      * @param context the faces context.
      * @param eventObserver the event observer.
      * @param observedEvent the observed event.
-     * @throws IOException if an I/O error occurred during the encoding.
+     * @param row the row of a row-aware event observer, whose client IDs are registered as templates.
+     * @param interests the interests of the view, if it contains an event stream.
+     * @param script the script being built.
      */
     private void encodeEvent(
             FacesContext context,
             EventObserverComponent eventObserver,
-            ObservedEvent observedEvent) throws IOException {
-        ResponseWriter writer = context.getResponseWriter();
+            ObservedEvent observedEvent,
+            Optional<Row> row,
+            Optional<ViewInterests> interests,
+            ScriptWriter script) {
         String clientId = eventObserver.getClientId(context);
         String group = eventObserver.getGroup();
         String event = observedEvent.getEvent(context);
         String execute = toAbsoluteClientIds(context, eventObserver, observedEvent.getExecute(context));
         String render = toAbsoluteClientIds(context, eventObserver, observedEvent.getRender(context));
+        String template = row.map(r -> r.toTemplate(clientId)).orElse(null);
+        ScriptWriter options = encodeOptions(context, eventObserver, observedEvent, template);
+        
+        interests.ifPresent(viewInterests -> viewInterests.observe(group, event));
+        
+        if (row.isPresent()) {
+            execute = row.get().toTemplates(execute);
+            render = row.get().toTemplates(render);
+        }
+        
+        script.append("steappe.eventing.register(");
+        script.string(clientId).comma();
+        script.name(group).comma();
+        script.name(event).comma();
+        script.string(execute).comma();
+        script.string(render);
+        
+        if (!options.isEmpty()) {
+            script.comma();
+            script.append('{').append(options.toString()).append('}');
+        }
+        
+        script.append(");\n");
+    }
+    
+    /**
+     * The row of an iterating UI component (a data table or a repeat) in which a row-aware event observer is rendered
+     * or decoded: the client IDs of the components of the row start with the client ID of the iterator followed by the
+     * key of the row.
+     */
+    static private final class Row {
+        
+        /**
+         * The client ID of the iterator, followed by the separator character.
+         */
+        private final String prefix;
         
-        writer.append("steappe.eventing.register(");
-        writer.append(QUOTE).append(clientId).append(QUOTE);
-        writer.append(COMMA);
-        writer.append(QUOTE).append(group).append(QUOTE);
-        writer.append(COMMA);
-        writer.append(QUOTE).append(event).append(QUOTE);
-        writer.append(COMMA);
-        writer.append(QUOTE).append(execute).append(QUOTE);
-        writer.append(COMMA);
-        writer.append(QUOTE).append(render).append(QUOTE);
-        writer.append(");");
-        writer.append("\n");
+        /**
+         * The key of the row.
+         */
+        private final String key;
+        
+        /**
+         * The separator character of the client IDs.
+         */
+        private final char separatorChar;
+        
+        /**
+         * Constructs a row.
+         * 
+         * @param prefix the client ID of the iterator, followed by the separator character.
+         * @param key the key of the row.
+         * @param separatorChar the separator character of the client IDs.
+         */
+        private Row(String prefix, String key, char separatorChar) {
+            this.prefix = prefix;
+            this.key = key;
+            this.separatorChar = separatorChar;
+        }
+        
+        /**
+         * Gets the current row of the closest iterating UI component around an event observer. An iterating UI
+         * component is either a data table, or a naming container of the facelets family (the ui:repeat tag).
+         * 
+         * @param context the faces context.
+         * @param eventObserver the event observer.
+         * @return the current row, or nothing if the event observer is not nested in an iterating UI component.
+         */
+        static Optional<Row> of(FacesContext context, EventObserverComponent eventObserver) {
+            UIComponent iterator = eventObserver.getParent();
+            
+            while (iterator != null && !(iterator instanceof UIData)
+                    && !(iterator instanceof NamingContainer && "facelets".equals(iterator.getFamily()))) {
+                iterator = iterator.getParent();
+            }
+            
+            Optional<Row> row = Optional.empty();
+            
+            if (iterator != null) {
+                char separatorChar = UINamingContainer.getSeparatorChar(context);
+                String prefix = iterator.getClientId(context) + separatorChar;
+                String clientId = eventObserver.getClientId(context);
+                int end = clientId.startsWith(prefix) ? clientId.indexOf(separatorChar, prefix.length()) : -1;
+                
+                if (end > prefix.length()) {
+                    row = Optional.of(new Row(prefix, clientId.substring(prefix.length(), end), separatorChar));
+                }
+            }
+            
+            return row;
+        }
+        
+        /**
+         * Gets the key of this row.
+         * 
+         * @return the key of the row.
+         */
+        String getKey() {
+            return this.key;
+        }
+        
+        /**
+         * Converts the client ID of a component of this row into a template, the key of the row being replaced by a
+         * placeholder. The client IDs of the components outside of this row are left unchanged.
+         * 
+         * @param clientId the client ID.
+         * @return the client ID template.
+         */
+        String toTemplate(String clientId) {
+            String rowPrefix = prefix + key + separatorChar;
+            return clientId.startsWith(rowPrefix) ?
+                    prefix + ROW_PLACEHOLDER + clientId.substring(prefix.length() + key.length()) :
+                    clientId;
+        }
+        
+        /**
+         * Converts the client IDs of a space separated list into templates.
+         * 
+         * @param clientIds the space separated list of client IDs.
+         * @return the space separated list of client ID templates.
+         */
+        String toTemplates(String clientIds) {
+            return clientIds.isEmpty() ?
+                    clientIds :
+                    Stream.of(WHITESPACE_SEPARATED_LIST_PATTERN.split(clientIds))
+                            .map(this::toTemplate)
+                            .collect(Collectors.joining(" "));
+        }
+        
+        /**
+         * Indicates whether a client ID is the one of the same event observer in another row of the same iterator.
+         * 
+         * @param otherClientId the other client ID.
+         * @param clientId the client ID of the event observer in this row.
+         * @return true if the other client ID only differs by the key of the row.
+         */
+        boolean isSibling(String otherClientId, String clientId) {
+            int end = otherClientId.startsWith(prefix) ? otherClientId.indexOf(separatorChar, prefix.length()) : -1;
+            return end > prefix.length()
+                    && otherClientId.substring(end).equals(clientId.substring(prefix.length() + key.length()));
+        }
     }
 }
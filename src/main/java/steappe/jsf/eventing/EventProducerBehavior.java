@@ -27,9 +27,11 @@ package steappe.jsf.eventing;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Set;
+import javax.el.ValueExpression;
 import javax.faces.component.behavior.ClientBehaviorBase;
 import javax.faces.component.behavior.ClientBehaviorHint;
 import javax.faces.component.behavior.FacesBehavior;
+import javax.faces.context.FacesContext;
 
 /**
  * The event producer client behavior.
@@ -61,6 +63,22 @@ public class EventProducerBehavior extends ClientBehaviorBase {
      */
     private String events;
     
+    /**
+     * Whether the events are not dispatched again while the tracked value is unchanged.
+     */
+    private boolean suppressUnchanged;
+    
+    /**
+     * The value expression of the value tracked to detect the unchanged dispatches, instead of the value of the element.
+     * It is evaluated when the script is rendered, so that it resolves to the key of each row in an iterator.
+     */
+    private ValueExpression key;
+    
+    /**
+     * The JavaScript expression that must be true for the events to be dispatched.
+     */
+    private String filter;
+    
     @Override
     public String getRendererType() {
         return EventProducerRenderer.RENDERER_TYPE;
@@ -106,4 +124,82 @@ public class EventProducerBehavior extends ClientBehaviorBase {
     public String getEvents() {
         return this.events;
     }
+    
+    /**
+     * Sets whether the events are not dispatched again while the tracked value is unchanged.
+     * 
+     * @param suppressUnchanged true to suppress the unchanged dispatches.
+     */
+    public void setSuppressUnchanged(boolean suppressUnchanged) {
+        this.suppressUnchanged = suppressUnchanged;
+    }
+    
+    /**
+     * Indicates whether the events are not dispatched again while the tracked value is unchanged. The tracked value is
+     * the key if specified, or else the value of the element.
+     * 
+     * @return true if the unchanged dispatches are suppressed.
+     */
+    public boolean isSuppressUnchanged() {
+        return this.suppressUnchanged;
+    }
+    
+    /**
+     * Sets the value expression of the value tracked to detect the unchanged dispatches.
+     * 
+     * @param key the value expression of the tracked value.
+     */
+    public void setKey(ValueExpression key) {
+        this.key = key;
+    }
+    
+    /**
+     * Gets the value expression of the value tracked to detect the unchanged dispatches.
+     * 
+     * @return the value expression of the tracked value, or null if none is specified.
+     */
+    public ValueExpression getKey() {
+        return this.key;
+    }
+    
+    /**
+     * Evaluates the value tracked to detect the unchanged dispatches, in the current context (e.g. the current row of
+     * an iterator). If none is specified, the value of the element is tracked instead.
+     * 
+     * @param context the faces context.
+     * @return the tracked value, or null.
+     */
+    public String getKey(FacesContext context) {
+        Object value = key != null ? key.getValue(context.getELContext()) : null;
+        return value != null ? value.toString() : null;
+    }
+    
+    /**
+     * Sets the JavaScript expression that must be true for the events to be dispatched.
+     * 
+     * @param filter the JavaScript expression.
+     */
+    public void setFilter(String filter) {
+        this.filter = filter;
+    }
+    
+    /**
+     * Gets the JavaScript expression that must be true for the events to be dispatched. The expression is evaluated
+     * with 'this' bound to the element and with the DOM event named 'event'.
+     * 
+     * @return the JavaScript expression, or null.
+     */
+    public String getFilter() {
+        return this.filter;
+    }
+    
+    /**
+     * Indicates whether the dispatch of the events is guarded, either by the suppression of the unchanged dispatches
+     * or by a filter.
+     * 
+     * @return true if the dispatch is guarded.
+     */
+    public boolean isGuarded() {
+        return suppressUnchanged || filter != null;
+    }
 }
@@ -25,9 +25,14 @@
 package steappe.jsf.eventing;
 
 import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import javax.faces.component.UIComponent;
+import javax.faces.component.UIOutput;
+import javax.faces.component.UIViewRoot;
 import javax.faces.component.behavior.ClientBehaviorHolder;
+import javax.faces.context.FacesContext;
 import javax.faces.view.facelets.ComponentHandler;
 import javax.faces.view.facelets.FaceletContext;
 import javax.faces.view.facelets.TagAttribute;
@@ -46,6 +51,49 @@ public class EventProducerHandler extends TagHandler {
      */
     static public final String DEFAULT_GROUP = "global";
     
+    /**
+     * The name of the pass-through attribute that lists the client behavior events of the delegated event producers
+     * attached to a UI component.
+     */
+    static public final String DELEGATED_MARKER_ATTRIBUTE = "data-steappe-on";
+    
+    /**
+     * The prefix of the name of the pass-through attribute that holds the group and the events of the delegated event
+     * producers reacting on a client behavior event.
+     */
+    static public final String DELEGATED_ATTRIBUTE_PREFIX = "data-steappe-";
+    
+    /**
+     * The name of the pass-through attribute that holds the group and the events of the speculative event producers
+     * attached to a UI component.
+     */
+    static public final String SPECULATIVE_ATTRIBUTE = "data-steappe-speculative";
+    
+    /**
+     * The separator of the delegated event producers reacting on the same client behavior event.
+     */
+    static private final char DELEGATED_PRODUCER_SEPARATOR = '|';
+    
+    /**
+     * The separator between the name of the attribute of the delegated event producers reacting on a client behavior
+     * event and the index of a guarded producer, in the name of the attribute that holds its guard.
+     */
+    static private final char DELEGATED_GUARD_SEPARATOR = '-';
+    
+    /**
+     * The suffix of the name of the attribute that holds the guard of a delegated event producer, in the name of the
+     * attribute that holds its key.
+     */
+    static private final String DELEGATED_KEY_SUFFIX = "-key";
+    
+    static private final String SCRIPT_LIBRARY = "steappe";
+    
+    static private final String SCRIPT_NAME = "js/eventing.js";
+    
+    static private final String SCRIPT_TARGET = "head";
+    
+    static private final String SCRIPT_RENDERER_TYPE = "javax.faces.resource.Script";
+    
     /**
      * The name of the client behavior event that triggers this event producer.
      */
@@ -61,6 +109,34 @@ public class EventProducerHandler extends TagHandler {
      */
     private final TagAttribute events;
     
+    /**
+     * Whether the event producer is rendered as data attributes handled by a delegated listener. It's optional and it
+     * defaults to the value of the context parameter DELEGATED_PRODUCERS.
+     */
+    private final Optional<TagAttribute> delegated;
+    
+    /**
+     * Whether the events are not dispatched again while the tracked value is unchanged. It's optional and it defaults
+     * to false.
+     */
+    private final Optional<TagAttribute> suppressUnchanged;
+    
+    /**
+     * The value tracked to detect the unchanged dispatches. It's optional and it defaults to the value of the element.
+     */
+    private final Optional<TagAttribute> key;
+    
+    /**
+     * The JavaScript expression that must be true for the events to be dispatched. It's optional.
+     */
+    private final Optional<TagAttribute> filter;
+    
+    /**
+     * Whether the requests of the observers of the events are sent speculatively, when the user is about to trigger
+     * the event producer. It's optional and it defaults to false.
+     */
+    private final Optional<TagAttribute> speculative;
+    
     /**
      * Constructs the tag handler.
      * 
@@ -72,22 +148,46 @@ public class EventProducerHandler extends TagHandler {
         this.on = getRequiredAttribute("on");
         this.group = Optional.ofNullable(getAttribute("group"));
         this.events = getRequiredAttribute("events");
+        this.delegated = Optional.ofNullable(getAttribute("delegated"));
+        this.suppressUnchanged = Optional.ofNullable(getAttribute("suppressUnchanged"));
+        this.key = Optional.ofNullable(getAttribute("key"));
+        this.filter = Optional.ofNullable(getAttribute("filter"));
+        this.speculative = Optional.ofNullable(getAttribute("speculative"));
     }
     
     @Override
     public void apply(FaceletContext ctx, UIComponent parent) throws IOException {
         if (ComponentHandler.isNew(parent)) {
             if (parent instanceof ClientBehaviorHolder) {
-                ClientBehaviorHolder holder = (ClientBehaviorHolder) parent;
+                FacesContext facesContext = ctx.getFacesContext();
                 
                 String onValue = on.getValue();
                 String groupValue = group.map(attribute -> attribute.getValue(ctx)).orElse(DEFAULT_GROUP);
                 String eventsValue = events.getValue(ctx);
+                boolean delegatedValue = delegated.map(attribute -> attribute.getBoolean(ctx)).orElseGet(() ->
+                        ContextParameter.DELEGATED_PRODUCERS.isEnabled(facesContext)
+                );
                 
                 EventProducerBehavior behavior = new EventProducerBehavior();
                 behavior.setGroup(groupValue);
                 behavior.setEvents(eventsValue);
-                holder.addClientBehavior(onValue, behavior);
+                behavior.setSuppressUnchanged(
+                        suppressUnchanged.map(attribute -> attribute.getBoolean(ctx)).orElse(false)
+                );
+                behavior.setKey(key.map(attribute -> attribute.getValueExpression(ctx, Object.class)).orElse(null));
+                behavior.setFilter(filter.map(attribute -> attribute.getValue(ctx)).orElse(null));
+                
+                if (speculative.map(attribute -> attribute.getBoolean(ctx)).orElse(false)) {
+                    applySpeculative(facesContext, parent, behavior);
+                }
+                
+                if (delegatedValue) {
+                    applyDelegated(facesContext, parent, onValue, behavior);
+                }
+                else {
+                    ClientBehaviorHolder holder = (ClientBehaviorHolder) parent;
+                    holder.addClientBehavior(onValue, behavior);
+                }
             }
             else {
                 /**
@@ -96,4 +196,109 @@ public class EventProducerHandler extends TagHandler {
             }
         }
     }
+    
+    /**
+     * Applies a delegated event producer to a UI component.
+     * <p>
+     * Instead of a client behavior, whose script is rendered inline in an event handler attribute, the event producer
+     * is rendered as pass-through data attributes. A single listener registered on the document by the client-side
+     * eventing framework reads these attributes and dispatches the events. The guard of a guarded event producer is
+     * rendered as a JSON object in an additional data attribute, whose name ends with the index of the producer. Its
+     * key is rendered in another data attribute, as a value expression evaluated when the UI component is rendered,
+     * so that it resolves to the key of each row in an iterator.
+     * 
+     * @param context the faces context.
+     * @param parent the UI component to which the event producer is applied.
+     * @param on the name of the client behavior event that triggers the event producer.
+     * @param behavior the event producer.
+     */
+    private void applyDelegated(FacesContext context, UIComponent parent, String on, EventProducerBehavior behavior) {
+        String event = on.toLowerCase(Locale.ROOT);
+        String attributeName = DELEGATED_ATTRIBUTE_PREFIX + event;
+        Map<String, Object> passThroughAttributes = parent.getPassThroughAttributes();
+        
+        passThroughAttributes.merge(DELEGATED_MARKER_ATTRIBUTE, event, (previous, value) ->
+                (" " + previous + " ").contains(" " + value + " ") ? previous : previous + " " + value
+        );
+        String producers = (String) passThroughAttributes.merge(
+                attributeName,
+                behavior.getGroup() + ' ' + behavior.getEvents(),
+                (previous, value) -> previous.toString() + DELEGATED_PRODUCER_SEPARATOR + value
+        );
+        
+        if (behavior.isGuarded()) {
+            long index = producers.chars().filter(c -> c == DELEGATED_PRODUCER_SEPARATOR).count();
+            String guardAttributeName = attributeName + DELEGATED_GUARD_SEPARATOR + index;
+            passThroughAttributes.put(guardAttributeName, toJson(behavior));
+            
+            if (behavior.getKey() != null) {
+                passThroughAttributes.put(guardAttributeName + DELEGATED_KEY_SUFFIX, behavior.getKey());
+            }
+        }
+        
+        addScriptResource(context);
+    }
+    
+    /**
+     * Applies the speculation of an event producer to a UI component.
+     * <p>
+     * The group and the events are rendered as a pass-through data attribute. When the user is about to trigger the
+     * event producer (pointer down, hover), the client-side eventing framework sends the requests of the observers of
+     * the events that are free of side effects, and it holds their responses until the events are dispatched.
+     * 
+     * @param context the faces context.
+     * @param parent the UI component to which the event producer is applied.
+     * @param behavior the event producer.
+     */
+    private void applySpeculative(FacesContext context, UIComponent parent, EventProducerBehavior behavior) {
+        parent.getPassThroughAttributes().merge(
+                SPECULATIVE_ATTRIBUTE,
+                behavior.getGroup() + ' ' + behavior.getEvents(),
+                (previous, value) -> previous.toString() + DELEGATED_PRODUCER_SEPARATOR + value
+        );
+        
+        addScriptResource(context);
+    }
+    
+    /**
+     * Converts the guard of an event producer to a JSON object, except for its key, which is rendered separately.
+     * 
+     * @param behavior the event producer.
+     * @return the JSON object.
+     */
+    static private String toJson(EventProducerBehavior behavior) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"suppressUnchanged\":").append(behavior.isSuppressUnchanged());
+        
+        if (behavior.getFilter() != null) {
+            builder.append(",\"filter\":");
+            Json.appendString(builder, behavior.getFilter());
+        }
+        
+        return builder.append('}').toString();
+    }
+    
+    /**
+     * Adds the script of the client-side eventing framework to the resources of the view, unless already present.
+     * <p>
+     * A delegated event producer has no client behavior, and therefore no client behavior renderer to declare the
+     * dependency to the script.
+     * 
+     * @param context the faces context.
+     */
+    static private void addScriptResource(FacesContext context) {
+        UIViewRoot viewRoot = context.getViewRoot();
+        boolean present = viewRoot.getComponentResources(context, SCRIPT_TARGET).stream().anyMatch(resource ->
+                SCRIPT_LIBRARY.equals(resource.getAttributes().get("library")) &&
+                SCRIPT_NAME.equals(resource.getAttributes().get("name"))
+        );
+        
+        if (!present) {
+            UIOutput resource = new UIOutput();
+            resource.setRendererType(SCRIPT_RENDERER_TYPE);
+            resource.getAttributes().put("library", SCRIPT_LIBRARY);
+            resource.getAttributes().put("name", SCRIPT_NAME);
+            viewRoot.addComponentResource(context, resource, SCRIPT_TARGET);
+        }
+    }
 }
@@ -24,10 +24,14 @@
 
 package steappe.jsf.eventing;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.faces.application.ResourceDependencies;
 import javax.faces.application.ResourceDependency;
 import javax.faces.component.behavior.ClientBehavior;
 import javax.faces.component.behavior.ClientBehaviorContext;
+import javax.faces.context.FacesContext;
 import javax.faces.render.ClientBehaviorRenderer;
 import javax.faces.render.FacesBehaviorRenderer;
 
@@ -48,9 +52,95 @@ public class EventProducerRenderer extends ClientBehaviorRenderer {
      */
     static public final String RENDERER_TYPE = "steappe.jsf.eventing.producer";
     
-    static private final char QUOTE = '\'';
+    /**
+     * The maximum number of scripts kept in the cache. Beyond it, the scripts are built but not cached, so that event
+     * names computed from unbounded data cannot make the cache grow indefinitely.
+     */
+    static private final int MAX_CACHED_SCRIPTS = 4096;
+    
+    /**
+     * The cached scripts, by group and space separated list of events, separated by a null character.
+     */
+    static private final ConcurrentMap<String, String> SCRIPTS = new ConcurrentHashMap<>();
+    
+    /**
+     * The number of cached scripts.
+     */
+    static private final AtomicInteger CACHED_SCRIPTS = new AtomicInteger();
+    
+    /**
+     * Gets the script that dispatches a list of events, from the cache when possible.
+     * 
+     * @param group the name of the group of events.
+     * @param events the space separated list of event names.
+     * @return the script.
+     */
+    static private String getScript(String group, String events) {
+        String key = group + '\0' + events;
+        String script = SCRIPTS.get(key);
+        
+        if (script == null) {
+            script = buildScript(group, events);
+            
+            if (CACHED_SCRIPTS.get() < MAX_CACHED_SCRIPTS && SCRIPTS.putIfAbsent(key, script) == null) {
+                CACHED_SCRIPTS.incrementAndGet();
+            }
+        }
+        
+        return script;
+    }
     
-    static private final char COMMA = ',';
+    /**
+     * Builds the script that dispatches a list of events.
+     * 
+     * @param group the name of the group of events.
+     * @param events the space separated list of event names.
+     * @return the script.
+     */
+    static private String buildScript(String group, String events) {
+        ScriptWriter script = new ScriptWriter(40 + group.length() + events.length());
+        script.append("steappe.eventing.dispatch(");
+        script.name(group).comma();
+        script.name(events);
+        script.append(')');
+        return script.toString();
+    }
+    
+    /**
+     * Builds the script that dispatches the list of events of a guarded event producer. The guard is evaluated by the
+     * client-side eventing framework, which knows the element and the DOM event at the origin of the dispatch.
+     * 
+     * @param context the faces context.
+     * @param behavior the event producer behavior.
+     * @return the script.
+     */
+    static private String buildGuardedScript(FacesContext context, EventProducerBehavior behavior) {
+        String group = behavior.getGroup();
+        String events = behavior.getEvents();
+        String key = behavior.getKey(context);
+        String filter = behavior.getFilter();
+        
+        ScriptWriter script = new ScriptWriter(80 + group.length() + events.length());
+        script.append("steappe.eventing.produce(this,event,");
+        script.name(group).comma();
+        script.name(events).comma();
+        script.append("{suppressUnchanged:").append(Boolean.toString(behavior.isSuppressUnchanged()));
+        
+        if (key != null) {
+            script.comma().append("key:").string(key);
+        }
+        
+        if (filter != null) {
+            /**
+             * the filter is a script of the page author, like the one of an event handler attribute; it is wrapped in
+             * a function so that it is only evaluated by the guard
+             */
+            script.comma().append("filter:function(event){return (").append(filter).append(");}");
+        }
+        
+        script.append("})");
+        return script.toString();
+    }
 
     @Override
     public String getScript(ClientBehaviorContext behaviorContext, ClientBehavior behavior) {
@@ -62,16 +152,20 @@ public class EventProducerRenderer extends ClientBehaviorRenderer {
             String group = dispatcherBehavior.getGroup();
             String events = dispatcherBehavior.getEvents();
             
-            /**
-             * the script dispatches the produced event to all the interested observers
-             */
-            StringBuilder builder = new StringBuilder(256);
-            builder.append("steappe.eventing.dispatch(");
-            builder.append(QUOTE).append(group).append(QUOTE);
-            builder.append(COMMA);
-            builder.append(QUOTE).append(events).append(QUOTE);
-            builder.append(')');
-            script = builder.toString();
+            if (dispatcherBehavior.isGuarded()) {
+                /**
+                 * a guarded script depends on the key and on the filter of the producer, it is not cached: the key is
+                 * evaluated for each rendering, e.g. for each row of an iterator
+                 */
+                script = buildGuardedScript(behaviorContext.getFacesContext(), dispatcherBehavior);
+            }
+            else {
+                /**
+                 * the script dispatches the produced event to all the interested observers; it only depends on the
+                 * group and on the events, and it is therefore shared by all the producers of the same events
+                 */
+                script = getScript(group, events);
+            }
         }
         else {
             script = super.getScript(behaviorContext, behavior);
@@ -0,0 +1,49 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * The authorizer of the subscriptions of the event streams: it decides whether the client of an event stream request
+ * may receive the messages of a group of events, including the markup pushed along with them.
+ * <p>
+ * The implementation is the one named by the context parameter EVENT_STREAM_AUTHORIZER, or else the first one found
+ * with {@link java.util.ServiceLoader} (META-INF/services/steappe.jsf.eventing.EventStreamAuthorizer), or else the
+ * {@link SessionStreamAuthorizer}, which only accepts the clients of an existing HTTP session.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public interface EventStreamAuthorizer {
+
+    /**
+     * Indicates whether the client of an event stream request may subscribe to a group of events.
+     *
+     * @param request the HTTP request that opens the event stream.
+     * @param group the name of the group of events.
+     * @return true if the client may receive the messages of the group.
+     */
+    boolean isAuthorized(HttpServletRequest request, String group);
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import javax.faces.application.ResourceDependencies;
+import javax.faces.application.ResourceDependency;
+import javax.faces.component.FacesComponent;
+import javax.faces.component.StateHelper;
+import javax.faces.component.UIComponent;
+import javax.faces.component.UIComponentBase;
+import javax.faces.component.UIViewRoot;
+import javax.faces.event.AbortProcessingException;
+import javax.faces.event.ComponentSystemEvent;
+import javax.faces.event.ListenerFor;
+import javax.faces.event.PostAddToViewEvent;
+
+/**
+ * The event stream UI component: it opens the stream of the events published by the server.
+ * 
+ * @author Stéphane Appercel - creation.
+ */
+@FacesComponent(value = "steappe.jsf.eventing.EventStream")
+@ResourceDependencies({
+    @ResourceDependency(library = "steappe", name = "js/eventing.js", target = "head")
+})
+@ListenerFor(systemEventClass = PostAddToViewEvent.class)
+public class EventStreamComponent extends UIComponentBase {
+    
+    /**
+     * The component family of this UI component.
+     */
+    static public final String COMPONENT_FAMILY = "steappe.jsf.eventing";
+    
+    /**
+     * The helper to access this component's state.
+     */
+    private final StateHelper stateHelper;
+
+    /**
+     * Constructs this UI component.
+     */
+    public EventStreamComponent() {
+        super.setRendererType(EventStreamRenderer.RENDERER_TYPE);
+        
+        this.stateHelper = super.getStateHelper();
+    }
+    
+    @Override
+    public String getFamily() {
+        return COMPONENT_FAMILY;
+    }
+    
+    /**
+     * Records that the view contains an event stream when this UI component is added to it, so that the interests of
+     * the view are recorded while its event observers are rendered (see {@link ViewInterests}).
+     * 
+     * @param event the system event.
+     * @throws AbortProcessingException if the processing of the event is to be aborted.
+     */
+    @Override
+    public void processEvent(ComponentSystemEvent event) throws AbortProcessingException {
+        super.processEvent(event);
+        
+        if (event instanceof PostAddToViewEvent) {
+            UIComponent root = this;
+            
+            while (root.getParent() != null) {
+                root = root.getParent();
+            }
+            
+            if (root instanceof UIViewRoot) {
+                ViewInterests.markStreamed((UIViewRoot) root);
+            }
+        }
+    }
+    
+    /**
+     * Sets the space separated list of the names of the groups of events to subscribe.
+     * 
+     * @param groups the space separated list of group names.
+     */
+    public void setGroups(String groups) {
+        StringKeys.groups.put(stateHelper, groups);
+    }
+    
+    /**
+     * Gets the space separated list of the names of the groups of events to subscribe. If none is specified, it
+     * defaults to "global".
+     * 
+     * @return the space separated list of group names.
+     */
+    public String getGroups() {
+        return StringKeys.groups.get(stateHelper, EventProducerHandler.DEFAULT_GROUP);
+    }
+    
+    /**
+     * The names of the tag attributes of type String used by this UI component.
+     */
+    private static enum StringKeys implements ComponentStateKey<String> {
+        groups;
+
+        @Override
+        public Class<String> type() {
+            return String.class;
+        }
+    }
+}
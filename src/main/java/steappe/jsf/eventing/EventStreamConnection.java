@@ -0,0 +1,535 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/**
+ * A connection of a client to the event stream.
+ * <p>
+ * The connection holds no thread: the frames to send are queued, and they are written with non-blocking writes as
+ * long as the output stream is ready. When it is not ready, the container calls back the connection once it can be
+ * written again.
+ * <p>
+ * The outbound queue is bounded and coalescing: it holds at most one pending message per group of events, and a
+ * message delivered while another one of the same group is still pending is merged into it. A slow client therefore
+ * receives fewer, larger messages instead of making the queue grow. The pending messages are written in the order
+ * of the first message merged into them, and the ID of a frame is the highest ID below which every message has been
+ * written, so that a client resuming from its last event ID never misses a message merged into a later frame.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventStreamConnection implements EventSubscriber, WriteListener, AsyncListener {
+
+    static private final Logger LOGGER = Logger.getLogger(EventStreamConnection.class.getName());
+
+    /**
+     * The REGEX pattern used to split a whitespace separated list of event names.
+     */
+    static private final Pattern WHITESPACE_SEPARATED_LIST_PATTERN = Pattern.compile("\\s+");
+
+    /**
+     * The maximum number of control frames (retry, heartbeat) waiting to be written.
+     */
+    static private final int MAX_PENDING_CONTROL_FRAMES = 4;
+
+    /**
+     * The asynchronous context of the request that opened the connection.
+     */
+    private final AsyncContext asyncContext;
+
+    /**
+     * The output stream of the response.
+     */
+    private final ServletOutputStream output;
+
+    /**
+     * The names of the groups of events subscribed by the client.
+     */
+    private final Set<String> groups;
+
+    /**
+     * The interests of the view of the client, which filter the delivered messages, if known.
+     */
+    private final Optional<ViewInterests> viewInterests;
+
+    /**
+     * The hub to which this connection is subscribed.
+     */
+    private final EventStreamHub hub;
+
+    /**
+     * The control frames waiting to be written.
+     */
+    private final Queue<byte[]> pendingControlFrames = new ArrayDeque<>();
+
+    /**
+     * The messages waiting to be written, by name of group of events.
+     */
+    private final Map<String, PendingMessage> pendingMessages = new LinkedHashMap<>();
+
+    /**
+     * The messages delivered live while the connection is being resumed, by ID, or null once it is resumed.
+     */
+    private SortedMap<Long, BroadcastMessage> resumedMessages;
+
+    /**
+     * The ID below which the delivered messages are ignored: they are known by the client, were published before the
+     * connection, or were replayed when the connection was resumed.
+     */
+    private long skippedMessageId;
+
+    /**
+     * The bytes of the frame being written, or null if none is being written.
+     */
+    private byte[] currentFrame;
+
+    /**
+     * Whether bytes were written since the last flush.
+     */
+    private boolean unflushed;
+
+    /**
+     * Whether this connection is closed.
+     */
+    private boolean closed;
+
+    /**
+     * Constructs a connection.
+     *
+     * @param asyncContext the asynchronous context of the request that opened the connection.
+     * @param output the output stream of the response.
+     * @param groups the names of the groups of events subscribed by the client.
+     * @param hub the hub to which the connection is subscribed.
+     */
+    public EventStreamConnection(
+            AsyncContext asyncContext,
+            ServletOutputStream output,
+            Set<String> groups,
+            EventStreamHub hub) {
+        this(asyncContext, output, groups, Optional.empty(), hub);
+    }
+
+    /**
+     * Constructs a connection whose messages are filtered by the interests of the view of the client: the messages
+     * of the events that the view does not observe are not written.
+     *
+     * @param asyncContext the asynchronous context of the request that opened the connection.
+     * @param output the output stream of the response.
+     * @param groups the names of the groups of events subscribed by the client.
+     * @param viewInterests the interests of the view of the client, if known.
+     * @param hub the hub to which the connection is subscribed.
+     */
+    public EventStreamConnection(
+            AsyncContext asyncContext,
+            ServletOutputStream output,
+            Set<String> groups,
+            Optional<ViewInterests> viewInterests,
+            EventStreamHub hub) {
+        this.asyncContext = asyncContext;
+        this.output = output;
+        this.groups = Collections.unmodifiableSet(groups);
+        this.viewInterests = viewInterests;
+        this.hub = hub;
+    }
+
+    /**
+     * Gets the names of the groups of events subscribed by the client.
+     *
+     * @return the names of the groups.
+     */
+    public Set<String> getGroups() {
+        return this.groups;
+    }
+
+    @Override
+    public void deliver(long id, BroadcastMessage message) {
+        deliver(id, message, false);
+    }
+
+    /**
+     * Delivers a message replayed from the history while this connection is being resumed.
+     *
+     * @param id the ID of the message on this node.
+     * @param message the message.
+     */
+    void replay(long id, BroadcastMessage message) {
+        deliver(id, message, true);
+    }
+
+    /**
+     * Delivers a message to this connection.
+     *
+     * @param id the ID of the message on this node.
+     * @param message the message.
+     * @param replayed true if the message is replayed from the history, false if it is delivered live.
+     */
+    private void deliver(long id, BroadcastMessage message, boolean replayed) {
+        boolean observed = viewInterests.map(interests -> interests.isObserved(message)).orElse(true);
+
+        synchronized (this) {
+            if (!observed || closed || id <= skippedMessageId) {
+                return;
+            }
+
+            if (resumedMessages != null && !replayed) {
+                resumedMessages.put(id, message);
+                return;
+            }
+
+            enqueue(id, message);
+        }
+
+        drain();
+    }
+
+    /**
+     * Queues a message to write, or merges it into the pending message of its group.
+     *
+     * @param id the ID of the message.
+     * @param message the message.
+     */
+    private void enqueue(long id, BroadcastMessage message) {
+        PendingMessage pendingMessage = pendingMessages.get(message.getGroup());
+
+        if (pendingMessage != null) {
+            pendingMessage.merge(id, message);
+        }
+        else {
+            pendingMessages.put(message.getGroup(), new PendingMessage(id, message));
+        }
+    }
+
+    /**
+     * Sends a control frame of the event stream (retry, heartbeat). The frame is queued and written as soon as the
+     * output stream is ready; it is dropped if too many control frames are already waiting.
+     *
+     * @param frame the frame to send.
+     */
+    public void sendControlFrame(String frame) {
+        synchronized (this) {
+            if (closed || pendingControlFrames.size() >= MAX_PENDING_CONTROL_FRAMES) {
+                return;
+            }
+
+            pendingControlFrames.add(frame.getBytes(StandardCharsets.UTF_8));
+        }
+
+        drain();
+    }
+
+    /**
+     * Indicates whether this connection has nothing to write.
+     *
+     * @return true if nothing is waiting to be written.
+     */
+    public synchronized boolean isIdle() {
+        return currentFrame == null && pendingControlFrames.isEmpty() && pendingMessages.isEmpty();
+    }
+
+    /**
+     * Starts resuming this connection: until it is resumed, the messages delivered live are held, so that the
+     * messages delivered twice (once live, once from the history) are only sent once, and in the order of their IDs.
+     *
+     * @param knownId the ID of the last message known by the client, or published before the connection.
+     */
+    synchronized void startResuming(long knownId) {
+        resumedMessages = new TreeMap<>();
+        skippedMessageId = knownId;
+    }
+
+    /**
+     * Ends resuming this connection: the held messages that are later than the replayed ones are sent, and the
+     * messages delivered later are ignored if their ID is not greater than the ID of the last replayed message; those
+     * were either replayed, or dropped from the history before the connection.
+     *
+     * @param replayedId the ID of the last delivered message when the history was replayed.
+     */
+    void endResuming(long replayedId) {
+        synchronized (this) {
+            if (resumedMessages != null) {
+                resumedMessages.tailMap(replayedId + 1).forEach(this::enqueue);
+                resumedMessages = null;
+            }
+
+            skippedMessageId = Math.max(skippedMessageId, replayedId);
+        }
+
+        drain();
+    }
+
+    /**
+     * Closes this connection.
+     */
+    public void close() {
+        boolean wasClosed;
+
+        synchronized (this) {
+            wasClosed = closed;
+            closed = true;
+            pendingControlFrames.clear();
+            pendingMessages.clear();
+        }
+
+        if (!wasClosed) {
+            hub.unsubscribe(this);
+
+            try {
+                asyncContext.complete();
+            }
+            catch (IllegalStateException e) {
+                /**
+                 * the asynchronous context was already completed by the container
+                 */
+            }
+        }
+    }
+
+    @Override
+    public void onWritePossible() {
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        LOGGER.log(Level.FINE, "event stream connection failed", t);
+        close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+        /**
+         * nothing to do
+         */
+    }
+
+    /**
+     * Writes the pending frames as long as the output stream is ready, then flushes them.
+     */
+    private void drain() {
+        boolean failed = false;
+
+        synchronized (this) {
+            try {
+                while (!closed && output.isReady()) {
+                    byte[] frame = nextFrame();
+
+                    if (frame != null) {
+                        output.write(frame);
+                        currentFrame = null;
+                        unflushed = true;
+                    }
+                    else if (unflushed) {
+                        output.flush();
+                        unflushed = false;
+                    }
+                    else {
+                        break;
+                    }
+                }
+            }
+            catch (IOException | IllegalStateException e) {
+                failed = true;
+            }
+        }
+
+        if (failed) {
+            close();
+        }
+    }
+
+    /**
+     * Takes the next frame to write: the control frames first, then the messages in the order of the first message
+     * merged into them.
+     *
+     * @return the next frame, or null if nothing is waiting to be written.
+     */
+    private byte[] nextFrame() {
+        if (currentFrame == null) {
+            currentFrame = pendingControlFrames.poll();
+        }
+
+        if (currentFrame == null && !pendingMessages.isEmpty()) {
+            PendingMessage pendingMessage = null;
+
+            for (PendingMessage candidate : pendingMessages.values()) {
+                if (pendingMessage == null || candidate.firstId < pendingMessage.firstId) {
+                    pendingMessage = candidate;
+                }
+            }
+
+            pendingMessages.remove(pendingMessage.group);
+
+            /**
+             * the frame must not acknowledge the messages merged into the messages still pending, nor the messages of
+             * the other groups still waiting for their fan-out: the client resumes from the ID of the last frame it
+             * received
+             */
+            long resumeId = pendingMessage.id;
+
+            for (PendingMessage remaining : pendingMessages.values()) {
+                resumeId = Math.min(resumeId, remaining.firstId - 1);
+            }
+
+            resumeId = hub.getBroadcaster().getResumeId(resumeId);
+            currentFrame = pendingMessage.toFrame(resumeId).getBytes(StandardCharsets.UTF_8);
+        }
+
+        return currentFrame;
+    }
+
+    /**
+     * A message waiting to be written, into which the later messages of the same group are merged.
+     */
+    static private final class PendingMessage {
+
+        /**
+         * The ID of the first message merged into this one.
+         */
+        private final long firstId;
+
+        /**
+         * The ID of the last message merged into this one.
+         */
+        private long id;
+
+        /**
+         * The name of the group of events.
+         */
+        private final String group;
+
+        /**
+         * The names of the events, without duplicates, in the order of their first occurrence.
+         */
+        private final Set<String> events = new LinkedHashSet<>();
+
+        /**
+         * The markup of the updated components by client ID, the later messages overriding the earlier ones, or null
+         * if any of the merged messages carries no update: the client must then render the components itself.
+         */
+        private Map<String, String> updates;
+
+        /**
+         * Constructs a pending message.
+         *
+         * @param id the ID of the message.
+         * @param message the message.
+         */
+        private PendingMessage(long id, BroadcastMessage message) {
+            this.firstId = id;
+            this.group = message.getGroup();
+            this.updates = message.getUpdates().isEmpty() ? null : new LinkedHashMap<>();
+            merge(id, message);
+        }
+
+        /**
+         * Merges a later message of the same group into this one.
+         *
+         * @param messageId the ID of the later message.
+         * @param message the later message.
+         */
+        private void merge(long messageId, BroadcastMessage message) {
+            this.id = Math.max(this.id, messageId);
+            String list = message.getEvents().trim();
+
+            if (!list.isEmpty()) {
+                events.addAll(Arrays.asList(WHITESPACE_SEPARATED_LIST_PATTERN.split(list)));
+            }
+
+            if (message.getUpdates().isEmpty()) {
+                this.updates = null;
+            }
+            else if (this.updates != null) {
+                this.updates.putAll(message.getUpdates());
+            }
+        }
+
+        /**
+         * Converts this message to a frame of the event stream: the group and the events on the first two lines, and
+         * the updates, if any, as a JSON object on the third line.
+         *
+         * @param resumeId the ID of the frame, from which the client resumes the stream if it reconnects.
+         * @return the frame.
+         */
+        private String toFrame(long resumeId) {
+            StringBuilder frame = new StringBuilder(128);
+            frame.append("id: ").append(resumeId);
+            frame.append("\ndata: ").append(toLine(group));
+            frame.append("\ndata: ").append(toLine(String.join(" ", events)));
+
+            if (updates != null) {
+                frame.append("\ndata: ");
+                Json.appendValue(frame, updates);
+            }
+
+            return frame.append("\n\n").toString();
+        }
+
+        /**
+         * Converts a value to a single line of an event stream frame.
+         *
+         * @param value the value.
+         * @return the value, where the line terminators are replaced by spaces.
+         */
+        static private String toLine(String value) {
+            return value.replace('\r', ' ').replace('\n', ' ');
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletContext;
+
+/**
+ * The hub of the event streams of a web application.
+ * <p>
+ * The hub subscribes the connections to the event stream to the broadcaster of the web application (see
+ * {@link EventBroadcaster}), which delivers them the published messages of their groups. A client reconnecting with
+ * the ID of the last event it received resumes the stream from the history of the broadcaster. A single scheduled
+ * thread sends heartbeats on the idle connections, so that the intermediaries do not close them.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventStreamHub {
+
+    /**
+     * The name of the servlet context attribute that holds the hub.
+     */
+    static private final String ATTRIBUTE_NAME = EventStreamHub.class.getName();
+
+    /**
+     * The frame of a heartbeat: a comment, ignored by the clients.
+     */
+    static private final String HEARTBEAT_FRAME = ":\n\n";
+
+    /**
+     * The delay, in milliseconds, after which a client reconnects when its connection is lost.
+     */
+    static private final int RETRY_DELAY = 3000;
+
+    /**
+     * All the connections.
+     */
+    private final Set<EventStreamConnection> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The broadcaster of the web application.
+     */
+    private final EventBroadcaster broadcaster;
+
+    /**
+     * The scheduler of the heartbeats.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a hub.
+     *
+     * @param broadcaster the broadcaster of the web application.
+     * @param heartbeatInterval the interval, in seconds, between two heartbeats.
+     */
+    EventStreamHub(EventBroadcaster broadcaster, int heartbeatInterval) {
+        this.broadcaster = broadcaster;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "steappe-eventing-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleAtFixedRate(this::heartbeat, heartbeatInterval, heartbeatInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates the hub of a web application.
+     *
+     * @param context the servlet context of the web application.
+     * @return the created hub.
+     */
+    static EventStreamHub create(ServletContext context) {
+        int heartbeatInterval = ContextParameter.EVENT_STREAM_HEARTBEAT.getInt(context, 20);
+        EventStreamHub hub = new EventStreamHub(EventBroadcaster.getInstance(context), heartbeatInterval);
+        context.setAttribute(ATTRIBUTE_NAME, hub);
+        return hub;
+    }
+
+    /**
+     * Gets the hub of a web application.
+     *
+     * @param context the servlet context of the web application.
+     * @return the hub, or nothing if the event stream servlet is not started.
+     */
+    static public Optional<EventStreamHub> getInstance(ServletContext context) {
+        return Optional.ofNullable((EventStreamHub) context.getAttribute(ATTRIBUTE_NAME));
+    }
+
+    /**
+     * Destroys this hub: closes all the connections and stops the heartbeats.
+     *
+     * @param context the servlet context of the web application.
+     */
+    void destroy(ServletContext context) {
+        context.removeAttribute(ATTRIBUTE_NAME);
+        scheduler.shutdownNow();
+        connections.forEach(EventStreamConnection::close);
+    }
+
+    /**
+     * Subscribes a connection to the groups of events it requested. The messages published after the last event ID
+     * known by the client, if any, are sent again first.
+     *
+     * @param connection the connection to subscribe.
+     * @param knownEventId the ID of the last event received by the client, if it is reconnecting.
+     */
+    void subscribe(EventStreamConnection connection, OptionalLong knownEventId) {
+        connection.sendControlFrame("retry: " + RETRY_DELAY + "\n\n");
+        connections.add(connection);
+
+        /**
+         * the connection is subscribed before the history is replayed, so that no message is lost in between; a
+         * message both delivered live and replayed is only sent once, and a new connection skips the messages
+         * delivered before it, whose fan-out may still be pending. An ID above the last one comes from a previous run of the
+         * node: the client then gets the later messages, like a new connection.
+         */
+        long lastId = broadcaster.getLastMessageId();
+        long knownId = Math.min(knownEventId.orElse(lastId), lastId);
+        connection.startResuming(knownId);
+        broadcaster.subscribe(connection.getGroups(), connection);
+        connection.endResuming(broadcaster.replay(knownId, connection.getGroups(), connection::replay));
+    }
+
+    /**
+     * Gets the broadcaster of the web application.
+     *
+     * @return the broadcaster.
+     */
+    EventBroadcaster getBroadcaster() {
+        return this.broadcaster;
+    }
+
+    /**
+     * Unsubscribes a connection from all its groups of events.
+     *
+     * @param connection the connection to unsubscribe.
+     */
+    void unsubscribe(EventStreamConnection connection) {
+        connections.remove(connection);
+        broadcaster.unsubscribe(connection.getGroups(), connection);
+    }
+
+    /**
+     * Sends a heartbeat on the idle connections.
+     */
+    private void heartbeat() {
+        connections.stream().filter(EventStreamConnection::isIdle).forEach(connection ->
+                connection.sendControlFrame(HEARTBEAT_FRAME)
+        );
+    }
+}
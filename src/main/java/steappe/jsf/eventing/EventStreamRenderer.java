@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.IOException;
+import javax.faces.component.UIComponent;
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+import javax.faces.context.ResponseWriter;
+import javax.faces.render.FacesRenderer;
+import javax.faces.render.Renderer;
+
+/**
+ * The renderer of the event stream UI component.
+ * 
+ * @author Stéphane Appercel - creation.
+ */
+@FacesRenderer(
+        componentFamily = EventStreamComponent.COMPONENT_FAMILY,
+        rendererType = EventStreamRenderer.RENDERER_TYPE
+)
+public class EventStreamRenderer extends Renderer {
+    
+    /**
+     * The renderer type implemented by this renderer.
+     */
+    static public final String RENDERER_TYPE = "steappe.jsf.eventing.stream";
+
+    @Override
+    public void encodeEnd(FacesContext context, UIComponent component) throws IOException {
+        if (component instanceof EventStreamComponent) {
+            EventStreamComponent eventStream = (EventStreamComponent) component;
+            
+            String clientId = eventStream.getClientId(context);
+            ExternalContext externalContext = context.getExternalContext();
+            String token = ViewInterests.getCurrentInstance(context).keep(context);
+            String url = externalContext.encodeResourceURL(
+                    externalContext.getRequestContextPath() + EventStreamServlet.URL_PATTERN
+                            + '?' + EventStreamServlet.VIEW_PARAMETER + '=' + token
+            );
+            String groups = eventStream.getGroups();
+            
+            ScriptWriter script = new ScriptWriter(64 + url.length() + groups.length());
+            script.append("steappe.eventing.openEventStream(");
+            script.string(url).comma();
+            script.name(groups);
+            script.append(");");
+            
+            ResponseWriter writer = context.getResponseWriter();
+            writer.startElement("span", eventStream);
+            writer.writeAttribute("id", clientId, "id");
+            writer.startElement("script", eventStream);
+            script.writeTo(writer);
+            writer.endElement("script");
+            writer.endElement("span");
+        }
+    }
+}
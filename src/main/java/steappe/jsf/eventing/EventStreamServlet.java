@@ -0,0 +1,247 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * The servlet that streams the published events to the client-side eventing framework, as Server-Sent Events.
+ * <p>
+ * The servlet is declared in the web fragment of the library, and it is mapped to {@link #URL_PATTERN}. It only serves
+ * the event streams when the context parameter EVENT_STREAM is true, and it answers 404 (Not Found) otherwise. Each
+ * request is put in asynchronous mode and the events are written with non-blocking writes: an idle connection holds
+ * no thread.
+ * <p>
+ * A request is rejected with 403 (Forbidden) unless the authorizer of the web application (see
+ * {@link EventStreamAuthorizer}) accepts all the groups it subscribes to.
+ * <p>
+ * Request parameters:
+ * <ul>
+ * <li>groups: the space separated list of the names of the groups of events to subscribe; defaults to 'global'</li>
+ * <li>lastEventId: the ID of the last event received by the client, when it is not sent in the 'Last-Event-ID'
+ * header</li>
+ * <li>view: the token of the view of the client, whose interests (see {@link ViewInterests}) filter the messages
+ * written to the stream; when absent or unknown, all the messages of the subscribed groups are written</li>
+ * </ul>
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventStreamServlet extends HttpServlet {
+
+    static private final long serialVersionUID = 1L;
+
+    /**
+     * The URL pattern to which this servlet is mapped, relative to the context path of the web application.
+     */
+    static public final String URL_PATTERN = "/steappe.eventing/stream";
+
+    /**
+     * The name of the request parameter that holds the token of the view of the client.
+     */
+    static public final String VIEW_PARAMETER = "view";
+
+    /**
+     * The REGEX pattern used to split a whitespace separated list of group names.
+     */
+    static private final Pattern WHITESPACE_SEPARATED_LIST_PATTERN = Pattern.compile("\\s+");
+
+    /**
+     * The hub of the event streams, or null if the event streams are disabled.
+     */
+    private transient EventStreamHub hub;
+
+    /**
+     * The authorizer of the subscriptions, or null if the event streams are disabled.
+     */
+    private transient EventStreamAuthorizer authorizer;
+
+    /**
+     * Parses the names of the groups of events to subscribe.
+     *
+     * @param request the HTTP request.
+     * @return the names of the groups.
+     */
+    static private Set<String> getGroups(HttpServletRequest request) {
+        String list = Optional.ofNullable(request.getParameter("groups")).map(String::trim).orElse("");
+        Set<String> groups = new LinkedHashSet<>();
+
+        if (!list.isEmpty()) {
+            groups.addAll(Arrays.asList(WHITESPACE_SEPARATED_LIST_PATTERN.split(list)));
+        }
+        else {
+            groups.add(EventProducerHandler.DEFAULT_GROUP);
+        }
+
+        return groups;
+    }
+
+    /**
+     * Parses the ID of the last event received by the client.
+     *
+     * @param request the HTTP request.
+     * @return the ID of the last event, or nothing if the client is not reconnecting.
+     */
+    static private OptionalLong getLastEventId(HttpServletRequest request) {
+        String value = Optional.ofNullable(request.getHeader("Last-Event-ID")).orElse(request.getParameter("lastEventId"));
+        OptionalLong lastEventId = OptionalLong.empty();
+
+        if (value != null) {
+            try {
+                lastEventId = OptionalLong.of(Long.parseLong(value.trim()));
+            }
+            catch (NumberFormatException e) {
+                /**
+                 * an unknown event ID: the stream is not resumed
+                 */
+            }
+        }
+
+        return lastEventId;
+    }
+
+    /**
+     * Gets the interests of the view of the client.
+     *
+     * @param request the HTTP request.
+     * @return the interests of the view, or nothing if the view is unknown.
+     */
+    static private Optional<ViewInterests> getViewInterests(HttpServletRequest request) {
+        String token = request.getParameter(VIEW_PARAMETER);
+        HttpSession session = request.getSession(false);
+        return token != null && session != null ? ViewInterests.getInstance(session, token) : Optional.empty();
+    }
+
+    /**
+     * Creates the authorizer of the subscriptions of a web application.
+     *
+     * @param context the servlet context of the web application.
+     * @return the authorizer named by the context parameter, or else the first one provided as a service, or else the
+     * one that only accepts the clients of an existing session.
+     * @throws ServletException if the named authorizer cannot be created.
+     */
+    static private EventStreamAuthorizer createAuthorizer(ServletContext context) throws ServletException {
+        Optional<String> className = ContextParameter.EVENT_STREAM_AUTHORIZER.getValue(context);
+        EventStreamAuthorizer authorizer;
+
+        if (className.isPresent()) {
+            try {
+                ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+                authorizer = (EventStreamAuthorizer) Class.forName(className.get(), true, classLoader)
+                        .getDeclaredConstructor().newInstance();
+            }
+            catch (ReflectiveOperationException | ClassCastException e) {
+                throw new ServletException("cannot create the event stream authorizer: " + className.get(), e);
+            }
+        }
+        else {
+            Iterator<EventStreamAuthorizer> providers = ServiceLoader.load(EventStreamAuthorizer.class).iterator();
+            authorizer = providers.hasNext() ? providers.next() : new SessionStreamAuthorizer();
+        }
+
+        return authorizer;
+    }
+
+    @Override
+    public void init() throws ServletException {
+        ServletContext context = getServletContext();
+
+        if (ContextParameter.EVENT_STREAM.isEnabled(context)) {
+            authorizer = createAuthorizer(context);
+            hub = EventStreamHub.create(context);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (hub != null) {
+            hub.destroy(getServletContext());
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (hub == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+        else {
+            Set<String> groups = getGroups(request);
+
+            if (groups.stream().allMatch(group -> authorizer.isAuthorized(request, group))) {
+                open(request, response, groups);
+            }
+            else {
+                response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            }
+        }
+    }
+
+    /**
+     * Opens the event stream of an authorized request.
+     *
+     * @param request the HTTP request.
+     * @param response the HTTP response.
+     * @param groups the names of the groups of events subscribed by the client.
+     * @throws IOException if an I/O error occurred.
+     */
+    private void open(HttpServletRequest request, HttpServletResponse response, Set<String> groups)
+            throws IOException {
+        OptionalLong lastEventId = getLastEventId(request);
+        Optional<ViewInterests> viewInterests = getViewInterests(request);
+
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+
+        ServletOutputStream output = response.getOutputStream();
+        EventStreamConnection connection = new EventStreamConnection(asyncContext, output, groups, viewInterests, hub);
+        asyncContext.addListener(connection);
+
+        /**
+         * the write listener must be set before anything is written, because writes are non-blocking from now on
+         */
+        output.setWriteListener(connection);
+        hub.subscribe(connection, lastEventId);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package steappe.jsf.eventing;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.faces.FacesException;
+import javax.faces.context.FacesContext;
+import javax.servlet.ServletContext;
+
+/**
+ * The trace of a request sent by an event observer.
+ * <p>
+ * The client-side eventing framework generates a trace ID for each dispatch of events, and sends it with every
+ * request of the event observers concerned by the dispatch, as a W3C trace context (traceparent). The server records
+ * the spans of the processing of each request under this trace ID, so that all the requests resulting from the same
+ * user action are correlated. The trace is exported at the end of the request, as an OpenTelemetry (OTLP/JSON)
+ * document, by the exporter selected by the context parameter TRACE_EXPORTER: after the render response phase, or
+ * after the phase that completed the response (e.g. a redirection) or that failed (see
+ * {@link EventTracePhaseListener}).
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventTrace {
+
+    /**
+     * The name of the faces context attribute that holds the trace of the current request.
+     */
+    static private final String ATTRIBUTE_NAME = EventTrace.class.getName();
+
+    /**
+     * The name of the servlet context attribute that holds the trace exporter.
+     */
+    static private final String EXPORTER_ATTRIBUTE_NAME = TraceExporter.class.getName();
+
+    /**
+     * The name of the instrumentation scope of the spans, also used as the name of the service.
+     */
+    static private final String SCOPE_NAME = "steappe.jsf.eventing";
+
+    /**
+     * The REGEX pattern of a W3C trace context of version 00.
+     */
+    static private final Pattern TRACEPARENT_PATTERN = Pattern.compile("00-([0-9a-f]{32})-([0-9a-f]{16})-[0-9a-f]{2}");
+
+    /**
+     * The REGEX pattern of an invalid trace or span ID.
+     */
+    static private final Pattern INVALID_ID_PATTERN = Pattern.compile("0+");
+
+    /**
+     * The ID of the trace, as 32 hexadecimal digits.
+     */
+    private final String traceId;
+
+    /**
+     * The span of the whole request.
+     */
+    private final TraceSpan requestSpan;
+
+    /**
+     * The spans of the request, the span of the whole request included.
+     */
+    private final List<TraceSpan> spans = new ArrayList<>();
+
+    /**
+     * The exporter of the trace.
+     */
+    private final TraceExporter exporter;
+
+    /**
+     * Constructs a trace.
+     *
+     * @param traceId the ID of the trace.
+     * @param parentSpanId the ID of the span of the client that sent the request.
+     * @param exporter the exporter of the trace.
+     */
+    private EventTrace(String traceId, String parentSpanId, TraceExporter exporter) {
+        this.traceId = traceId;
+        this.exporter = exporter;
+        this.requestSpan = new TraceSpan("steappe.eventing.request", TraceSpan.KIND_SERVER, newSpanId(), parentSpanId);
+        this.spans.add(requestSpan);
+    }
+
+    /**
+     * Starts the trace of the current request, if the client sent a valid trace context and if a trace exporter is
+     * configured.
+     *
+     * @param context the faces context.
+     * @param traceparent the trace context sent by the client, possibly null.
+     * @return the started trace, or nothing if the request is not traced.
+     */
+    static Optional<EventTrace> start(FacesContext context, String traceparent) {
+        Matcher matcher = TRACEPARENT_PATTERN.matcher(traceparent == null ? "" : traceparent.trim());
+        Optional<TraceExporter> exporter = getExporter(context);
+        EventTrace trace = null;
+
+        if (matcher.matches() && exporter.isPresent()
+                && !INVALID_ID_PATTERN.matcher(matcher.group(1)).matches()
+                && !INVALID_ID_PATTERN.matcher(matcher.group(2)).matches()) {
+            trace = new EventTrace(matcher.group(1), matcher.group(2), exporter.get());
+            context.getAttributes().put(ATTRIBUTE_NAME, trace);
+        }
+
+        return Optional.ofNullable(trace);
+    }
+
+    /**
+     * Gets the trace of the current request.
+     *
+     * @param context the faces context.
+     * @return the trace, or nothing if the current request is not traced.
+     */
+    static public Optional<EventTrace> getCurrentInstance(FacesContext context) {
+        return Optional.ofNullable((EventTrace) context.getAttributes().get(ATTRIBUTE_NAME));
+    }
+
+    /**
+     * Starts a span of the current request, if it is traced.
+     *
+     * @param context the faces context.
+     * @param name the name of the span.
+     * @return the started span, or nothing if the current request is not traced.
+     */
+    static public Optional<TraceSpan> startSpan(FacesContext context, String name) {
+        return getCurrentInstance(context).map(trace -> trace.startSpan(name));
+    }
+
+    /**
+     * Gets the ID of this trace.
+     *
+     * @return the ID of the trace, as 32 hexadecimal digits.
+     */
+    public String getTraceId() {
+        return this.traceId;
+    }
+
+    /**
+     * Gets the span of the whole request, which is the parent of the other spans.
+     *
+     * @return the span of the request.
+     */
+    public TraceSpan getRequestSpan() {
+        return this.requestSpan;
+    }
+
+    /**
+     * Starts a span of the request, as a child of the span of the whole request.
+     *
+     * @param name the name of the span.
+     * @return the started span.
+     */
+    public TraceSpan startSpan(String name) {
+        TraceSpan span = new TraceSpan(name, TraceSpan.KIND_INTERNAL, newSpanId(), requestSpan.getSpanId());
+        spans.add(span);
+        return span;
+    }
+
+    /**
+     * Ends the trace of the current request, and exports it.
+     *
+     * @param context the faces context.
+     */
+    void end(FacesContext context) {
+        context.getAttributes().remove(ATTRIBUTE_NAME);
+        requestSpan.end();
+        exporter.export(toOtlpJson());
+    }
+
+    /**
+     * Converts this trace into an OTLP/JSON document.
+     *
+     * @return the JSON document, on a single line.
+     */
+    private String toOtlpJson() {
+        StringBuilder builder = new StringBuilder(256 * spans.size());
+        builder.append("{\"resourceSpans\":[{\"resource\":{\"attributes\":[{\"key\":\"service.name\",\"value\":");
+        builder.append("{\"stringValue\":\"").append(SCOPE_NAME).append("\"}}]},");
+        builder.append("\"scopeSpans\":[{\"scope\":{\"name\":\"").append(SCOPE_NAME).append("\"},\"spans\":[");
+
+        for (int i = 0; i < spans.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+
+            spans.get(i).appendTo(builder, traceId);
+        }
+
+        return builder.append("]}]}]}").toString();
+    }
+
+    /**
+     * Generates a random span ID.
+     *
+     * @return the span ID, as 16 hexadecimal digits.
+     */
+    static private String newSpanId() {
+        long id = 0;
+
+        while (id == 0) {
+            id = ThreadLocalRandom.current().nextLong();
+        }
+
+        return String.format("%016x", id);
+    }
+
+    /**
+     * Gets the trace exporter of the current web application, and creates it if needed.
+     *
+     * @param context the faces context.
+     * @return the trace exporter, or nothing if the requests are not traced.
+     */
+    static private Optional<TraceExporter> getExporter(FacesContext context) {
+        ServletContext servletContext = (ServletContext) context.getExternalContext().getContext();
+        Optional<String> name = ContextParameter.TRACE_EXPORTER.getValue(servletContext);
+        TraceExporter exporter = null;
+
+        if (name.isPresent()) {
+            exporter = (TraceExporter) servletContext.getAttribute(EXPORTER_ATTRIBUTE_NAME);
+
+            if (exporter == null) {
+                synchronized (EventTrace.class) {
+                    exporter = (TraceExporter) servletContext.getAttribute(EXPORTER_ATTRIBUTE_NAME);
+
+                    if (exporter == null) {
+                        exporter = createExporter(servletContext, name.get());
+                        servletContext.setAttribute(EXPORTER_ATTRIBUTE_NAME, exporter);
+                    }
+                }
+            }
+        }
+
+        return Optional.ofNullable(exporter);
+    }
+
+    /**
+     * Creates the trace exporter of a web application.
+     *
+     * @param context the servlet context of the web application.
+     * @param name "log", "file", or the name of the class of the exporter.
+     * @return the trace exporter.
+     */
+    static private TraceExporter createExporter(ServletContext context, String name) {
+        TraceExporter exporter;
+
+        if ("log".equals(name)) {
+            exporter = new LogTraceExporter();
+        }
+        else if ("file".equals(name)) {
+            exporter = ContextParameter.TRACE_FILE.getValue(context)
+                    .map(file -> new FileTraceExporter(Paths.get(file)))
+                    .orElseGet(FileTraceExporter::new);
+        }
+        else {
+            try {
+                ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+                exporter = (TraceExporter) Class.forName(name, true, classLoader).getConstructor().newInstance();
+            }
+            catch (ReflectiveOperationException | ClassCastException e) {
+                throw new FacesException("cannot create the trace exporter: " + name, e);
+            }
+        }
+
+        return exporter;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.util.Iterator;
+import javax.faces.context.FacesContext;
+import javax.faces.event.ExceptionQueuedEvent;
+import javax.faces.event.PhaseEvent;
+import javax.faces.event.PhaseId;
+import javax.faces.event.PhaseListener;
+
+/**
+ * The phase listener that ends and exports the trace of a request sent by an event observer (see {@link EventTrace}).
+ * It is declared in the faces configuration of the library.
+ * <p>
+ * The trace ends after the render response phase, or after the phase that completed the response (a redirection, a
+ * response written by an action listener) or that queued an exception: the exception handler of the JSF
+ * implementation then writes the error and skips the remaining phases. The span of the request has an error status
+ * when an exception was queued.
+ * <p>
+ * This listener is declared before the other phase listeners of the library, so that it is called after them at the
+ * end of a phase.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventTracePhaseListener implements PhaseListener {
+
+    static private final long serialVersionUID = 1L;
+
+    @Override
+    public PhaseId getPhaseId() {
+        return PhaseId.ANY_PHASE;
+    }
+
+    @Override
+    public void beforePhase(PhaseEvent event) {
+        /**
+         * nothing to do before a phase
+         */
+    }
+
+    @Override
+    public void afterPhase(PhaseEvent event) {
+        FacesContext context = event.getFacesContext();
+
+        EventTrace.getCurrentInstance(context).ifPresent(trace -> {
+            Iterator<ExceptionQueuedEvent> exceptions = context.getExceptionHandler()
+                    .getUnhandledExceptionQueuedEvents().iterator();
+            Throwable exception = exceptions.hasNext() ? exceptions.next().getContext().getException() : null;
+
+            if (event.getPhaseId() == PhaseId.RENDER_RESPONSE || context.getResponseComplete() || exception != null) {
+                TraceSpan requestSpan = trace.getRequestSpan().setAttribute("faces.phase", event.getPhaseId().toString());
+
+                if (exception != null) {
+                    requestSpan.setAttribute("exception.type", exception.getClass().getName())
+                            .setError(String.valueOf(exception.getMessage()));
+                }
+
+                trace.end(context);
+            }
+        });
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.faces.context.FacesContext;
+
+/**
+ * The context of an AJAX request sent by an event observer.
+ * <p>
+ * An instance is created when the event observer at the origin of the request is decoded, and it lives in the
+ * attributes of the faces context until the end of the request.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventingContext {
+
+    /**
+     * The name of the faces context attribute that holds the current eventing context.
+     */
+    static private final String ATTRIBUTE_NAME = EventingContext.class.getName();
+
+    /**
+     * The client ID of the event observer at the origin of the request.
+     */
+    private final String observerClientId;
+
+    /**
+     * Whether the targets rendered during the request are skipped when their markup did not change.
+     */
+    private final boolean skipUnchanged;
+    
+    /**
+     * Whether the partial response is flushed after each update, for the streaming transport.
+     */
+    private final boolean streaming;
+    
+    /**
+     * Whether the request was sent speculatively, before the event actually occurred.
+     */
+    private final boolean speculative;
+    
+    /**
+     * The number of seconds during which the client may reuse the response, or 0 if it may not.
+     */
+    private int cacheTtl;
+    
+    /**
+     * The observed events whose model is requested by the client.
+     */
+    private final List<ObservedEvent> modelEvents = new ArrayList<>(1);
+    
+    /**
+     * The serialized models, as JSON documents by name of event.
+     */
+    private final Map<String, String> models = new LinkedHashMap<>();
+    
+    /**
+     * The client IDs of the targets marked as dirty - concurrent, because the parallel action listeners mark them from
+     * worker threads.
+     */
+    private final Set<String> dirtyClientIds = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * The client IDs of the targets whose updates were discarded by the client, always rendered with the dirty ones.
+     */
+    private final Set<String> discardedClientIds = new HashSet<>();
+
+    /**
+     * Constructs an eventing context.
+     *
+     * @param observerClientId the client ID of the event observer at the origin of the request.
+     * @param skipUnchanged whether the unchanged targets are skipped.
+     * @param streaming whether the partial response is flushed after each update.
+     * @param speculative whether the request was sent speculatively.
+     */
+    private EventingContext(String observerClientId, boolean skipUnchanged, boolean streaming, boolean speculative) {
+        this.observerClientId = observerClientId;
+        this.skipUnchanged = skipUnchanged;
+        this.streaming = streaming;
+        this.speculative = speculative;
+    }
+
+    /**
+     * Creates the eventing context of the current request.
+     *
+     * @param context the faces context.
+     * @param eventObserver the event observer at the origin of the request.
+     * @param speculative whether the request was sent speculatively.
+     * @return the created eventing context.
+     */
+    static EventingContext create(FacesContext context, EventObserverComponent eventObserver, boolean speculative) {
+        String clientId = eventObserver.getClientId(context);
+        
+        /**
+         * the response of a speculative request may be discarded by the client, hence its targets are never skipped
+         * as unchanged: their hashes would not match the markup held by the client
+         */
+        EventingContext eventingContext = new EventingContext(
+                clientId,
+                eventObserver.isSkipUnchanged() && !speculative,
+                eventObserver.isStreaming(),
+                speculative
+        );
+        eventingContext.setCacheTtl(eventObserver.getCacheTtl());
+        context.getAttributes().put(ATTRIBUTE_NAME, eventingContext);
+        return eventingContext;
+    }
+
+    /**
+     * Gets the eventing context of the current request.
+     *
+     * @param context the faces context.
+     * @return the eventing context, or nothing if the current request was not sent by an event observer.
+     */
+    static public Optional<EventingContext> getCurrentInstance(FacesContext context) {
+        return Optional.ofNullable((EventingContext) context.getAttributes().get(ATTRIBUTE_NAME));
+    }
+
+    /**
+     * Gets the client ID of the event observer at the origin of the request.
+     *
+     * @return the client ID of the event observer.
+     */
+    public String getObserverClientId() {
+        return this.observerClientId;
+    }
+
+    /**
+     * Indicates whether the targets rendered during the request are skipped when their markup did not change since
+     * their previous rendering in the same view.
+     *
+     * @return true if the unchanged targets are skipped.
+     */
+    public boolean isSkipUnchanged() {
+        return this.skipUnchanged;
+    }
+    
+    /**
+     * Indicates whether the partial response is flushed after each update, so that the streaming transport of the
+     * client-side eventing framework applies each update as soon as it is rendered.
+     *
+     * @return true if the partial response is flushed after each update.
+     */
+    public boolean isStreaming() {
+        return this.streaming;
+    }
+    
+    /**
+     * Indicates whether the request was sent speculatively by the client-side eventing framework, before the event
+     * actually occurred. The response of a speculative request is only applied if the event occurs.
+     *
+     * @return true if the request was sent speculatively.
+     */
+    public boolean isSpeculative() {
+        return this.speculative;
+    }
+    
+    /**
+     * Sets the number of seconds during which the client may reuse the response of the request, instead of sending
+     * the same request again. It is initialized from the event observer, and the application may change it while
+     * processing the request, e.g. to prevent a response holding volatile data from being cached.
+     *
+     * @param cacheTtl the time to live of the response in the client cache, in seconds, or 0 to prevent caching.
+     */
+    public void setCacheTtl(int cacheTtl) {
+        this.cacheTtl = Math.max(0, cacheTtl);
+    }
+    
+    /**
+     * Marks a target of the request as dirty. When at least one target is marked, the partial response only renders
+     * the targets of the request that are marked, instead of all of them; the targets that are not marked keep their
+     * current markup on the client side. It lets an action listener that changed only some of the declared targets
+     * avoid the rendering of the other ones. A client ID that is not a target of the request is not rendered.
+     *
+     * @param clientId the absolute client ID of the target, as rendered in the page.
+     */
+    public void markDirty(String clientId) {
+        dirtyClientIds.add(clientId);
+    }
+    
+    /**
+     * Records a target whose update was discarded by the client, because the response that carried it was superseded
+     * by a newer request: its markup on the client side is stale, hence it is rendered even if it is not marked as
+     * dirty.
+     *
+     * @param clientId the client ID of the target.
+     */
+    void addDiscardedUpdate(String clientId) {
+        discardedClientIds.add(clientId);
+    }
+    
+    /**
+     * Restricts the targets rendered by the partial response to the ones marked as dirty, if any, and to the ones whose
+     * update was discarded by the client.
+     *
+     * @param renderIds the client IDs of the targets of the request, modified in place.
+     */
+    void retainDirty(Collection<String> renderIds) {
+        if (!dirtyClientIds.isEmpty()) {
+            renderIds.removeIf(clientId ->
+                    !dirtyClientIds.contains(clientId) && !discardedClientIds.contains(clientId)
+            );
+        }
+    }
+    
+    /**
+     * Requests the model of an observed event, to be sent in the partial response.
+     *
+     * @param observedEvent the observed event, which specifies a model.
+     */
+    void addModelEvent(ObservedEvent observedEvent) {
+        modelEvents.add(observedEvent);
+    }
+    
+    /**
+     * Evaluates the requested models, and serializes them as JSON. It is invoked before the rendering of the partial
+     * response, so that a failure is reported like any other failure of the rendering.
+     *
+     * @param context the faces context.
+     */
+    void serializeModels(FacesContext context) {
+        for (ObservedEvent observedEvent : modelEvents) {
+            StringBuilder builder = new StringBuilder(1024);
+            Json.appendValue(builder, observedEvent.getModel(context).orElse(null));
+            models.put(observedEvent.getEvent(context), builder.toString());
+        }
+    }
+    
+    /**
+     * Gets the serialized models.
+     *
+     * @return the JSON documents of the models, by name of event.
+     */
+    Map<String, String> getModels() {
+        return Collections.unmodifiableMap(models);
+    }
+    
+    /**
+     * Gets the number of seconds during which the client may reuse the response of the request.
+     *
+     * @return the time to live of the response in the client cache, in seconds, or 0 if it may not be cached.
+     */
+    public int getCacheTtl() {
+        return this.cacheTtl;
+    }
+}
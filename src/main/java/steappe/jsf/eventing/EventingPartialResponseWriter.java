@@ -0,0 +1,371 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import javax.faces.component.UINamingContainer;
+import javax.faces.context.FacesContext;
+import javax.faces.context.PartialResponseWriter;
+import javax.faces.context.ResponseWriter;
+
+/**
+ * The partial response writer of the eventing framework.
+ * <p>
+ * When the request was sent by an event observer that skips its unchanged targets, the markup of each updated target
+ * is buffered and hashed, and the update is omitted from the partial response when the hash did not change since the
+ * previous rendering of the target in the same view. The number of omitted updates and of saved bytes is reported to
+ * the client-side eventing framework in an extension of the partial response. Stateless views have no place to keep
+ * the hashes, and their updates are therefore always written.
+ * <p>
+ * When the request was sent by an event observer with the streaming transport, the partial response is flushed after
+ * each written update, so that the client applies the first targets while the next ones are still being rendered.
+ * <p>
+ * When the event observer allows the client to cache its responses, the response is marked as cacheable in the
+ * extension, unless it holds changes that cannot be replayed: skipped updates, updates of the whole view (their markup
+ * holds the state of the view), insertions, deletions, attribute changes, errors or redirections.
+ * <p>
+ * When the client requested the models of the observed events, their JSON documents are written in the extension, as
+ * the CDATA content of a 'model' element per event.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventingPartialResponseWriter extends PartialResponseWriter {
+
+    /**
+     * The ID of the partial response extension written by this writer.
+     */
+    static public final String EXTENSION_ID = "steappe.eventing";
+
+    /**
+     * The faces context.
+     */
+    private final FacesContext context;
+
+    /**
+     * The wrapped partial response writer.
+     */
+    private final PartialResponseWriter wrapped;
+
+    /**
+     * The writer that currently receives the markup: either the wrapped writer or a buffering writer.
+     */
+    private ResponseWriter target;
+
+    /**
+     * The client ID of the target whose markup is currently buffered, or null if none is buffered.
+     */
+    private String bufferedClientId;
+
+    /**
+     * The buffer that receives the markup of the target currently buffered.
+     */
+    private StringWriter buffer;
+
+    /**
+     * The number of updates omitted from the partial response.
+     */
+    private int skippedUpdates;
+
+    /**
+     * The number of bytes saved by omitting unchanged updates.
+     */
+    private long savedBytes;
+
+    /**
+     * Whether the partial response holds changes that the client cannot replay from its cache.
+     */
+    private boolean uncacheable;
+
+    /**
+     * Constructs this partial response writer.
+     *
+     * @param context the faces context.
+     * @param wrapped the wrapped partial response writer.
+     */
+    public EventingPartialResponseWriter(FacesContext context, PartialResponseWriter wrapped) {
+        super(wrapped);
+
+        this.context = context;
+        this.wrapped = wrapped;
+        this.target = wrapped;
+    }
+
+    /**
+     * Computes the number of bytes of a markup encoded in UTF-8.
+     *
+     * @param markup the markup.
+     * @return the number of bytes.
+     */
+    static private long utf8Length(String markup) {
+        long length = 0;
+
+        for (int i = 0; i < markup.length(); i++) {
+            char c = markup.charAt(i);
+
+            if (c < 0x80) {
+                length += 1;
+            }
+            else if (c < 0x800) {
+                length += 2;
+            }
+            else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            }
+            else {
+                length += 3;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Indicates whether an update ID denotes a special update (view state, view root) rather than a component.
+     *
+     * @param clientId the ID of the update.
+     * @return true if the update ID denotes a special update.
+     */
+    static private boolean isSpecialUpdate(String clientId) {
+        return clientId.contains(VIEW_STATE_MARKER) || clientId.equals(RENDER_ALL_MARKER);
+    }
+
+    @Override
+    public ResponseWriter getWrapped() {
+        return this.target;
+    }
+
+    @Override
+    public void startDocument() throws IOException {
+        wrapped.startDocument();
+    }
+
+    @Override
+    public void endDocument() throws IOException {
+        Optional<EventingContext> eventingContext = EventingContext.getCurrentInstance(context);
+        int cacheTtl = eventingContext.map(EventingContext::getCacheTtl).orElse(0);
+        boolean cacheable = cacheTtl > 0 && skippedUpdates == 0 && !uncacheable;
+        Map<String, String> models = eventingContext.map(EventingContext::getModels).orElse(Collections.emptyMap());
+
+        if (skippedUpdates > 0 || cacheable || !models.isEmpty()) {
+            Map<String, String> attributes = new HashMap<>();
+            attributes.put("id", EXTENSION_ID);
+
+            if (skippedUpdates > 0) {
+                attributes.put("skippedUpdates", Integer.toString(skippedUpdates));
+                attributes.put("savedBytes", Long.toString(savedBytes));
+            }
+
+            if (cacheable) {
+                attributes.put("cacheTtl", Integer.toString(cacheTtl));
+            }
+
+            wrapped.startExtension(attributes);
+
+            for (Map.Entry<String, String> model : models.entrySet()) {
+                wrapped.startElement("model", null);
+                wrapped.writeAttribute("event", model.getKey(), null);
+                wrapped.startCDATA();
+                wrapped.write(model.getValue());
+                wrapped.endCDATA();
+                wrapped.endElement("model");
+            }
+
+            wrapped.endExtension();
+        }
+
+        wrapped.endDocument();
+    }
+
+    @Override
+    public void startInsertBefore(String targetId) throws IOException {
+        uncacheable = true;
+        invalidate(targetId);
+        wrapped.startInsertBefore(targetId);
+    }
+
+    @Override
+    public void startInsertAfter(String targetId) throws IOException {
+        uncacheable = true;
+        invalidate(targetId);
+        wrapped.startInsertAfter(targetId);
+    }
+
+    @Override
+    public void endInsert() throws IOException {
+        wrapped.endInsert();
+    }
+
+    @Override
+    public void startUpdate(String targetId) throws IOException {
+        Optional<EventingContext> eventingContext = EventingContext.getCurrentInstance(context);
+
+        boolean statefulView = !context.getViewRoot().isTransient();
+
+        if (targetId.equals(RENDER_ALL_MARKER)) {
+            /**
+             * the markup of the whole view holds the hidden field of the state of the view, which a replay from the
+             * cache would restore
+             */
+            uncacheable = true;
+        }
+
+        if (statefulView
+                && !isSpecialUpdate(targetId)
+                && eventingContext.map(EventingContext::isSkipUnchanged).orElse(false)) {
+            /**
+             * buffer the markup of the target until its end, to decide whether the update has to be written
+             */
+            bufferedClientId = targetId;
+            buffer = new StringWriter(1024);
+            target = wrapped.cloneWithWriter(buffer);
+        }
+        else {
+            invalidate(targetId);
+            wrapped.startUpdate(targetId);
+        }
+    }
+
+    @Override
+    public void endUpdate() throws IOException {
+        if (bufferedClientId != null) {
+            target.flush();
+            String clientId = bufferedClientId;
+            String markup = buffer.toString();
+            target = wrapped;
+            bufferedClientId = null;
+            buffer = null;
+
+            FragmentHashes fragmentHashes = FragmentHashes.getInstance(context, true).get();
+            boolean unchanged = fragmentHashes.update(clientId, FragmentHashes.hash(markup));
+
+            if (unchanged) {
+                skippedUpdates++;
+                savedBytes += utf8Length(markup);
+            }
+            else {
+                /**
+                 * the markup of the nested targets is replaced on the client side, whether it changed or not: their
+                 * hashes must not match anymore, like in the unbuffered path
+                 */
+                fragmentHashes.invalidateNested(clientId, UINamingContainer.getSeparatorChar(context));
+                wrapped.startUpdate(clientId);
+                wrapped.write(markup);
+                wrapped.endUpdate();
+                flushIfStreaming();
+            }
+        }
+        else {
+            wrapped.endUpdate();
+            flushIfStreaming();
+        }
+    }
+
+    @Override
+    public void updateAttributes(String targetId, Map<String, String> attributes) throws IOException {
+        uncacheable = true;
+        invalidate(targetId);
+        wrapped.updateAttributes(targetId, attributes);
+    }
+
+    @Override
+    public void delete(String targetId) throws IOException {
+        uncacheable = true;
+        invalidate(targetId);
+        wrapped.delete(targetId);
+    }
+
+    @Override
+    public void redirect(String url) throws IOException {
+        uncacheable = true;
+        wrapped.redirect(url);
+    }
+
+    @Override
+    public void startEval() throws IOException {
+        wrapped.startEval();
+    }
+
+    @Override
+    public void endEval() throws IOException {
+        wrapped.endEval();
+    }
+
+    @Override
+    public void startExtension(Map<String, String> attributes) throws IOException {
+        wrapped.startExtension(attributes);
+    }
+
+    @Override
+    public void endExtension() throws IOException {
+        wrapped.endExtension();
+    }
+
+    @Override
+    public void startError(String errorName) throws IOException {
+        uncacheable = true;
+        wrapped.startError(errorName);
+    }
+
+    @Override
+    public void endError() throws IOException {
+        wrapped.endError();
+    }
+
+    /**
+     * Flushes the partial response if the request was sent with the streaming transport.
+     *
+     * @throws IOException if an I/O error occurred during the flush.
+     */
+    private void flushIfStreaming() throws IOException {
+        if (EventingContext.getCurrentInstance(context).map(EventingContext::isStreaming).orElse(false)) {
+            wrapped.flush();
+        }
+    }
+
+    /**
+     * Forgets the recorded hashes of a target whose markup is changed by this response without being recorded.
+     *
+     * @param clientId the client ID of the target.
+     */
+    private void invalidate(String clientId) {
+        Optional<FragmentHashes> fragmentHashes = FragmentHashes.getInstance(context, false);
+
+        if (fragmentHashes.isPresent()) {
+            if (clientId.equals(RENDER_ALL_MARKER)) {
+                fragmentHashes.get().invalidateAll();
+            }
+            else if (!clientId.contains(VIEW_STATE_MARKER)) {
+                char separatorChar = UINamingContainer.getSeparatorChar(context);
+                fragmentHashes.get().invalidate(clientId, separatorChar);
+            }
+        }
+    }
+}
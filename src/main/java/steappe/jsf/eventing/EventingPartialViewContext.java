@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.util.Optional;
+import javax.faces.context.FacesContext;
+import javax.faces.context.PartialResponseWriter;
+import javax.faces.context.PartialViewContext;
+import javax.faces.context.PartialViewContextWrapper;
+import javax.faces.event.PhaseId;
+
+/**
+ * The partial view context of the eventing framework.
+ * <p>
+ * It decorates the partial response writer of the wrapped partial view context with the partial response writer of
+ * the eventing framework.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventingPartialViewContext extends PartialViewContextWrapper {
+
+    /**
+     * The wrapped partial view context.
+     */
+    private final PartialViewContext wrapped;
+
+    /**
+     * The faces context.
+     */
+    private final FacesContext context;
+
+    /**
+     * The partial response writer, lazily created.
+     */
+    private PartialResponseWriter partialResponseWriter;
+
+    /**
+     * Constructs this partial view context.
+     *
+     * @param wrapped the wrapped partial view context.
+     * @param context the faces context.
+     */
+    public EventingPartialViewContext(PartialViewContext wrapped, FacesContext context) {
+        this.wrapped = wrapped;
+        this.context = context;
+    }
+
+    @Override
+    public PartialViewContext getWrapped() {
+        return this.wrapped;
+    }
+
+    @Override
+    public PartialResponseWriter getPartialResponseWriter() {
+        if (partialResponseWriter == null) {
+            partialResponseWriter = new EventingPartialResponseWriter(context, wrapped.getPartialResponseWriter());
+        }
+
+        return partialResponseWriter;
+    }
+
+    @Override
+    public void processPartial(PhaseId phaseId) {
+        Optional<EventingContext> eventing = EventingContext.getCurrentInstance(context);
+        
+        /**
+         * the targets that were not marked as dirty by the action listeners are not rendered; the collection of the
+         * render IDs is mutable, as required by the JSF specification
+         */
+        if (phaseId == PhaseId.RENDER_RESPONSE && eventing.isPresent() && !wrapped.isRenderAll()) {
+            eventing.get().retainDirty(wrapped.getRenderIds());
+        }
+        
+        Optional<EventTrace> trace = phaseId == PhaseId.RENDER_RESPONSE ?
+                EventTrace.getCurrentInstance(context) :
+                Optional.empty();
+        Optional<TraceSpan> span = trace.map(current ->
+                current.startSpan("steappe.eventing.render")
+                        .setAttribute("steappe.eventing.render_ids", String.join(" ", wrapped.getRenderIds()))
+        );
+        
+        try {
+            if (phaseId == PhaseId.RENDER_RESPONSE) {
+                eventing.ifPresent(current -> current.serializeModels(context));
+            }
+            
+            wrapped.processPartial(phaseId);
+        }
+        finally {
+            /**
+             * the trace of the request itself is ended by the phase listener of the traces, once the response is
+             * complete
+             */
+            span.ifPresent(TraceSpan::end);
+        }
+    }
+
+    @Override
+    public void release() {
+        partialResponseWriter = null;
+        wrapped.release();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import javax.faces.context.FacesContext;
+import javax.faces.context.PartialViewContext;
+import javax.faces.context.PartialViewContextFactory;
+
+/**
+ * The factory of the partial view contexts of the eventing framework.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventingPartialViewContextFactory extends PartialViewContextFactory {
+
+    /**
+     * The wrapped factory.
+     */
+    private final PartialViewContextFactory wrapped;
+
+    /**
+     * Constructs this factory.
+     *
+     * @param wrapped the wrapped factory.
+     */
+    public EventingPartialViewContextFactory(PartialViewContextFactory wrapped) {
+        this.wrapped = wrapped;
+    }
+
+    @Override
+    public PartialViewContextFactory getWrapped() {
+        return this.wrapped;
+    }
+
+    @Override
+    public PartialViewContext getPartialViewContext(FacesContext context) {
+        return new EventingPartialViewContext(wrapped.getPartialViewContext(context), context);
+    }
+}
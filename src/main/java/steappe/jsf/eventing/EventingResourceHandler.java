@@ -0,0 +1,341 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package steappe.jsf.eventing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Optional;
+import javax.faces.application.ProjectStage;
+import javax.faces.application.Resource;
+import javax.faces.application.ResourceHandler;
+import javax.faces.application.ResourceHandlerWrapper;
+import javax.faces.application.ResourceWrapper;
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+
+/**
+ * The resource handler of the eventing framework, declared in the faces configuration of the library.
+ * <p>
+ * It serves the script of the client-side eventing framework minified, compressed with gzip when the client accepts
+ * it, and identity otherwise. The URL of the script is fingerprinted with the content hash of the minified script
+ * (parameter 'v'): a request for the current fingerprint is cached as immutable for a year, any other request must be
+ * revalidated with its ETag.
+ * <p>
+ * In the development project stage, the script is served unchanged by the wrapped resource handler.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventingResourceHandler extends ResourceHandlerWrapper {
+
+    /**
+     * The name of the library of the script.
+     */
+    static private final String SCRIPT_LIBRARY = "steappe";
+
+    /**
+     * The name of the script.
+     */
+    static private final String SCRIPT_NAME = "js/eventing.js";
+
+    /**
+     * The name of the request parameter that holds the fingerprint of the script.
+     */
+    static private final String FINGERPRINT_PARAMETER = "v";
+
+    /**
+     * The cache control of a request for the current fingerprint of the script.
+     */
+    static private final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    /**
+     * The cache control of a request for another fingerprint of the script, or for none.
+     */
+    static private final String REVALIDATED_CACHE_CONTROL = "public, no-cache";
+
+    /**
+     * The content type of the script.
+     */
+    static private final String CONTENT_TYPE = "text/javascript;charset=UTF-8";
+
+    /**
+     * The wrapped resource handler.
+     */
+    private final ResourceHandler wrapped;
+
+    /**
+     * The optimized script, lazily loaded.
+     */
+    private volatile EventingScript script;
+
+    /**
+     * Constructs this resource handler.
+     *
+     * @param wrapped the wrapped resource handler.
+     */
+    public EventingResourceHandler(ResourceHandler wrapped) {
+        this.wrapped = wrapped;
+    }
+
+    @Override
+    public ResourceHandler getWrapped() {
+        return this.wrapped;
+    }
+
+    @Override
+    public Resource createResource(String resourceName, String libraryName) {
+        return fingerprint(wrapped.createResource(resourceName, libraryName), resourceName, libraryName);
+    }
+
+    @Override
+    public Resource createResource(String resourceName, String libraryName, String contentType) {
+        return fingerprint(wrapped.createResource(resourceName, libraryName, contentType), resourceName, libraryName);
+    }
+
+    @Override
+    public void handleResourceRequest(FacesContext context) throws IOException {
+        if (isOptimized(context) && isScriptRequest(context.getExternalContext())) {
+            handleScriptRequest(context.getExternalContext(), getScript());
+        }
+        else {
+            wrapped.handleResourceRequest(context);
+        }
+    }
+
+    /**
+     * Fingerprints the URL of the script of the client-side eventing framework.
+     *
+     * @param resource the resource created by the wrapped resource handler, possibly null.
+     * @param resourceName the name of the resource.
+     * @param libraryName the name of the library of the resource.
+     * @return the fingerprinted script, or else the given resource.
+     */
+    private Resource fingerprint(Resource resource, String resourceName, String libraryName) {
+        Resource fingerprinted = resource;
+
+        if (resource != null && SCRIPT_LIBRARY.equals(libraryName) && SCRIPT_NAME.equals(resourceName)
+                && isOptimized(FacesContext.getCurrentInstance())) {
+            fingerprinted = new FingerprintedResource(resource, getScript().getFingerprint());
+        }
+
+        return fingerprinted;
+    }
+
+    /**
+     * Indicates whether the script is optimized by this resource handler.
+     *
+     * @param context the faces context, possibly null.
+     * @return false in the development project stage, true otherwise.
+     */
+    private boolean isOptimized(FacesContext context) {
+        return context != null && !context.isProjectStage(ProjectStage.Development);
+    }
+
+    /**
+     * Gets the optimized script, and loads it if needed.
+     *
+     * @return the optimized script.
+     */
+    private EventingScript getScript() {
+        EventingScript current = script;
+
+        if (current == null) {
+            synchronized (this) {
+                current = script;
+
+                if (current == null) {
+                    current = new EventingScript(wrapped.createResource(SCRIPT_NAME, SCRIPT_LIBRARY));
+                    script = current;
+                }
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Indicates whether a resource request is a request for the script of the client-side eventing framework.
+     *
+     * @param externalContext the external context.
+     * @return true if the script is requested.
+     */
+    static private boolean isScriptRequest(ExternalContext externalContext) {
+        String pathInfo = externalContext.getRequestPathInfo();
+        String path = externalContext.getRequestServletPath() + (pathInfo != null ? pathInfo : "");
+        String prefix = ResourceHandler.RESOURCE_IDENTIFIER + '/';
+        int index = path.indexOf(prefix);
+        String name = index >= 0 ? path.substring(index + prefix.length()) : "";
+
+        /**
+         * with an extension mapping of the faces servlet, the extension of the mapping follows the name of the script
+         */
+        boolean extensionMapped = pathInfo == null && name.startsWith(SCRIPT_NAME + '.');
+        boolean matches = name.equals(SCRIPT_NAME)
+                || extensionMapped && name.indexOf('/', SCRIPT_NAME.length()) < 0;
+
+        return matches && SCRIPT_LIBRARY.equals(externalContext.getRequestParameterMap().get("ln"));
+    }
+
+    /**
+     * Serves the optimized script.
+     *
+     * @param externalContext the external context.
+     * @param script the optimized script.
+     * @throws IOException if an I/O error occurred while writing the response.
+     */
+    static private void handleScriptRequest(ExternalContext externalContext, EventingScript script) throws IOException {
+        Map<String, String> headers = externalContext.getRequestHeaderMap();
+        String acceptEncoding = Optional.ofNullable(headers.get("Accept-Encoding")).orElse("");
+        String encoding;
+        byte[] content;
+
+        if (accepts(acceptEncoding, "gzip")) {
+            encoding = "gzip";
+            content = script.getGzip();
+        }
+        else {
+            encoding = null;
+            content = script.getIdentity();
+        }
+
+        String fingerprint = externalContext.getRequestParameterMap().get(FINGERPRINT_PARAMETER);
+        String etag = '"' + script.getFingerprint() + (encoding != null ? '-' + encoding : "") + '"';
+
+        externalContext.setResponseHeader("Cache-Control", script.getFingerprint().equals(fingerprint) ?
+                IMMUTABLE_CACHE_CONTROL :
+                REVALIDATED_CACHE_CONTROL);
+        externalContext.setResponseHeader("ETag", etag);
+        externalContext.setResponseHeader("Vary", "Accept-Encoding");
+
+        if (isNotModified(headers.get("If-None-Match"), etag)) {
+            externalContext.setResponseStatus(304);
+        }
+        else {
+            externalContext.setResponseContentType(CONTENT_TYPE);
+
+            if (encoding != null) {
+                externalContext.setResponseHeader("Content-Encoding", encoding);
+            }
+
+            externalContext.setResponseContentLength(content.length);
+
+            try (OutputStream output = externalContext.getResponseOutputStream()) {
+                output.write(content);
+            }
+        }
+    }
+
+    /**
+     * Indicates whether a content encoding is accepted by the client.
+     *
+     * @param acceptEncoding the value of the Accept-Encoding header.
+     * @param encoding the content encoding.
+     * @return true if the encoding is listed with a quality greater than 0.
+     */
+    static private boolean accepts(String acceptEncoding, String encoding) {
+        boolean accepted = false;
+
+        for (String item : acceptEncoding.split(",")) {
+            String[] parts = item.trim().split(";");
+
+            if (parts[0].trim().equalsIgnoreCase(encoding)) {
+                accepted = true;
+
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            accepted = Double.parseDouble(parameter.substring(2)) > 0;
+                        }
+                        catch (NumberFormatException e) {
+                            accepted = false;
+                        }
+                    }
+                }
+            }
+        }
+
+        return accepted;
+    }
+
+    /**
+     * Indicates whether the representation held by the client is the current one.
+     *
+     * @param ifNoneMatch the value of the If-None-Match header, possibly null.
+     * @param etag the ETag of the current representation.
+     * @return true if the ETag of the current representation is listed.
+     */
+    static private boolean isNotModified(String ifNoneMatch, String etag) {
+        boolean notModified = false;
+
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String trimmed = candidate.trim();
+                notModified |= trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag);
+            }
+        }
+
+        return notModified;
+    }
+
+    /**
+     * The script resource whose URL is fingerprinted with the content hash of the minified script.
+     */
+    static private class FingerprintedResource extends ResourceWrapper {
+
+        /**
+         * The wrapped resource.
+         */
+        private final Resource wrapped;
+
+        /**
+         * The fingerprint of the minified script.
+         */
+        private final String fingerprint;
+
+        /**
+         * Constructs a fingerprinted resource.
+         *
+         * @param wrapped the wrapped resource.
+         * @param fingerprint the fingerprint of the minified script.
+         */
+        private FingerprintedResource(Resource wrapped, String fingerprint) {
+            this.wrapped = wrapped;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public Resource getWrapped() {
+            return this.wrapped;
+        }
+
+        @Override
+        public String getRequestPath() {
+            String requestPath = wrapped.getRequestPath();
+            char separator = requestPath.indexOf('?') >= 0 ? '&' : '?';
+            return requestPath + separator + FINGERPRINT_PARAMETER + '=' + fingerprint;
+        }
+    }
+}
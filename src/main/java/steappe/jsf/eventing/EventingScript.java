@@ -0,0 +1,202 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package steappe.jsf.eventing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+import javax.faces.application.Resource;
+
+/**
+ * The optimized representations of the script of the client-side eventing framework: the minified script and its gzip
+ * variant, both derived from the script resource, so that they always match its fingerprint.
+ * <p>
+ * The script is minified conservatively, line by line: the comments on their own lines, the indentation and the blank
+ * lines are removed, and the line breaks are kept so that the automatic insertion of semicolons is not affected. The
+ * strings and the regular expressions of the script are left untouched.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+final class EventingScript {
+
+    /**
+     * The number of hexadecimal digits of the fingerprint.
+     */
+    static private final int FINGERPRINT_LENGTH = 16;
+
+    /**
+     * The minified script.
+     */
+    private final byte[] identity;
+
+    /**
+     * The minified script, compressed with gzip.
+     */
+    private final byte[] gzip;
+
+    /**
+     * The fingerprint of the minified script: the beginning of its SHA-256 digest, in hexadecimal.
+     */
+    private final String fingerprint;
+
+    /**
+     * Constructs the optimized representations of the script.
+     *
+     * @param script the script resource.
+     */
+    EventingScript(Resource script) {
+        this.identity = minify(new String(read(script), StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+        this.gzip = compress(identity);
+        this.fingerprint = digest(identity);
+    }
+
+    /**
+     * Gets the fingerprint of the minified script, which changes whenever its content changes.
+     *
+     * @return the fingerprint, as hexadecimal digits.
+     */
+    String getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * Gets the minified script.
+     *
+     * @return the bytes of the minified script, in UTF-8.
+     */
+    byte[] getIdentity() {
+        return this.identity;
+    }
+
+    /**
+     * Gets the minified script compressed with gzip.
+     *
+     * @return the compressed bytes.
+     */
+    byte[] getGzip() {
+        return this.gzip;
+    }
+
+    /**
+     * Minifies a script, line by line.
+     *
+     * @param script the script.
+     * @return the minified script.
+     */
+    static String minify(String script) {
+        StringBuilder builder = new StringBuilder(script.length() / 2);
+        boolean inComment = false;
+
+        for (String line : script.split("\r?\n")) {
+            String trimmed = line.trim();
+
+            if (inComment) {
+                int end = trimmed.indexOf("*/");
+                inComment = end < 0;
+                trimmed = inComment ? "" : trimmed.substring(end + 2).trim();
+            }
+            else if (trimmed.startsWith("/*")) {
+                int end = trimmed.indexOf("*/", 2);
+                inComment = end < 0;
+                trimmed = inComment ? "" : trimmed.substring(end + 2).trim();
+            }
+            else if (trimmed.startsWith("//")) {
+                trimmed = "";
+            }
+
+            if (!trimmed.isEmpty()) {
+                builder.append(trimmed).append('\n');
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Reads the content of a resource.
+     *
+     * @param resource the resource.
+     * @return the content of the resource.
+     */
+    static private byte[] read(Resource resource) {
+        try (InputStream input = resource.getInputStream()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(65536);
+            byte[] buffer = new byte[8192];
+
+            for (int count = input.read(buffer); count >= 0; count = input.read(buffer)) {
+                output.write(buffer, 0, count);
+            }
+
+            return output.toByteArray();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("cannot read the resource " + resource.getResourceName(), e);
+        }
+    }
+
+    /**
+     * Compresses bytes with gzip.
+     *
+     * @param bytes the bytes to compress.
+     * @return the compressed bytes.
+     */
+    static private byte[] compress(byte[] bytes) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 3);
+
+        try (GZIPOutputStream gzipOutput = new GZIPOutputStream(output)) {
+            gzipOutput.write(bytes);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Computes the fingerprint of some bytes.
+     *
+     * @param bytes the bytes.
+     * @return the beginning of their SHA-256 digest, in hexadecimal.
+     */
+    static private String digest(byte[] bytes) {
+        try {
+            StringBuilder builder = new StringBuilder(FINGERPRINT_LENGTH);
+
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                builder.append(String.format("%02x", b & 0xff));
+            }
+
+            return builder.substring(0, FINGERPRINT_LENGTH);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
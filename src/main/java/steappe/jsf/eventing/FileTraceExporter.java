@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package steappe.jsf.eventing;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The trace exporter that appends each trace as a line of a local file, in the JSON lines format read by the
+ * OpenTelemetry collector (otlpjsonfile receiver).
+ * <p>
+ * The file is named by the context parameter TRACE_FILE, and it defaults to "steappe-eventing-traces.jsonl" in the
+ * temporary directory of the JVM.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class FileTraceExporter implements TraceExporter {
+
+    /**
+     * The logger of the export failures.
+     */
+    static private final Logger LOGGER = Logger.getLogger(FileTraceExporter.class.getName());
+
+    /**
+     * The default name of the file, in the temporary directory.
+     */
+    static private final String DEFAULT_FILE_NAME = "steappe-eventing-traces.jsonl";
+
+    /**
+     * The file the traces are appended to.
+     */
+    private final Path file;
+
+    /**
+     * Constructs a trace exporter to the default file.
+     */
+    public FileTraceExporter() {
+        this(Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_FILE_NAME));
+    }
+
+    /**
+     * Constructs a trace exporter to a file.
+     *
+     * @param file the file the traces are appended to.
+     */
+    public FileTraceExporter(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void export(String otlpJson) {
+        byte[] line = (otlpJson + '\n').getBytes(StandardCharsets.UTF_8);
+
+        /**
+         * the lines of the concurrent requests must not interleave
+         */
+        synchronized (this) {
+            try {
+                Files.write(file, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            catch (IOException e) {
+                LOGGER.log(Level.WARNING, "cannot export the trace to " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import javax.faces.component.UIViewRoot;
+import javax.faces.context.FacesContext;
+
+/**
+ * The hashes of the markup rendered for the targets of the event observers of a view.
+ * <p>
+ * The hashes are kept in the attributes of the view root, and they are therefore saved in the state of the view. A
+ * request never changes the hashes restored with the state of the view: it changes a copy, which replaces them in the
+ * view root. Each saved state of the view thus has its own hashes, the ones of the markup rendered by the request that
+ * saved it, and a client posting an older state (e.g. after going back in the browser history) is compared to the
+ * markup it actually shows. Only a 64-bit hash is kept per target, never the markup itself.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class FragmentHashes implements Serializable {
+
+    static private final long serialVersionUID = 1L;
+
+    /**
+     * The name of the attribute of the view root that holds the fragment hashes, and of the attribute of the faces
+     * context that holds the copy changed by the current request.
+     */
+    static private final String ATTRIBUTE_NAME = FragmentHashes.class.getName();
+
+    /**
+     * The offset basis of the 64-bit FNV-1a hash function.
+     */
+    static private final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /**
+     * The prime of the 64-bit FNV-1a hash function.
+     */
+    static private final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * The hashes of the rendered targets, by client ID.
+     */
+    private final Map<String, Long> hashes;
+
+    /**
+     * Constructs empty fragment hashes.
+     */
+    private FragmentHashes() {
+        this.hashes = new HashMap<>();
+    }
+
+    /**
+     * Constructs a copy of fragment hashes.
+     *
+     * @param other the copied fragment hashes.
+     */
+    private FragmentHashes(FragmentHashes other) {
+        synchronized (other) {
+            this.hashes = new HashMap<>(other.hashes);
+        }
+    }
+
+    /**
+     * Gets the fragment hashes of the current view, to be changed by the current request: the first call of a request
+     * replaces the hashes restored with the state of the view by a copy, so that the saved state they belong to is left
+     * unchanged.
+     *
+     * @param context the faces context.
+     * @param create whether the fragment hashes shall be created if not present.
+     * @return the fragment hashes, or nothing if there are none and they were not to be created.
+     */
+    static public Optional<FragmentHashes> getInstance(FacesContext context, boolean create) {
+        UIViewRoot viewRoot = context.getViewRoot();
+
+        if (viewRoot == null) {
+            return Optional.empty();
+        }
+
+        Map<String, Object> attributes = viewRoot.getAttributes();
+        FragmentHashes instance = (FragmentHashes) attributes.get(ATTRIBUTE_NAME);
+
+        /**
+         * the copy of the current request is only valid as long as the view root is not replaced
+         */
+        if (instance != null && instance != context.getAttributes().get(ATTRIBUTE_NAME)) {
+            instance = new FragmentHashes(instance);
+            attributes.put(ATTRIBUTE_NAME, instance);
+            context.getAttributes().put(ATTRIBUTE_NAME, instance);
+        }
+        else if (instance == null && create) {
+            instance = new FragmentHashes();
+            attributes.put(ATTRIBUTE_NAME, instance);
+            context.getAttributes().put(ATTRIBUTE_NAME, instance);
+        }
+
+        return Optional.ofNullable(instance);
+    }
+
+    /**
+     * Removes the fragment hashes of the current view, if any.
+     *
+     * @param context the faces context.
+     */
+    static public void clear(FacesContext context) {
+        UIViewRoot viewRoot = context.getViewRoot();
+
+        if (viewRoot != null) {
+            viewRoot.getAttributes().remove(ATTRIBUTE_NAME);
+            context.getAttributes().remove(ATTRIBUTE_NAME);
+        }
+    }
+
+    /**
+     * Computes the hash of a rendered markup.
+     *
+     * @param markup the rendered markup.
+     * @return the 64-bit FNV-1a hash of the markup.
+     */
+    static public long hash(CharSequence markup) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (int i = 0, length = markup.length(); i < length; i++) {
+            hash ^= markup.charAt(i);
+            hash *= FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Records the hash of the markup rendered for a target.
+     *
+     * @param clientId the client ID of the target.
+     * @param hash the hash of the rendered markup.
+     * @return true if the markup is unchanged since the previous rendering of the target.
+     */
+    public synchronized boolean update(String clientId, long hash) {
+        Long previousHash = hashes.put(clientId, hash);
+        return previousHash != null && previousHash == hash;
+    }
+
+    /**
+     * Forgets the hashes of a target and of all the targets nested into it, because their markup was rendered by a
+     * request that did not record it.
+     *
+     * @param clientId the client ID of the target.
+     * @param separatorChar the separator character of the client IDs.
+     */
+    public synchronized void invalidate(String clientId, char separatorChar) {
+        String prefix = clientId + separatorChar;
+        hashes.keySet().removeIf(key -> key.equals(clientId) || key.startsWith(prefix));
+    }
+
+    /**
+     * Forgets the hashes of the targets nested into a target, because their markup was replaced on the client side by
+     * the update of the target.
+     *
+     * @param clientId the client ID of the target.
+     * @param separatorChar the separator character of the client IDs.
+     */
+    public synchronized void invalidateNested(String clientId, char separatorChar) {
+        String prefix = clientId + separatorChar;
+        hashes.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Forgets the hashes of all the targets.
+     */
+    public synchronized void invalidateAll() {
+        hashes.clear();
+    }
+}
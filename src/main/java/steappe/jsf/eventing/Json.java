@@ -0,0 +1,241 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package steappe.jsf.eventing;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The minimal JSON encoding used by the eventing framework to write the documents it produces.
+ * <p>
+ * The characters '&lt;', '&gt;' and '&amp;' of the strings are escaped, so that a JSON document can be embedded in
+ * HTML or in a CDATA section of XML as is.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+final class Json {
+
+    /**
+     * The maximum depth of a serialized value.
+     */
+    static private final int MAX_DEPTH = 32;
+
+    /**
+     * Prevents the instantiation of this utility class.
+     */
+    private Json() {
+    }
+
+    /**
+     * Appends a value to a JSON document as a JSON string.
+     *
+     * @param builder the JSON document being built.
+     * @param value the value.
+     */
+    static void appendString(StringBuilder builder, String value) {
+        builder.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            }
+            else if (c < ' ' || c == '<' || c == '>' || c == '&') {
+                builder.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                builder.append(c);
+            }
+        }
+
+        builder.append('"');
+    }
+
+    /**
+     * Appends a value to a JSON document.
+     * <p>
+     * The maps are serialized as objects, the collections and the arrays as arrays, the numbers and the booleans as
+     * themselves, the character sequences, the characters, the enums and the temporal values as strings. The other
+     * objects are serialized as objects holding the properties of their JavaBeans getters.
+     *
+     * @param builder the JSON document being built.
+     * @param value the value, possibly null.
+     * @throws IllegalArgumentException if the value is cyclic or too deep, or if a property cannot be read.
+     */
+    static void appendValue(StringBuilder builder, Object value) {
+        appendValue(builder, value, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    /**
+     * Appends a value to a JSON document.
+     *
+     * @param builder the JSON document being built.
+     * @param value the value, possibly null.
+     * @param path the maps, collections, arrays and JavaBeans being serialized, which contain the value.
+     */
+    static private void appendValue(StringBuilder builder, Object value, Set<Object> path) {
+        if (value == null) {
+            builder.append("null");
+        }
+        else if (value instanceof Boolean) {
+            builder.append(value);
+        }
+        else if (value instanceof Number) {
+            appendNumber(builder, (Number) value);
+        }
+        else if (value instanceof Date) {
+            appendString(builder, Instant.ofEpochMilli(((Date) value).getTime()).toString());
+        }
+        else if (value instanceof CharSequence || value instanceof Character || value instanceof Enum
+                || value instanceof TemporalAccessor) {
+            appendString(builder, value instanceof Enum ? ((Enum<?>) value).name() : value.toString());
+        }
+        else if (path.size() >= MAX_DEPTH) {
+            throw new IllegalArgumentException("the value is too deep to be serialized as JSON");
+        }
+        else if (!path.add(value)) {
+            /**
+             * the value contains itself: it is rejected as soon as it repeats, before its expansion
+             */
+            throw new IllegalArgumentException("the value is cyclic: " + value.getClass().getName());
+        }
+        else {
+            try {
+                appendContainer(builder, value, path);
+            }
+            finally {
+                path.remove(value);
+            }
+        }
+    }
+
+    /**
+     * Appends a map, a collection, an array or a JavaBean to a JSON document.
+     *
+     * @param builder the JSON document being built.
+     * @param value the value.
+     * @param path the values being serialized, including this one.
+     */
+    static private void appendContainer(StringBuilder builder, Object value, Set<Object> path) {
+        if (value instanceof Map) {
+            String separator = "{";
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                builder.append(separator);
+                appendString(builder, String.valueOf(entry.getKey()));
+                builder.append(':');
+                appendValue(builder, entry.getValue(), path);
+                separator = ",";
+            }
+
+            builder.append(separator.equals("{") ? "{}" : "}");
+        }
+        else if (value instanceof Iterable) {
+            String separator = "[";
+
+            for (Object item : (Iterable<?>) value) {
+                builder.append(separator);
+                appendValue(builder, item, path);
+                separator = ",";
+            }
+
+            builder.append(separator.equals("[") ? "[]" : "]");
+        }
+        else if (value.getClass().isArray()) {
+            builder.append('[');
+
+            for (int i = 0; i < Array.getLength(value); i++) {
+                builder.append(i > 0 ? "," : "");
+                appendValue(builder, Array.get(value, i), path);
+            }
+
+            builder.append(']');
+        }
+        else {
+            appendBean(builder, value, path);
+        }
+    }
+
+    /**
+     * Appends a number to a JSON document.
+     *
+     * @param builder the JSON document being built.
+     * @param number the number.
+     */
+    static private void appendNumber(StringBuilder builder, Number number) {
+        if (number instanceof BigDecimal) {
+            builder.append(((BigDecimal) number).toPlainString());
+        }
+        else if (number instanceof Double || number instanceof Float) {
+            double d = number.doubleValue();
+            builder.append(Double.isNaN(d) || Double.isInfinite(d) ? "null" : number.toString());
+        }
+        else {
+            builder.append(number.toString());
+        }
+    }
+
+    /**
+     * Appends a JavaBean to a JSON document, as an object holding the properties of its getters.
+     *
+     * @param builder the JSON document being built.
+     * @param bean the JavaBean.
+     * @param path the values being serialized, including the JavaBean.
+     */
+    static private void appendBean(StringBuilder builder, Object bean, Set<Object> path) {
+        String separator = "{";
+
+        try {
+            for (PropertyDescriptor property : Introspector.getBeanInfo(bean.getClass(), Object.class)
+                    .getPropertyDescriptors()) {
+                Method getter = property.getReadMethod();
+
+                if (getter != null) {
+                    builder.append(separator);
+                    appendString(builder, property.getName());
+                    builder.append(':');
+                    appendValue(builder, getter.invoke(bean), path);
+                    separator = ",";
+                }
+            }
+        }
+        catch (IntrospectionException | ReflectiveOperationException e) {
+            throw new IllegalArgumentException("cannot serialize as JSON: " + bean.getClass().getName(), e);
+        }
+
+        builder.append(separator.equals("{") ? "{}" : "}");
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The backplane that delivers the messages in memory, without leaving the JVM.
+ * <p>
+ * By default, a loopback backplane only delivers the messages to its own node. Loopback backplanes created with
+ * {@link #LoopbackBackplane(LoopbackBackplane)} share the same in-memory bus: the broadcasters using them behave like
+ * the nodes of a cluster, which is convenient to test the applications locally.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class LoopbackBackplane implements EventBackplane {
+
+    /**
+     * The started backplanes sharing the in-memory bus of this backplane.
+     */
+    private final List<LoopbackBackplane> bus;
+
+    /**
+     * The receiver of the node of this backplane, or null if this backplane is not started.
+     */
+    private volatile Consumer<BroadcastMessage> receiver;
+
+    /**
+     * Constructs a loopback backplane with its own in-memory bus.
+     */
+    public LoopbackBackplane() {
+        this.bus = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Constructs a loopback backplane sharing the in-memory bus of another loopback backplane.
+     *
+     * @param peer the loopback backplane of another node.
+     */
+    public LoopbackBackplane(LoopbackBackplane peer) {
+        this.bus = peer.bus;
+    }
+
+    @Override
+    public void start(Consumer<BroadcastMessage> receiver) {
+        this.receiver = receiver;
+        bus.add(this);
+    }
+
+    @Override
+    public void send(BroadcastMessage message) {
+        bus.forEach(node -> node.receive(message));
+    }
+
+    @Override
+    public void stop() {
+        bus.remove(this);
+        this.receiver = null;
+    }
+
+    /**
+     * Receives a message sent on the in-memory bus.
+     *
+     * @param message the message.
+     */
+    private void receive(BroadcastMessage message) {
+        Consumer<BroadcastMessage> nodeReceiver = this.receiver;
+
+        if (nodeReceiver != null) {
+            nodeReceiver.accept(message);
+        }
+    }
+}
@@ -23,9 +23,13 @@
  */
 package steappe.jsf.eventing;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.el.ELContext;
 import javax.el.ValueExpression;
@@ -33,6 +37,9 @@ import javax.faces.context.FacesContext;
 
 /**
  * An observed event.
+ * <p>
+ * An observed event whose attributes are all literals can be frozen: its values are then evaluated once, and it can be
+ * shared by all the event observers built from the same tag, in all the views (see {@link OnEventHandler}).
  * 
  * @author Stéphane Appercel - creation.
  */
@@ -68,12 +75,33 @@ public class ObservedEvent {
      */
     private Optional<ValueExpression> render;
     
+    /**
+     * The optional value expression that specifies whether a newer request supersedes a stale one.
+     */
+    private Optional<ValueExpression> supersede = Optional.empty();
+    
+    /**
+     * The optional value expression that specifies whether the request for this event has no side effect.
+     */
+    private Optional<ValueExpression> sideEffectFree = Optional.empty();
+    
+    /**
+     * The optional value expression that specifies the model sent to the client instead of rendered markup.
+     */
+    private Optional<ValueExpression> model = Optional.empty();
+    
+    /**
+     * The values of the attributes evaluated when this observed event was frozen, or null if it is not frozen.
+     */
+    private FrozenValues frozenValues;
+    
     /**
      * Sets the value expression that specifies the name of the event to observe.
      * 
      * @param event the value expression for the event name.
      */
     public void setEvent(ValueExpression event) {
+        checkNotFrozen();
         this.event = event;
     }
     
@@ -93,8 +121,7 @@ public class ObservedEvent {
      * @return the name of the observed event.
      */
     public String getEvent(FacesContext ctx) {
-        ELContext elContext = ctx.getELContext();
-        return (String) event.getValue(elContext);
+        return frozenValues != null ? frozenValues.event : evaluateEvent(ctx.getELContext());
     }
     
     /**
@@ -103,6 +130,7 @@ public class ObservedEvent {
      * @param execute the optional value expression for the execute attribute.
      */
     public void setExecute(Optional<ValueExpression> execute) {
+        checkNotFrozen();
         this.execute = execute;
     }
     
@@ -125,7 +153,9 @@ public class ObservedEvent {
      * @return the client IDs to execute.
      */
     public Stream<String> getExecute(FacesContext ctx) {
-        return evaluateStrings(ctx, execute, DEFAULT_EXECUTE);
+        return frozenValues != null ?
+                frozenValues.execute.stream() :
+                evaluateStrings(ctx.getELContext(), execute, DEFAULT_EXECUTE);
     }
     
     /**
@@ -134,6 +164,7 @@ public class ObservedEvent {
      * @param render the optional value expression for the render attribute.
      */
     public void setRender(Optional<ValueExpression> render) {
+        checkNotFrozen();
         this.render = render;
     }
     
@@ -156,23 +187,253 @@ public class ObservedEvent {
      * @return the client IDs to render.
      */
     public Stream<String> getRender(FacesContext ctx) {
-        return evaluateStrings(ctx, render, DEFAULT_RENDER);
+        return frozenValues != null ?
+                frozenValues.render.stream() :
+                evaluateStrings(ctx.getELContext(), render, DEFAULT_RENDER);
     }
     
     /**
-     * Evaluates an optional expression that specifies a collection of strings.
+     * Sets the optional value expression that specifies whether a newer request supersedes a stale one.
+     * 
+     * @param supersede the optional value expression for the supersede attribute.
+     */
+    public void setSupersede(Optional<ValueExpression> supersede) {
+        checkNotFrozen();
+        this.supersede = supersede;
+    }
+    
+    /**
+     * Gets the optional value expression that specifies whether a newer request supersedes a stale one.
+     * 
+     * @return the optional value expression for the supersede attribute.
+     */
+    public Optional<ValueExpression> getSupersede() {
+        return this.supersede;
+    }
+    
+    /**
+     * Indicates whether a newer request sent by the event observer for this event supersedes a stale one: the
+     * requests not yet sent are merged into the newer one, and the response of the request in progress is ignored.
+     * <p>
+     * If the value expression of the supersede attribute was not specified, then false will be returned.
+     * 
+     * @param ctx the faces context.
+     * @return true if the stale requests are superseded.
+     */
+    public boolean isSupersede(FacesContext ctx) {
+        return frozenValues != null ? frozenValues.supersede : evaluateBoolean(ctx.getELContext(), supersede);
+    }
+    
+    /**
+     * Sets the optional value expression that specifies whether the request for this event has no side effect.
+     * 
+     * @param sideEffectFree the optional value expression for the sideEffectFree attribute.
+     */
+    public void setSideEffectFree(Optional<ValueExpression> sideEffectFree) {
+        checkNotFrozen();
+        this.sideEffectFree = sideEffectFree;
+    }
+    
+    /**
+     * Gets the optional value expression that specifies whether the request for this event has no side effect.
+     * 
+     * @return the optional value expression for the sideEffectFree attribute.
+     */
+    public Optional<ValueExpression> getSideEffectFree() {
+        return this.sideEffectFree;
+    }
+    
+    /**
+     * Indicates whether the request sent by the event observer for this event has no side effect, so that it can be
+     * sent speculatively and its response discarded.
+     * <p>
+     * If the value expression of the sideEffectFree attribute was not specified, then false will be returned.
+     * 
+     * @param ctx the faces context.
+     * @return true if the request has no side effect.
+     */
+    public boolean isSideEffectFree(FacesContext ctx) {
+        return frozenValues != null ?
+                frozenValues.sideEffectFree :
+                evaluateBoolean(ctx.getELContext(), sideEffectFree);
+    }
+    
+    /**
+     * Sets the optional value expression that specifies the model sent to the client, as JSON, when this event is
+     * observed.
+     * 
+     * @param model the optional value expression for the model attribute.
+     */
+    public void setModel(Optional<ValueExpression> model) {
+        checkNotFrozen();
+        this.model = model;
+    }
+    
+    /**
+     * Gets the optional value expression that specifies the model sent to the client when this event is observed.
+     * 
+     * @return the optional value expression for the model attribute.
+     */
+    public Optional<ValueExpression> getModel() {
+        return this.model;
+    }
+    
+    /**
+     * Evaluates the model sent to the client when this event is observed. The model is evaluated on each request,
+     * even when this observed event is frozen.
      * 
      * @param ctx the faces context.
+     * @return the model, possibly null, or nothing if the model attribute was not specified.
+     */
+    public Optional<Object> getModel(FacesContext ctx) {
+        ELContext elContext = ctx.getELContext();
+        return model.map(expression -> Optional.ofNullable(expression.getValue(elContext))).orElse(Optional.empty());
+    }
+    
+    /**
+     * Freezes this observed event: its attributes are evaluated once, and it can no longer be modified. It must only
+     * be invoked when all the value expressions of the attributes are literals.
+     * 
+     * @param elContext the EL context used to evaluate the literals.
+     */
+    void freeze(ELContext elContext) {
+        if (frozenValues == null) {
+            frozenValues = new FrozenValues(
+                    evaluateEvent(elContext),
+                    evaluateStrings(elContext, execute, DEFAULT_EXECUTE).collect(Collectors.toList()),
+                    evaluateStrings(elContext, render, DEFAULT_RENDER).collect(Collectors.toList()),
+                    evaluateBoolean(elContext, supersede),
+                    evaluateBoolean(elContext, sideEffectFree)
+            );
+        }
+    }
+    
+    /**
+     * Saves the state of this observed event, when the event observer that holds it is saved without partial state
+     * saving: the values of a frozen observed event (a string and arrays of strings) are saved instead of its literal
+     * value expressions.
+     * 
+     * @return the state of the observed event.
+     */
+    Object saveState() {
+        Object[] state;
+        
+        if (frozenValues != null) {
+            state = new Object[] {
+                frozenValues.event,
+                frozenValues.execute.toArray(new String[frozenValues.execute.size()]),
+                frozenValues.render.toArray(new String[frozenValues.render.size()]),
+                frozenValues.supersede,
+                frozenValues.sideEffectFree,
+                model.orElse(null)
+            };
+        }
+        else {
+            state = new Object[] {
+                event,
+                execute.orElse(null),
+                render.orElse(null),
+                supersede.orElse(null),
+                sideEffectFree.orElse(null),
+                model.orElse(null)
+            };
+        }
+        
+        return state;
+    }
+    
+    /**
+     * Restores an observed event from its saved state.
+     * 
+     * @param state the state of the observed event, as returned by {@link #saveState()}.
+     * @return the restored observed event.
+     */
+    static ObservedEvent restoreState(Object state) {
+        Object[] values = (Object[]) state;
+        ObservedEvent observedEvent = new ObservedEvent();
+        observedEvent.setModel(Optional.ofNullable((ValueExpression) values[5]));
+        
+        /**
+         * the name of a frozen observed event is saved as a string, and the one of another event as a value expression
+         */
+        if (values[0] instanceof String) {
+            observedEvent.setExecute(Optional.empty());
+            observedEvent.setRender(Optional.empty());
+            observedEvent.frozenValues = new FrozenValues(
+                    (String) values[0],
+                    Arrays.asList((String[]) values[1]),
+                    Arrays.asList((String[]) values[2]),
+                    (Boolean) values[3],
+                    (Boolean) values[4]
+            );
+        }
+        else {
+            observedEvent.setEvent((ValueExpression) values[0]);
+            observedEvent.setExecute(Optional.ofNullable((ValueExpression) values[1]));
+            observedEvent.setRender(Optional.ofNullable((ValueExpression) values[2]));
+            observedEvent.setSupersede(Optional.ofNullable((ValueExpression) values[3]));
+            observedEvent.setSideEffectFree(Optional.ofNullable((ValueExpression) values[4]));
+        }
+        
+        return observedEvent;
+    }
+    
+    /**
+     * Indicates whether this observed event is frozen.
+     * 
+     * @return true if the observed event is frozen.
+     */
+    public boolean isFrozen() {
+        return frozenValues != null;
+    }
+    
+    /**
+     * Checks that this observed event can be modified.
+     * 
+     * @throws IllegalStateException if the observed event is frozen.
+     */
+    private void checkNotFrozen() {
+        if (frozenValues != null) {
+            throw new IllegalStateException("the observed event is frozen, and shared by several event observers");
+        }
+    }
+    
+    /**
+     * Evaluates the expression that specifies the name of the event.
+     * 
+     * @param elContext the EL context.
+     * @return the name of the event.
+     */
+    private String evaluateEvent(ELContext elContext) {
+        return (String) event.getValue(elContext);
+    }
+    
+    /**
+     * Evaluates an optional expression that specifies a boolean.
+     * 
+     * @param elContext the EL context.
+     * @param optionalExpression the optional expression to evaluate.
+     * @return the result of the evaluation of the optional expression, or false if not specified.
+     */
+    private boolean evaluateBoolean(ELContext elContext, Optional<ValueExpression> optionalExpression) {
+        return optionalExpression.map(expression -> expression.getValue(elContext)).map(value ->
+                value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(String.valueOf(value))
+        ).orElse(false);
+    }
+    
+    /**
+     * Evaluates an optional expression that specifies a collection of strings.
+     * 
+     * @param elContext the EL context.
      * @param optionalExpression the optional expression to evaluate.
      * @param defaultValue the default value to put in the collection in case the collection would be empty.
      * @return the result of the evaluation of the optional expression.
      */
     private Stream<String> evaluateStrings(
-            FacesContext ctx,
+            ELContext elContext,
             Optional<ValueExpression> optionalExpression,
             String defaultValue) {
         Stream<String> singleton = Stream.of(defaultValue);
-        ELContext elContext = ctx.getELContext();
         
         return optionalExpression.map(expression -> {
             Stream<String> values;
@@ -204,4 +465,57 @@ public class ObservedEvent {
             return values;
         }).orElse(singleton);
     }
+    
+    /**
+     * The values of the attributes of a frozen observed event.
+     */
+    static private class FrozenValues {
+        
+        /**
+         * The name of the event.
+         */
+        private final String event;
+        
+        /**
+         * The client IDs to execute.
+         */
+        private final List<String> execute;
+        
+        /**
+         * The client IDs to render.
+         */
+        private final List<String> render;
+        
+        /**
+         * Whether a newer request supersedes a stale one.
+         */
+        private final boolean supersede;
+        
+        /**
+         * Whether the request has no side effect.
+         */
+        private final boolean sideEffectFree;
+        
+        /**
+         * Constructs the values of the attributes of a frozen observed event.
+         * 
+         * @param event the name of the event.
+         * @param execute the client IDs to execute.
+         * @param render the client IDs to render.
+         * @param supersede whether a newer request supersedes a stale one.
+         * @param sideEffectFree whether the request has no side effect.
+         */
+        private FrozenValues(
+                String event,
+                List<String> execute,
+                List<String> render,
+                boolean supersede,
+                boolean sideEffectFree) {
+            this.event = event;
+            this.execute = Collections.unmodifiableList(execute);
+            this.render = Collections.unmodifiableList(render);
+            this.supersede = supersede;
+            this.sideEffectFree = sideEffectFree;
+        }
+    }
 }
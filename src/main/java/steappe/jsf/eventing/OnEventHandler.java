@@ -25,9 +25,9 @@ package steappe.jsf.eventing;
 
 import java.io.IOException;
 import java.util.Optional;
+import java.util.stream.Stream;
 import javax.el.ValueExpression;
 import javax.faces.component.UIComponent;
-import javax.faces.event.PhaseId;
 import javax.faces.view.facelets.FaceletContext;
 import javax.faces.view.facelets.TagAttribute;
 import javax.faces.view.facelets.TagConfig;
@@ -53,6 +53,32 @@ public class OnEventHandler extends TagHandler {
      * The optional render attribute.
      */
     private final Optional<TagAttribute> render;
+    
+    /**
+     * The optional supersede attribute.
+     */
+    private final Optional<TagAttribute> supersede;
+    
+    /**
+     * The optional sideEffectFree attribute.
+     */
+    private final Optional<TagAttribute> sideEffectFree;
+    
+    /**
+     * The optional model attribute.
+     */
+    private final Optional<TagAttribute> model;
+    
+    /**
+     * Whether all the attributes of the tag are literals, in which case the observed event is the same in all the
+     * views built from the tag.
+     */
+    private final boolean literal;
+    
+    /**
+     * The frozen observed event shared by all the views, lazily created when all the attributes are literals.
+     */
+    private volatile ObservedEvent template;
 
     /**
      * Constructs this tag handler.
@@ -65,6 +91,12 @@ public class OnEventHandler extends TagHandler {
         this.event = getRequiredAttribute("event");
         this.execute = Optional.ofNullable(getAttribute("execute"));
         this.render = Optional.ofNullable(getAttribute("render"));
+        this.supersede = Optional.ofNullable(getAttribute("supersede"));
+        this.sideEffectFree = Optional.ofNullable(getAttribute("sideEffectFree"));
+        this.model = Optional.ofNullable(getAttribute("model"));
+        this.literal = Stream.of(Optional.of(event), execute, render, supersede, sideEffectFree, model).allMatch(
+                attribute -> attribute.map(TagAttribute::isLiteral).orElse(true)
+        );
     }
     
     @Override
@@ -78,26 +110,68 @@ public class OnEventHandler extends TagHandler {
     /**
      * Applies the observed event to an event observer.
      * <p>
-     * The event is applied to the event observer in the render response phase only, because we just want to change
-     * the way the event observer is rendered. The event is not saved in the state holder of the event observer for
-     * the same reason.
+     * The event is applied each time the tag is applied, whatever the phase: the event observer clears its observed
+     * events before its nested tags are applied (see {@link EventObserverHandler}). Hence the event observer knows its
+     * observed events whether the view is built during the restore view phase (stateless views, partial state saving)
+     * or refreshed during the render response phase. With partial state saving, the event is not saved in the state of
+     * the event observer, because it is rebuilt from the tag; it is only saved with the full state of the event
+     * observer (see {@link EventObserverComponent#saveState(javax.faces.context.FacesContext)}).
+     * <p>
+     * When all the attributes of the tag are literals, the observed event is created and frozen once, and the same
+     * instance is applied to the event observers of all the views built from the tag.
      * 
      * @param ctx the current <code>FaceletContext</code> instance.
      * @param eventObserver the event observer.
      */
     private void apply(FaceletContext ctx, EventObserverComponent eventObserver) {
-        PhaseId phaseId = ctx.getFacesContext().getCurrentPhaseId();
-
-        if (phaseId == PhaseId.RENDER_RESPONSE) {
-            ValueExpression eventExpression = event.getValueExpression(ctx, String.class);
-            Optional<ValueExpression> executeExpression = execute.map(attribute -> attribute.getValueExpression(ctx, Object.class));
-            Optional<ValueExpression> renderExpression = render.map(attribute -> attribute.getValueExpression(ctx, Object.class));
-
-            ObservedEvent observedEvent = new ObservedEvent();
-            observedEvent.setEvent(eventExpression);
-            observedEvent.setExecute(executeExpression);
-            observedEvent.setRender(renderExpression);
-            eventObserver.addObservedEvent(observedEvent);
+        ObservedEvent observedEvent;
+        
+        if (literal) {
+            observedEvent = template;
+            
+            /**
+             * concurrent view builds may create the template twice, which is harmless
+             */
+            if (observedEvent == null) {
+                observedEvent = createObservedEvent(ctx);
+                observedEvent.freeze(ctx);
+                template = observedEvent;
+            }
+        }
+        else {
+            observedEvent = createObservedEvent(ctx);
         }
+        
+        eventObserver.addObservedEvent(observedEvent);
+    }
+    
+    /**
+     * Creates the observed event declared by the tag.
+     * 
+     * @param ctx the current <code>FaceletContext</code> instance.
+     * @return the observed event.
+     */
+    private ObservedEvent createObservedEvent(FaceletContext ctx) {
+        ValueExpression eventExpression = event.getValueExpression(ctx, String.class);
+        Optional<ValueExpression> executeExpression = execute.map(attribute -> attribute.getValueExpression(ctx, Object.class));
+        Optional<ValueExpression> renderExpression = render.map(attribute -> attribute.getValueExpression(ctx, Object.class));
+        Optional<ValueExpression> supersedeExpression = supersede.map(attribute ->
+                attribute.getValueExpression(ctx, Boolean.class)
+        );
+        Optional<ValueExpression> sideEffectFreeExpression = sideEffectFree.map(attribute ->
+                attribute.getValueExpression(ctx, Boolean.class)
+        );
+        Optional<ValueExpression> modelExpression = model.map(attribute ->
+                attribute.getValueExpression(ctx, Object.class)
+        );
+
+        ObservedEvent observedEvent = new ObservedEvent();
+        observedEvent.setEvent(eventExpression);
+        observedEvent.setExecute(executeExpression);
+        observedEvent.setRender(renderExpression);
+        observedEvent.setSupersede(supersedeExpression);
+        observedEvent.setSideEffectFree(sideEffectFreeExpression);
+        observedEvent.setModel(modelExpression);
+        return observedEvent;
     }
 }
@@ -0,0 +1,773 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package steappe.jsf.eventing;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.security.Principal;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.el.ELContext;
+import javax.el.ELResolver;
+import javax.el.FunctionMapper;
+import javax.el.VariableMapper;
+import javax.faces.application.FacesMessage;
+import javax.faces.context.ExternalContext;
+import javax.faces.context.ExternalContextWrapper;
+import javax.faces.context.FacesContext;
+import javax.faces.context.FacesContextWrapper;
+import javax.faces.context.Flash;
+import javax.faces.event.PhaseId;
+import javax.faces.lifecycle.ClientWindow;
+import javax.servlet.http.HttpSession;
+
+/**
+ * The faces context of the action listeners of a parallel event observer, while they run on a worker thread.
+ * <p>
+ * It is the current faces context of the worker thread, and it isolates the state that is not safe to share with the
+ * request thread:
+ * <ul>
+ * <li>it has its own EL context, sharing the resolvers of the faces context of the request</li>
+ * <li>it has its own copy of the attributes of the faces context of the request</li>
+ * <li>it has its own external context, which holds snapshots of the request parameters, headers, cookies, attributes
+ * and properties, whose session map is backed by the HTTP session, and which denies the access to the servlet request
+ * and response, which are not thread-safe</li>
+ * <li>the added messages, and the requests to skip to the render response phase or to complete the response, are
+ * buffered and replayed on the request thread when the listeners are joined</li>
+ * </ul>
+ * The other state (the component tree) is shared, and the listeners must not modify it. The request and session
+ * contexts of CDI are not active on the worker thread: the listeners cannot use request or session scoped CDI beans.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+class ParallelFacesContext extends FacesContextWrapper {
+
+    /**
+     * The faces context of the request.
+     */
+    private final FacesContext wrapped;
+
+    /**
+     * The phase in which the listeners were submitted.
+     */
+    private final PhaseId phaseId;
+
+    /**
+     * The EL context of the listeners.
+     */
+    private final ELContext elContext;
+
+    /**
+     * The external context of the listeners.
+     */
+    private final ExternalContext externalContext;
+
+    /**
+     * The attributes of this faces context, initialized with the attributes of the faces context of the request.
+     */
+    private final Map<Object, Object> attributes;
+
+    /**
+     * The messages added by the listeners, as pairs of client ID and message.
+     */
+    private final List<Object[]> messages = new ArrayList<>();
+
+    /**
+     * Whether the listeners asked to skip to the render response phase.
+     */
+    private boolean renderResponse;
+
+    /**
+     * Whether the listeners completed the response.
+     */
+    private boolean responseComplete;
+
+    /**
+     * Constructs the faces context of the listeners of a parallel event observer. It must be constructed on the
+     * request thread.
+     *
+     * @param wrapped the faces context of the request.
+     */
+    ParallelFacesContext(FacesContext wrapped) {
+        ELContext shared = wrapped.getELContext();
+        ELResolver resolver = shared.getELResolver();
+        FunctionMapper functionMapper = shared.getFunctionMapper();
+        VariableMapper variableMapper = shared.getVariableMapper();
+
+        this.wrapped = wrapped;
+        this.phaseId = wrapped.getCurrentPhaseId();
+        this.attributes = new HashMap<>(wrapped.getAttributes());
+        this.externalContext = new ParallelExternalContext(wrapped.getExternalContext());
+        this.elContext = new ELContext() {
+            @Override
+            public ELResolver getELResolver() {
+                return resolver;
+            }
+
+            @Override
+            public FunctionMapper getFunctionMapper() {
+                return functionMapper;
+            }
+
+            @Override
+            public VariableMapper getVariableMapper() {
+                return variableMapper;
+            }
+        };
+        this.elContext.putContext(FacesContext.class, this);
+        this.elContext.setLocale(shared.getLocale());
+    }
+
+    @Override
+    public FacesContext getWrapped() {
+        return this.wrapped;
+    }
+
+    @Override
+    public ELContext getELContext() {
+        return this.elContext;
+    }
+
+    @Override
+    public ExternalContext getExternalContext() {
+        return this.externalContext;
+    }
+
+    @Override
+    public Map<Object, Object> getAttributes() {
+        return this.attributes;
+    }
+
+    @Override
+    public PhaseId getCurrentPhaseId() {
+        return this.phaseId;
+    }
+
+    @Override
+    public synchronized void addMessage(String clientId, FacesMessage message) {
+        messages.add(new Object[] {clientId, message});
+    }
+
+    @Override
+    public synchronized void renderResponse() {
+        this.renderResponse = true;
+    }
+
+    @Override
+    public synchronized boolean getRenderResponse() {
+        return this.renderResponse || wrapped.getRenderResponse();
+    }
+
+    @Override
+    public synchronized void responseComplete() {
+        this.responseComplete = true;
+    }
+
+    @Override
+    public synchronized boolean getResponseComplete() {
+        return this.responseComplete || wrapped.getResponseComplete();
+    }
+
+    @Override
+    public void release() {
+        /**
+         * the faces context of the request is released by the request thread
+         */
+    }
+
+    /**
+     * Runs a task with this faces context as the current faces context of the current thread.
+     *
+     * @param task the task to run.
+     */
+    void run(Runnable task) {
+        FacesContext previous = FacesContext.getCurrentInstance();
+        setCurrentInstance(this);
+
+        try {
+            task.run();
+        }
+        finally {
+            setCurrentInstance(previous);
+        }
+    }
+
+    /**
+     * Replays the buffered messages and requests on the faces context of the request. It must be invoked on the
+     * request thread, once the listeners are done.
+     */
+    synchronized void replay() {
+        messages.forEach(message -> wrapped.addMessage((String) message[0], (FacesMessage) message[1]));
+        messages.clear();
+
+        if (renderResponse) {
+            wrapped.renderResponse();
+        }
+
+        if (responseComplete) {
+            wrapped.responseComplete();
+        }
+    }
+
+    /**
+     * The external context of the action listeners of a parallel event observer.
+     * <p>
+     * The servlet request and response are not safe to use concurrently with the request thread, and the external
+     * context of the JSF implementation reaches them from most of its methods, including its session map. The
+     * listeners therefore see snapshots of the request parameters, headers, cookies, attributes and properties, taken
+     * on the request thread when the listeners are submitted, and a session map backed by the HTTP session captured
+     * at the same time. The other methods that read the request (e.g. isUserInRole) or that use the response (e.g. the
+     * encoding of URLs, redirect) throw an IllegalStateException, like the access to the servlet request and response,
+     * and the listeners cannot create a session. The request attributes set by the listeners are not visible to the
+     * request thread.
+     */
+    static private final class ParallelExternalContext extends ExternalContextWrapper {
+
+        /**
+         * The external context of the request.
+         */
+        private final ExternalContext wrapped;
+
+        /**
+         * The snapshot of the request parameters.
+         */
+        private final Map<String, String> requestParameterMap;
+
+        /**
+         * The snapshot of the values of the request parameters.
+         */
+        private final Map<String, String[]> requestParameterValuesMap;
+
+        /**
+         * The snapshot of the request headers.
+         */
+        private final Map<String, String> requestHeaderMap;
+
+        /**
+         * The snapshot of the values of the request headers.
+         */
+        private final Map<String, String[]> requestHeaderValuesMap;
+
+        /**
+         * The snapshot of the request cookies.
+         */
+        private final Map<String, Object> requestCookieMap;
+
+        /**
+         * The copy of the request attributes.
+         */
+        private final Map<String, Object> requestMap;
+
+        /**
+         * The application map.
+         */
+        private final Map<String, Object> applicationMap;
+
+        /**
+         * The session of the request, or null if none existed when the listeners were submitted.
+         */
+        private final Object session;
+
+        /**
+         * The session map, backed by the session of the request.
+         */
+        private final Map<String, Object> sessionMap;
+
+        /**
+         * The snapshot of the preferred locales of the client, the preferred one first.
+         */
+        private final List<Locale> requestLocales;
+
+        /**
+         * The snapshot of the properties of the request, by name of the getter of the external context.
+         */
+        private final Map<String, Object> requestProperties = new HashMap<>();
+
+        /**
+         * Constructs the external context of the listeners of a parallel event observer. It must be constructed on
+         * the request thread.
+         *
+         * @param wrapped the external context of the request.
+         */
+        private ParallelExternalContext(ExternalContext wrapped) {
+            this.wrapped = wrapped;
+            this.requestParameterMap = Collections.unmodifiableMap(new HashMap<>(wrapped.getRequestParameterMap()));
+            this.requestParameterValuesMap = Collections.unmodifiableMap(
+                    new HashMap<>(wrapped.getRequestParameterValuesMap())
+            );
+            this.requestHeaderMap = Collections.unmodifiableMap(new HashMap<>(wrapped.getRequestHeaderMap()));
+            this.requestHeaderValuesMap = Collections.unmodifiableMap(
+                    new HashMap<>(wrapped.getRequestHeaderValuesMap())
+            );
+            this.requestCookieMap = Collections.unmodifiableMap(new HashMap<>(wrapped.getRequestCookieMap()));
+            this.requestMap = new HashMap<>(wrapped.getRequestMap());
+            this.applicationMap = wrapped.getApplicationMap();
+            this.session = wrapped.getSession(false);
+            this.sessionMap = new SessionMap(session instanceof HttpSession ? (HttpSession) session : null);
+            this.requestLocales = toList(wrapped.getRequestLocales());
+
+            requestProperties.put("authType", wrapped.getAuthType());
+            requestProperties.put("remoteUser", wrapped.getRemoteUser());
+            requestProperties.put("userPrincipal", wrapped.getUserPrincipal());
+            requestProperties.put("requestContextPath", wrapped.getRequestContextPath());
+            requestProperties.put("requestServletPath", wrapped.getRequestServletPath());
+            requestProperties.put("requestPathInfo", wrapped.getRequestPathInfo());
+            requestProperties.put("requestScheme", wrapped.getRequestScheme());
+            requestProperties.put("requestServerName", wrapped.getRequestServerName());
+            requestProperties.put("requestServerPort", wrapped.getRequestServerPort());
+            requestProperties.put("requestCharacterEncoding", wrapped.getRequestCharacterEncoding());
+            requestProperties.put("requestContentType", wrapped.getRequestContentType());
+            requestProperties.put("requestContentLength", wrapped.getRequestContentLength());
+            requestProperties.put("secure", wrapped.isSecure());
+        }
+
+        /**
+         * Collects the remaining elements of an iterator.
+         *
+         * @param iterator the iterator.
+         * @return the elements.
+         */
+        static private <T> List<T> toList(Iterator<T> iterator) {
+            List<T> list = new ArrayList<>();
+            iterator.forEachRemaining(list::add);
+            return list;
+        }
+
+        /**
+         * Creates the exception thrown when a listener accesses the servlet request or response.
+         *
+         * @param what the accessed object: "request" or "response".
+         * @return the exception.
+         */
+        static private IllegalStateException denied(String what) {
+            return new IllegalStateException("a parallel action listener cannot access the servlet " + what);
+        }
+
+        /**
+         * Gets the snapshot of a property of the request.
+         *
+         * @param name the name of the getter of the property, without its prefix.
+         * @return the value of the property.
+         */
+        @SuppressWarnings("unchecked")
+        private <T> T getRequestProperty(String name) {
+            return (T) requestProperties.get(name);
+        }
+
+        @Override
+        public ExternalContext getWrapped() {
+            return this.wrapped;
+        }
+
+        @Override
+        public Map<String, String> getRequestParameterMap() {
+            return this.requestParameterMap;
+        }
+
+        @Override
+        public Map<String, String[]> getRequestParameterValuesMap() {
+            return this.requestParameterValuesMap;
+        }
+
+        @Override
+        public Map<String, String> getRequestHeaderMap() {
+            return this.requestHeaderMap;
+        }
+
+        @Override
+        public Map<String, String[]> getRequestHeaderValuesMap() {
+            return this.requestHeaderValuesMap;
+        }
+
+        @Override
+        public Map<String, Object> getRequestCookieMap() {
+            return this.requestCookieMap;
+        }
+
+        @Override
+        public Map<String, Object> getRequestMap() {
+            return this.requestMap;
+        }
+
+        @Override
+        public Iterator<String> getRequestParameterNames() {
+            return this.requestParameterMap.keySet().iterator();
+        }
+
+        @Override
+        public Locale getRequestLocale() {
+            return this.requestLocales.isEmpty() ? Locale.getDefault() : this.requestLocales.get(0);
+        }
+
+        @Override
+        public Iterator<Locale> getRequestLocales() {
+            return Collections.unmodifiableList(this.requestLocales).iterator();
+        }
+
+        @Override
+        public String getAuthType() {
+            return getRequestProperty("authType");
+        }
+
+        @Override
+        public String getRemoteUser() {
+            return getRequestProperty("remoteUser");
+        }
+
+        @Override
+        public Principal getUserPrincipal() {
+            return getRequestProperty("userPrincipal");
+        }
+
+        @Override
+        public String getRequestContextPath() {
+            return getRequestProperty("requestContextPath");
+        }
+
+        @Override
+        public String getRequestServletPath() {
+            return getRequestProperty("requestServletPath");
+        }
+
+        @Override
+        public String getRequestPathInfo() {
+            return getRequestProperty("requestPathInfo");
+        }
+
+        @Override
+        public String getRequestScheme() {
+            return getRequestProperty("requestScheme");
+        }
+
+        @Override
+        public String getRequestServerName() {
+            return getRequestProperty("requestServerName");
+        }
+
+        @Override
+        public int getRequestServerPort() {
+            return this.<Integer>getRequestProperty("requestServerPort");
+        }
+
+        @Override
+        public String getRequestCharacterEncoding() {
+            return getRequestProperty("requestCharacterEncoding");
+        }
+
+        @Override
+        public String getRequestContentType() {
+            return getRequestProperty("requestContentType");
+        }
+
+        @Override
+        public int getRequestContentLength() {
+            return this.<Integer>getRequestProperty("requestContentLength");
+        }
+
+        @Override
+        public boolean isSecure() {
+            return this.<Boolean>getRequestProperty("secure");
+        }
+
+        @Override
+        public Map<String, Object> getApplicationMap() {
+            return this.applicationMap;
+        }
+
+        @Override
+        public Object getSession(boolean create) {
+            if (session == null && create) {
+                throw new IllegalStateException("a parallel action listener cannot create a session");
+            }
+
+            return this.session;
+        }
+
+        @Override
+        public Map<String, Object> getSessionMap() {
+            return this.sessionMap;
+        }
+
+        @Override
+        public String getSessionId(boolean create) {
+            Object current = getSession(create);
+            return current instanceof HttpSession ? ((HttpSession) current).getId() : "";
+        }
+
+        @Override
+        public int getSessionMaxInactiveInterval() {
+            return ((HttpSession) getSession(true)).getMaxInactiveInterval();
+        }
+
+        @Override
+        public void setSessionMaxInactiveInterval(int interval) {
+            ((HttpSession) getSession(true)).setMaxInactiveInterval(interval);
+        }
+
+        @Override
+        public void invalidateSession() {
+            if (session instanceof HttpSession) {
+                ((HttpSession) session).invalidate();
+            }
+        }
+
+        @Override
+        public Object getRequest() {
+            throw denied("request");
+        }
+
+        @Override
+        public void setRequest(Object request) {
+            throw denied("request");
+        }
+
+        @Override
+        public void setRequestCharacterEncoding(String encoding) {
+            throw denied("request");
+        }
+
+        @Override
+        public boolean isUserInRole(String role) {
+            throw denied("request");
+        }
+
+        @Override
+        public Flash getFlash() {
+            throw denied("request");
+        }
+
+        @Override
+        public void setClientWindow(ClientWindow window) {
+            throw denied("request");
+        }
+
+        @Override
+        public void dispatch(String path) {
+            throw denied("request");
+        }
+
+        @Override
+        public Object getResponse() {
+            throw denied("response");
+        }
+
+        @Override
+        public void setResponse(Object response) {
+            throw denied("response");
+        }
+
+        @Override
+        public String encodeActionURL(String url) {
+            throw denied("response");
+        }
+
+        @Override
+        public String encodeResourceURL(String url) {
+            throw denied("response");
+        }
+
+        @Override
+        public String encodePartialActionURL(String url) {
+            throw denied("response");
+        }
+
+        @Override
+        public String encodeBookmarkableURL(String baseUrl, Map<String, List<String>> parameters) {
+            throw denied("response");
+        }
+
+        @Override
+        public String encodeRedirectURL(String baseUrl, Map<String, List<String>> parameters) {
+            throw denied("response");
+        }
+
+        @Override
+        public void redirect(String url) {
+            throw denied("response");
+        }
+
+        @Override
+        public void addResponseCookie(String name, String value, Map<String, Object> properties) {
+            throw denied("response");
+        }
+
+        @Override
+        public String getResponseCharacterEncoding() {
+            throw denied("response");
+        }
+
+        @Override
+        public String getResponseContentType() {
+            throw denied("response");
+        }
+
+        @Override
+        public OutputStream getResponseOutputStream() {
+            throw denied("response");
+        }
+
+        @Override
+        public Writer getResponseOutputWriter() {
+            throw denied("response");
+        }
+
+        @Override
+        public void setResponseCharacterEncoding(String encoding) {
+            throw denied("response");
+        }
+
+        @Override
+        public void setResponseContentType(String contentType) {
+            throw denied("response");
+        }
+
+        @Override
+        public void setResponseHeader(String name, String value) {
+            throw denied("response");
+        }
+
+        @Override
+        public void addResponseHeader(String name, String value) {
+            throw denied("response");
+        }
+
+        @Override
+        public void setResponseBufferSize(int size) {
+            throw denied("response");
+        }
+
+        @Override
+        public int getResponseBufferSize() {
+            throw denied("response");
+        }
+
+        @Override
+        public boolean isResponseCommitted() {
+            throw denied("response");
+        }
+
+        @Override
+        public void responseReset() {
+            throw denied("response");
+        }
+
+        @Override
+        public void responseSendError(int statusCode, String message) {
+            throw denied("response");
+        }
+
+        @Override
+        public void setResponseStatus(int statusCode) {
+            throw denied("response");
+        }
+
+        @Override
+        public void responseFlushBuffer() {
+            throw denied("response");
+        }
+
+        @Override
+        public void setResponseContentLength(int length) {
+            throw denied("response");
+        }
+    }
+
+    /**
+     * The session map of the action listeners of a parallel event observer, backed by the HTTP session captured on
+     * the request thread, which is safe to use concurrently. It cannot create a session.
+     */
+    static private final class SessionMap extends AbstractMap<String, Object> {
+
+        /**
+         * The HTTP session, or null if none existed when the listeners were submitted.
+         */
+        private final HttpSession session;
+
+        /**
+         * Constructs a session map.
+         *
+         * @param session the HTTP session, or null if none.
+         */
+        private SessionMap(HttpSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return session != null && key != null ? session.getAttribute(key.toString()) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            if (session == null) {
+                throw new IllegalStateException("a parallel action listener cannot create a session");
+            }
+
+            Object previous = session.getAttribute(key);
+            session.setAttribute(key, value);
+            return previous;
+        }
+
+        @Override
+        public Object remove(Object key) {
+            Object previous = get(key);
+
+            if (previous != null) {
+                session.removeAttribute(key.toString());
+            }
+
+            return previous;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+
+            if (session != null) {
+                Collections.list(session.getAttributeNames()).forEach(name -> {
+                    Object value = session.getAttribute(name);
+
+                    if (value != null) {
+                        snapshot.put(name, value);
+                    }
+                });
+            }
+
+            return Collections.unmodifiableSet(snapshot.entrySet());
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package steappe.jsf.eventing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.faces.FacesException;
+import javax.faces.context.FacesContext;
+import javax.faces.event.ActionEvent;
+import javax.faces.event.ActionListener;
+import javax.faces.event.ExceptionQueuedEvent;
+import javax.faces.event.ExceptionQueuedEventContext;
+import javax.servlet.ServletContext;
+
+/**
+ * The action listeners of the parallel event observers of the current request, running concurrently.
+ * <p>
+ * When the action event of a parallel event observer is broadcast, its action listeners are submitted to an executor
+ * instead of being invoked on the request thread: on virtual threads when the JVM supports them, or else on a bounded
+ * pool of threads (see the context parameter PARALLEL_LISTENER_THREADS). They are joined at the end of the phase in
+ * which they were submitted, by {@link ParallelListenersPhaseListener}, in the order of their submission. For each
+ * event observer, the join then:
+ * <ul>
+ * <li>replays the messages added by the listeners, and their requests to skip to the render response phase or to
+ * complete the response</li>
+ * <li>invokes the default action listener of the application, on the request thread, as {@code UICommand} does</li>
+ * <li>or else, if a listener failed, queues its exception to the exception handler of the request, and skips the
+ * default action listener</li>
+ * </ul>
+ * The listeners see a faces context of their own (see {@link ParallelFacesContext}): they may evaluate EL expressions,
+ * read the request and call the backends, but they must not modify the component tree nor write the response.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class ParallelListeners {
+
+    /**
+     * The name of the faces context attribute that holds the parallel listeners of the current request.
+     */
+    static private final String ATTRIBUTE_NAME = ParallelListeners.class.getName();
+
+    /**
+     * The name of the servlet context attribute that holds the executor of the parallel listeners.
+     */
+    static private final String EXECUTOR_ATTRIBUTE_NAME = ExecutorService.class.getName() + ".parallelListeners";
+
+    /**
+     * The maximum number of submissions waiting for a thread of the bounded pool; beyond, the listeners run on the
+     * request thread.
+     */
+    static private final int MAX_WAITING_SUBMISSIONS = 1024;
+
+    /**
+     * The submissions of the current request, in order.
+     */
+    private final List<Submission> submissions = new ArrayList<>();
+
+    /**
+     * Gets the parallel listeners of the current request, and creates them if needed.
+     *
+     * @param context the faces context.
+     * @return the parallel listeners.
+     */
+    static ParallelListeners getInstance(FacesContext context) {
+        return (ParallelListeners) context.getAttributes().computeIfAbsent(ATTRIBUTE_NAME, key ->
+                new ParallelListeners()
+        );
+    }
+
+    /**
+     * Gets the parallel listeners of the current request.
+     *
+     * @param context the faces context.
+     * @return the parallel listeners, or nothing if no parallel listener was submitted.
+     */
+    static Optional<ParallelListeners> getCurrentInstance(FacesContext context) {
+        return Optional.ofNullable((ParallelListeners) context.getAttributes().get(ATTRIBUTE_NAME));
+    }
+
+    /**
+     * Shuts the executor of the parallel listeners of a web application down, if any.
+     *
+     * @param context the servlet context of the web application.
+     */
+    static void destroy(ServletContext context) {
+        synchronized (ParallelListeners.class) {
+            Optional.ofNullable((ExecutorService) context.getAttribute(EXECUTOR_ATTRIBUTE_NAME)).ifPresent(executor -> {
+                context.removeAttribute(EXECUTOR_ATTRIBUTE_NAME);
+                executor.shutdown();
+            });
+        }
+    }
+
+    /**
+     * Submits the action listeners of a parallel event observer.
+     *
+     * @param context the faces context.
+     * @param eventObserver the event observer.
+     * @param event the action event broadcast to the event observer.
+     */
+    void submit(FacesContext context, EventObserverComponent eventObserver, ActionEvent event) {
+        ParallelFacesContext parallelContext = new ParallelFacesContext(context);
+        ActionListener[] listeners = eventObserver.getActionListeners();
+        Optional<TraceSpan> span = EventTrace.startSpan(context, "steappe.eventing.action").map(current ->
+                current.setAttribute("steappe.eventing.observer", eventObserver.getClientId(context))
+                        .setAttribute("steappe.eventing.parallel", true)
+        );
+
+        Future<?> future = getExecutor(context).submit(() -> parallelContext.run(() -> {
+            try {
+                for (ActionListener listener : listeners) {
+                    listener.processAction(event);
+                }
+            }
+            finally {
+                span.ifPresent(TraceSpan::end);
+            }
+        }));
+
+        submissions.add(new Submission(eventObserver, event, parallelContext, future));
+    }
+
+    /**
+     * Joins the submitted listeners, and applies their outcome to the current request.
+     *
+     * @param context the faces context.
+     */
+    void join(FacesContext context) {
+        List<Submission> joined = new ArrayList<>(submissions);
+        submissions.clear();
+
+        for (Submission submission : joined) {
+            Throwable failure = null;
+
+            try {
+                submission.future.get();
+            }
+            catch (ExecutionException e) {
+                failure = e.getCause();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                submission.future.cancel(true);
+                failure = new FacesException("interrupted while joining the parallel listeners", e);
+            }
+
+            submission.context.replay();
+
+            if (failure != null) {
+                ExceptionQueuedEventContext exceptionContext = new ExceptionQueuedEventContext(
+                        context,
+                        failure,
+                        submission.eventObserver,
+                        submission.event.getPhaseId()
+                );
+                context.getApplication().publishEvent(context, ExceptionQueuedEvent.class, exceptionContext);
+            }
+            else {
+                ActionListener defaultListener = context.getApplication().getActionListener();
+
+                if (defaultListener != null) {
+                    defaultListener.processAction(submission.event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the executor of the parallel listeners of the current web application, and creates it if needed.
+     *
+     * @param context the faces context.
+     * @return the executor.
+     */
+    static private ExecutorService getExecutor(FacesContext context) {
+        ServletContext servletContext = (ServletContext) context.getExternalContext().getContext();
+        ExecutorService executor = (ExecutorService) servletContext.getAttribute(EXECUTOR_ATTRIBUTE_NAME);
+
+        if (executor == null) {
+            synchronized (ParallelListeners.class) {
+                executor = (ExecutorService) servletContext.getAttribute(EXECUTOR_ATTRIBUTE_NAME);
+
+                if (executor == null) {
+                    executor = createExecutor(servletContext);
+                    servletContext.setAttribute(EXECUTOR_ATTRIBUTE_NAME, executor);
+                }
+            }
+        }
+
+        return executor;
+    }
+
+    /**
+     * Creates the executor of the parallel listeners of a web application.
+     *
+     * @param context the servlet context of the web application.
+     * @return an executor that starts a virtual thread per task if the JVM supports it, or else a bounded pool of
+     * daemon threads.
+     */
+    static private ExecutorService createExecutor(ServletContext context) {
+        ExecutorService executor;
+
+        try {
+            /**
+             * virtual threads are looked up reflectively, so that the library still runs on older JVMs
+             */
+            executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            int threads = ContextParameter.PARALLEL_LISTENER_THREADS.getInt(
+                    context,
+                    Runtime.getRuntime().availableProcessors() * 2
+            );
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory threadFactory = task -> {
+                Thread thread = new Thread(task, "steappe-eventing-listener-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    60,
+                    TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(MAX_WAITING_SUBMISSIONS),
+                    threadFactory,
+                    new ThreadPoolExecutor.CallerRunsPolicy()
+            );
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+
+        return executor;
+    }
+
+    /**
+     * The submission of the action listeners of a parallel event observer.
+     */
+    static private class Submission {
+
+        /**
+         * The event observer.
+         */
+        private final EventObserverComponent eventObserver;
+
+        /**
+         * The broadcast action event.
+         */
+        private final ActionEvent event;
+
+        /**
+         * The faces context of the listeners.
+         */
+        private final ParallelFacesContext context;
+
+        /**
+         * The future completed when the listeners are done.
+         */
+        private final Future<?> future;
+
+        /**
+         * Constructs a submission.
+         *
+         * @param eventObserver the event observer.
+         * @param event the broadcast action event.
+         * @param context the faces context of the listeners.
+         * @param future the future completed when the listeners are done.
+         */
+        private Submission(
+                EventObserverComponent eventObserver,
+                ActionEvent event,
+                ParallelFacesContext context,
+                Future<?> future) {
+            this.eventObserver = eventObserver;
+            this.event = event;
+            this.context = context;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The writer of the scripts rendered for the client-side eventing framework.
+ * <p>
+ * The script is built in memory and written to the response in a single chunk. The values are written as JavaScript
+ * string literals, where the quotes, the backslashes, the line terminators and the other control characters are
+ * escaped, as well as the characters that could close the script element or start a markup entity (&lt;, &gt; and
+ * &amp;). The literals of the names that recur in all the pages (groups and events) are escaped once, and cached.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+final class ScriptWriter {
+
+    /**
+     * The quote that delimits the string literals.
+     */
+    static private final char QUOTE = '\'';
+
+    /**
+     * The separator of the arguments and of the properties.
+     */
+    static private final char COMMA = ',';
+
+    /**
+     * The hexadecimal digits.
+     */
+    static private final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The maximum number of cached literals. Beyond it, the literals are escaped but not cached, so that names
+     * computed from unbounded data cannot make the cache grow indefinitely.
+     */
+    static final int MAX_CACHED_LITERALS = 4096;
+
+    /**
+     * The cached literals, by value.
+     */
+    static private final ConcurrentMap<String, String> LITERALS = new ConcurrentHashMap<>();
+
+    /**
+     * The script being built.
+     */
+    private final StringBuilder builder;
+
+    /**
+     * Constructs a script writer.
+     *
+     * @param capacity the initial capacity of the script, in characters.
+     */
+    ScriptWriter(int capacity) {
+        this.builder = new StringBuilder(capacity);
+    }
+
+    /**
+     * Gets the JavaScript string literal of a value, from the cache when possible.
+     *
+     * @param value the value.
+     * @return the quoted and escaped literal.
+     */
+    static String literal(String value) {
+        String literal = LITERALS.get(value);
+
+        if (literal == null) {
+            StringBuilder builder = new StringBuilder(value.length() + 8);
+            appendLiteral(builder, value);
+            literal = builder.toString();
+
+            if (LITERALS.size() < MAX_CACHED_LITERALS) {
+                LITERALS.putIfAbsent(value, literal);
+            }
+        }
+
+        return literal;
+    }
+
+    /**
+     * Gets the number of cached literals.
+     *
+     * @return the number of cached literals.
+     */
+    static int getCachedLiterals() {
+        return LITERALS.size();
+    }
+
+    /**
+     * Appends a value to a script as a JavaScript string literal. The characters that need no escaping are appended by
+     * runs rather than one by one.
+     *
+     * @param builder the script being built.
+     * @param value the value.
+     */
+    static void appendLiteral(StringBuilder builder, CharSequence value) {
+        int length = value.length();
+        int start = 0;
+        builder.append(QUOTE);
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            if (c == QUOTE || c == '"' || c == '\\' || c < ' ' || c == '<' || c == '>' || c == '&'
+                    || c == '\u2028' || c == '\u2029') {
+                builder.append(value, start, i);
+                start = i + 1;
+
+                if (c == QUOTE || c == '"' || c == '\\') {
+                    builder.append('\\').append(c);
+                }
+                else {
+                    builder.append("\\u");
+                    builder.append(HEX_DIGITS[(c >> 12) & 0xf]).append(HEX_DIGITS[(c >> 8) & 0xf]);
+                    builder.append(HEX_DIGITS[(c >> 4) & 0xf]).append(HEX_DIGITS[c & 0xf]);
+                }
+            }
+        }
+
+        builder.append(value, start, length);
+        builder.append(QUOTE);
+    }
+
+    /**
+     * Appends a fragment of code, as is.
+     *
+     * @param code the fragment of code.
+     * @return this script writer.
+     */
+    ScriptWriter append(String code) {
+        builder.append(code);
+        return this;
+    }
+
+    /**
+     * Appends a character of code, as is.
+     *
+     * @param c the character.
+     * @return this script writer.
+     */
+    ScriptWriter append(char c) {
+        builder.append(c);
+        return this;
+    }
+
+    /**
+     * Appends a comma, to separate two arguments or two properties.
+     *
+     * @return this script writer.
+     */
+    ScriptWriter comma() {
+        builder.append(COMMA);
+        return this;
+    }
+
+    /**
+     * Appends a value as a JavaScript string literal.
+     *
+     * @param value the value.
+     * @return this script writer.
+     */
+    ScriptWriter string(String value) {
+        appendLiteral(builder, value);
+        return this;
+    }
+
+    /**
+     * Appends a name that recurs in all the pages (a group or an event name) as a JavaScript string literal, escaped
+     * once and cached.
+     *
+     * @param name the name.
+     * @return this script writer.
+     */
+    ScriptWriter name(String name) {
+        builder.append(literal(name));
+        return this;
+    }
+
+    /**
+     * Indicates whether nothing was appended yet.
+     *
+     * @return true if the script is empty.
+     */
+    boolean isEmpty() {
+        return builder.length() == 0;
+    }
+
+    /**
+     * Writes the script in a single chunk.
+     *
+     * @param writer the writer, typically the response writer.
+     * @throws IOException if an I/O error occurred.
+     */
+    void writeTo(Writer writer) throws IOException {
+        int length = builder.length();
+        char[] chunk = new char[length];
+        builder.getChars(0, length, chunk, 0);
+        writer.write(chunk, 0, length);
+    }
+
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * The default authorizer of the subscriptions of the event streams: it accepts any group for the clients of an
+ * existing HTTP session, i.e. the pages rendered by the web application (the event stream component keeps the
+ * interests of its view in the session), and it rejects the anonymous clients that have no session.
+ * <p>
+ * The applications whose groups carry data restricted to some users must provide their own
+ * {@link EventStreamAuthorizer}.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class SessionStreamAuthorizer implements EventStreamAuthorizer {
+
+    @Override
+    public boolean isAuthorized(HttpServletRequest request, String group) {
+        return request.getSession(false) != null;
+    }
+}
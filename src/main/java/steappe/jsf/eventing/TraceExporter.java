@@ -0,0 +1,45 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package steappe.jsf.eventing;
+
+/**
+ * The exporter of the traces of the requests sent by the event observers.
+ * <p>
+ * The exporter is selected by the context parameter TRACE_EXPORTER: "log" for the {@link LogTraceExporter}, "file"
+ * for the {@link FileTraceExporter}, or the name of a class implementing this interface. When the context parameter is
+ * absent, the requests are not traced.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public interface TraceExporter {
+
+    /**
+     * Exports the trace of a request.
+     * <p>
+     * This method is invoked at the end of the request, by the thread that processed it.
+     *
+     * @param otlpJson the spans of the request, as an OpenTelemetry (OTLP/JSON) document on a single line.
+     */
+    void export(String otlpJson);
+}
@@ -0,0 +1,220 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package steappe.jsf.eventing;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A span of the trace of a request sent by an event observer: a timed step of the processing of the request.
+ * <p>
+ * Its start time is read from the wall clock, and its duration is measured with the monotonic clock of the JVM.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class TraceSpan {
+
+    /**
+     * The kind of the span that represents the processing of the request by the server, in OpenTelemetry.
+     */
+    static final int KIND_SERVER = 2;
+
+    /**
+     * The kind of the span that represents an internal step of the request, in OpenTelemetry.
+     */
+    static final int KIND_INTERNAL = 1;
+
+    /**
+     * The status code of a failed span, in OpenTelemetry.
+     */
+    static private final int STATUS_CODE_ERROR = 2;
+
+    /**
+     * The name of the span.
+     */
+    private final String name;
+
+    /**
+     * The kind of the span.
+     */
+    private final int kind;
+
+    /**
+     * The ID of the span, as 16 hexadecimal digits.
+     */
+    private final String spanId;
+
+    /**
+     * The ID of the parent span, as 16 hexadecimal digits, or null if none.
+     */
+    private final String parentSpanId;
+
+    /**
+     * The start time of the span, in nanoseconds since the epoch.
+     */
+    private final long startEpochNanos;
+
+    /**
+     * The value of the monotonic clock at the start of the span.
+     */
+    private final long startNanoTime;
+
+    /**
+     * The end time of the span, in nanoseconds since the epoch, or 0 while the span is not ended.
+     */
+    private long endEpochNanos;
+
+    /**
+     * The attributes of the span, in the order they were set.
+     */
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+    /**
+     * The description of the error of the span, or null if the span did not fail.
+     */
+    private String errorMessage;
+
+    /**
+     * Starts a span.
+     *
+     * @param name the name of the span.
+     * @param kind the kind of the span.
+     * @param spanId the ID of the span.
+     * @param parentSpanId the ID of the parent span, or null if none.
+     */
+    TraceSpan(String name, int kind, String spanId, String parentSpanId) {
+        Instant now = Instant.now();
+        this.name = name;
+        this.kind = kind;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.startEpochNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        this.startNanoTime = System.nanoTime();
+    }
+
+    /**
+     * Sets an attribute of this span.
+     *
+     * @param key the key of the attribute, e.g. "steappe.eventing.observer".
+     * @param value the value of the attribute: a string, a boolean or an integral number.
+     * @return this span.
+     */
+    public TraceSpan setAttribute(String key, Object value) {
+        attributes.put(key, value);
+        return this;
+    }
+
+    /**
+     * Sets the status of this span to error.
+     *
+     * @param message the description of the error.
+     * @return this span.
+     */
+    public TraceSpan setError(String message) {
+        errorMessage = message;
+        return this;
+    }
+
+    /**
+     * Ends this span, unless already ended.
+     */
+    public void end() {
+        if (endEpochNanos == 0) {
+            endEpochNanos = startEpochNanos + System.nanoTime() - startNanoTime;
+        }
+    }
+
+    /**
+     * Gets the ID of this span.
+     *
+     * @return the ID of the span, as 16 hexadecimal digits.
+     */
+    public String getSpanId() {
+        return this.spanId;
+    }
+
+    /**
+     * Appends this span to an OTLP/JSON document.
+     *
+     * @param builder the JSON document being built.
+     * @param traceId the ID of the trace of this span.
+     */
+    void appendTo(StringBuilder builder, String traceId) {
+        builder.append("{\"traceId\":\"").append(traceId);
+        builder.append("\",\"spanId\":\"").append(spanId);
+
+        if (parentSpanId != null) {
+            builder.append("\",\"parentSpanId\":\"").append(parentSpanId);
+        }
+
+        builder.append("\",\"name\":");
+        Json.appendString(builder, name);
+        builder.append(",\"kind\":").append(kind);
+        builder.append(",\"startTimeUnixNano\":\"").append(startEpochNanos);
+        builder.append("\",\"endTimeUnixNano\":\"").append(endEpochNanos == 0 ? startEpochNanos : endEpochNanos);
+        builder.append("\",\"attributes\":[");
+
+        String separator = "";
+
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            builder.append(separator).append("{\"key\":");
+            Json.appendString(builder, attribute.getKey());
+            builder.append(",\"value\":");
+            appendValue(builder, attribute.getValue());
+            builder.append('}');
+            separator = ",";
+        }
+
+        builder.append(']');
+
+        if (errorMessage != null) {
+            builder.append(",\"status\":{\"code\":").append(STATUS_CODE_ERROR).append(",\"message\":");
+            Json.appendString(builder, errorMessage);
+            builder.append('}');
+        }
+
+        builder.append('}');
+    }
+
+    /**
+     * Appends the value of an attribute to an OTLP/JSON document, as an AnyValue.
+     *
+     * @param builder the JSON document being built.
+     * @param value the value of the attribute.
+     */
+    static private void appendValue(StringBuilder builder, Object value) {
+        if (value instanceof Boolean) {
+            builder.append("{\"boolValue\":").append(value).append('}');
+        }
+        else if (value instanceof Integer || value instanceof Long) {
+            builder.append("{\"intValue\":\"").append(value).append("\"}");
+        }
+        else {
+            builder.append("{\"stringValue\":");
+            Json.appendString(builder, String.valueOf(value));
+            builder.append('}');
+        }
+    }
+}
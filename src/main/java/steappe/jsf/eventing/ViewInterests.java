@@ -0,0 +1,278 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import javax.faces.component.UIViewRoot;
+import javax.faces.context.ExternalContext;
+import javax.faces.context.FacesContext;
+import javax.servlet.http.HttpSession;
+
+/**
+ * The events observed by the event observers of a view, by group name.
+ * <p>
+ * The interests are only recorded in a view that contains an event stream, while its event observers are rendered,
+ * and they are kept in the session under a token of the view, which the event stream of the view sends when it
+ * connects: the messages of the events that the view does not observe are then not written to its event stream. The
+ * token is created when the event stream is rendered, and it is kept in the attributes of the view root, so that the
+ * event observers rendered by the later partial requests of the view add their events to the same interests.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class ViewInterests implements Serializable {
+
+    static private final long serialVersionUID = 1L;
+
+    /**
+     * The name of the session attribute that holds the interests of the views of the session.
+     */
+    static private final String SESSION_ATTRIBUTE = ViewInterests.class.getName();
+
+    /**
+     * The name of the faces context attribute that holds the interests of the current view.
+     */
+    static private final String CONTEXT_ATTRIBUTE = ViewInterests.class.getName() + ".current";
+
+    /**
+     * The name of the view root attribute that holds the token of the view.
+     */
+    static private final String TOKEN_ATTRIBUTE = ViewInterests.class.getName() + ".token";
+
+    /**
+     * The name of the view root attribute that indicates that the view contains an event stream.
+     */
+    static private final String STREAMED_ATTRIBUTE = ViewInterests.class.getName() + ".streamed";
+
+    /**
+     * The maximum number of views whose interests are kept per session, the least recently used ones being dropped.
+     */
+    static private final int MAX_VIEWS = 32;
+
+    /**
+     * The token of the view, created when these interests are first kept in the session.
+     */
+    private String token;
+
+    /**
+     * The names of the observed events, by group name.
+     */
+    private final HashMap<String, HashSet<String>> interests = new HashMap<>();
+
+    /**
+     * Constructs the interests of a view.
+     */
+    private ViewInterests() {
+    }
+
+    /**
+     * Records that a view contains an event stream, so that the interests of the view are recorded while its event
+     * observers are rendered.
+     *
+     * @param viewRoot the root of the view.
+     */
+    static public void markStreamed(UIViewRoot viewRoot) {
+        viewRoot.getAttributes().put(STREAMED_ATTRIBUTE, Boolean.TRUE);
+    }
+
+    /**
+     * Gets the interests of the current view if it contains an event stream, and creates them if needed.
+     *
+     * @param context the faces context.
+     * @return the interests of the current view, or nothing if the view contains no event stream.
+     */
+    static public Optional<ViewInterests> getStreamedInstance(FacesContext context) {
+        return Optional.ofNullable(context.getViewRoot())
+                .filter(viewRoot -> viewRoot.getAttributes().containsKey(STREAMED_ATTRIBUTE))
+                .map(viewRoot -> getCurrentInstance(context));
+    }
+
+    /**
+     * Gets the interests of the current view, and creates them if needed. The interests of a view rendered by a
+     * partial request are the ones recorded by its previous renderings; a view rendered entirely starts afresh.
+     *
+     * @param context the faces context.
+     * @return the interests of the current view.
+     */
+    static public ViewInterests getCurrentInstance(FacesContext context) {
+        ViewInterests viewInterests = (ViewInterests) context.getAttributes().get(CONTEXT_ATTRIBUTE);
+
+        if (viewInterests == null) {
+            UIViewRoot viewRoot = context.getViewRoot();
+            Optional<String> token = Optional.ofNullable(viewRoot)
+                    .filter(root -> context.getPartialViewContext().isPartialRequest())
+                    .map(root -> (String) root.getAttributes().get(TOKEN_ATTRIBUTE));
+
+            viewInterests = token.flatMap(value -> getInstance(context.getExternalContext(), value))
+                    .orElseGet(ViewInterests::new);
+            context.getAttributes().put(CONTEXT_ATTRIBUTE, viewInterests);
+        }
+
+        return viewInterests;
+    }
+
+    /**
+     * Gets the interests of a view of the current session.
+     *
+     * @param externalContext the external context.
+     * @param token the token of the view.
+     * @return the interests of the view, or nothing if they are unknown.
+     */
+    static private Optional<ViewInterests> getInstance(ExternalContext externalContext, String token) {
+        return externalContext.getSession(false) != null ?
+                getInstance((Store) externalContext.getSessionMap().get(SESSION_ATTRIBUTE), token) :
+                Optional.empty();
+    }
+
+    /**
+     * Gets the interests of a view of a session.
+     *
+     * @param session the HTTP session.
+     * @param token the token of the view.
+     * @return the interests of the view, or nothing if they are unknown.
+     */
+    static public Optional<ViewInterests> getInstance(HttpSession session, String token) {
+        return getInstance((Store) session.getAttribute(SESSION_ATTRIBUTE), token);
+    }
+
+    /**
+     * Gets the interests of a view from the store of a session.
+     *
+     * @param store the store of the interests of the views of the session, possibly null.
+     * @param token the token of the view.
+     * @return the interests of the view, or nothing if they are unknown.
+     */
+    static private Optional<ViewInterests> getInstance(Store store, String token) {
+        Optional<ViewInterests> viewInterests = Optional.empty();
+
+        if (store != null) {
+            synchronized (store) {
+                viewInterests = Optional.ofNullable(store.get(token));
+            }
+        }
+
+        return viewInterests;
+    }
+
+    /**
+     * Keeps these interests in the session, so that the event stream of the view can find them with the token of the
+     * view. The session is created if needed.
+     *
+     * @param context the faces context.
+     * @return the token of the view.
+     */
+    public String keep(FacesContext context) {
+        String token = getToken();
+        Map<String, Object> sessionMap = context.getExternalContext().getSessionMap();
+        Store store = (Store) sessionMap.get(SESSION_ATTRIBUTE);
+
+        if (store == null) {
+            store = new Store();
+            sessionMap.put(SESSION_ATTRIBUTE, store);
+        }
+
+        synchronized (store) {
+            store.put(token, this);
+        }
+
+        Optional.ofNullable(context.getViewRoot()).ifPresent(viewRoot ->
+                viewRoot.getAttributes().put(TOKEN_ATTRIBUTE, token)
+        );
+
+        return token;
+    }
+
+    /**
+     * Gets the token of the view, and creates it if needed.
+     *
+     * @return the token of the view.
+     */
+    private synchronized String getToken() {
+        if (token == null) {
+            token = UUID.randomUUID().toString();
+        }
+
+        return token;
+    }
+
+    /**
+     * Records that the view observes an event.
+     *
+     * @param group the name of the group of events.
+     * @param event the name of the event.
+     */
+    public synchronized void observe(String group, String event) {
+        interests.computeIfAbsent(group, name -> new HashSet<>()).add(event);
+    }
+
+    /**
+     * Indicates whether the view observes any event of a broadcast message.
+     *
+     * @param message the broadcast message.
+     * @return true if at least one of the events of the message is observed.
+     */
+    public synchronized boolean isObserved(BroadcastMessage message) {
+        HashSet<String> events = interests.get(message.getGroup());
+
+        return events != null && message.getEventNames().stream().anyMatch(events::contains);
+    }
+
+    /**
+     * Serializes these interests while no event is recorded.
+     *
+     * @param output the object output stream.
+     * @throws IOException if an I/O error occurred.
+     */
+    private synchronized void writeObject(ObjectOutputStream output) throws IOException {
+        output.defaultWriteObject();
+    }
+
+    /**
+     * The interests of the views of a session, by token, the least recently used ones being dropped.
+     */
+    static private final class Store extends LinkedHashMap<String, ViewInterests> {
+
+        static private final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a store.
+         */
+        private Store() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ViewInterests> eldest) {
+            return size() > MAX_VIEWS;
+        }
+    }
+}
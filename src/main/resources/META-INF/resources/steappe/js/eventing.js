@@ -37,6 +37,317 @@ steappe.eventing = (function() {
      * The event groups.
      */
     var eventGroups = {};
+    
+    /**
+     * The open event streams, by URL.
+     */
+    var eventStreams = {};
+    
+    /**
+     * The supersession states of the event observers sending superseding requests, by client ID.
+     */
+    var supersessions = {};
+    
+    /**
+     * The requests waiting for the requests in progress to complete, from the oldest to the newest: each one is a
+     * function that sends the request, and returns the promise of its completion if it is posted with fetch.
+     */
+    var requestQueue = [];
+    
+    /**
+     * Whether a request posted with fetch is in progress.
+     */
+    var fetchInProgress = false;
+    
+    /**
+     * The number of requests sent by the JSF implementation and in progress.
+     */
+    var pendingAjaxRequests = 0;
+    
+    /**
+     * Whether a partial response that the JSF implementation did not request is being applied: the JSF AJAX events it
+     * fires do not complete a request of the JSF implementation.
+     */
+    var applyingResponse = false;
+    
+    /**
+     * The speculative requests of the event observers, by client ID.
+     */
+    var speculations = {};
+    
+    /**
+     * The generation of the state of the view: it changes each time a request is sent or a response is applied, so
+     * that the response of a speculative request is only applied if nothing happened in between.
+     */
+    var viewGeneration = 0;
+    
+    /**
+     * The generation of the state of the view when the events being dispatched started to be dispatched.
+     */
+    var dispatchGeneration = 0;
+    
+    /**
+     * The number of partial responses applied.
+     */
+    var appliedResponses = 0;
+    
+    /**
+     * The generation of the state of the view for which speculative requests were sent.
+     */
+    var speculationGeneration = -1;
+    
+    /**
+     * The number of speculative requests sent for the current generation of the state of the view.
+     */
+    var speculationCount = 0;
+    
+    /**
+     * The pending hover intent: the element hovered and the timer that triggers its speculation, or null if none.
+     */
+    var hoverIntent = null;
+    
+    /**
+     * The client IDs of the updates whose markup was applied without the server knowing it (discarded from superseded
+     * responses, or replayed from the cache), not yet reported to the server.
+     */
+    var staleUpdates = '';
+    
+    /**
+     * The ID of the trace of the last dispatch of events, shared by all the requests resulting from it.
+     */
+    var traceId = null;
+    
+    /**
+     * The cached responses, from the least to the most recently used.
+     */
+    var responseCache = [];
+    
+    /**
+     * The total size of the cached responses, in characters.
+     */
+    var responseCacheSize = 0;
+    
+    /**
+     * The keys of the cacheable requests in progress, by client ID of event observer.
+     */
+    var cacheableRequests = {};
+    
+    /**
+     * The client IDs of the event observers whose cached responses are invalidated, by group and event name separated
+     * by a colon.
+     */
+    var cacheInvalidations = {};
+    
+    /**
+     * The events received from the server and not dispatched yet, by group: the names of the events without
+     * duplicates, the timer of the dispatch, and the time of the first received event.
+     */
+    var coalescedEvents = {};
+    
+    /**
+     * The coalescing of the events received from the server: whether it is enabled, the window during which the
+     * received events of a group are merged (0 to dispatch them on the next animation frame), and the maximum delay
+     * of the dispatch of a received event, in milliseconds.
+     */
+    var coalescing = {enabled: true, window: 0, maxLatency: 100};
+    
+    /**
+     * The options of the groups of events, by group: suspendWhenHidden (boolean).
+     */
+    var groupOptions = {};
+    
+    /**
+     * The events dispatched while the page was hidden, by group: the names of the events without duplicates.
+     */
+    var suspendedEvents = {};
+    
+    /**
+     * The runtime counters of the eventing framework.
+     */
+    var statistics = {
+        skippedUpdates: 0,
+        savedBytes: 0,
+        suppressedDispatches: 0,
+        supersededRequests: 0,
+        speculativeHits: 0,
+        speculativeDiscards: 0,
+        cacheHits: 0,
+        appliedModels: 0,
+        coalescedMessages: 0,
+        pushedUpdates: 0,
+        suspendedDispatches: 0,
+        catchUpDispatches: 0,
+        partialSubmits: 0,
+        omittedFields: 0
+    };
+    
+    /**
+     * The last value tracked by the guarded event producers with an explicit key, by group and list of events.
+     */
+    var lastKeys = {};
+    
+    /**
+     * The filters of the delegated event producers, compiled once, by source.
+     */
+    var compiledFilters = {};
+    
+    /**
+     * The ID of the partial response extension written by the server-side eventing framework.
+     */
+    var EXTENSION_ID = 'steappe.eventing';
+    
+    /**
+     * The name of the data attribute that lists the client behavior events of the delegated event producers attached
+     * to an element.
+     */
+    var DELEGATED_MARKER_ATTRIBUTE = 'data-steappe-on';
+    
+    /**
+     * The prefix of the name of the data attribute that holds the delegated event producers reacting on a client
+     * behavior event.
+     */
+    var DELEGATED_ATTRIBUTE_PREFIX = 'data-steappe-';
+    
+    /**
+     * The separator between the name of the data attribute of the delegated event producers and the index of a guarded
+     * producer, in the name of the data attribute that holds its guard.
+     */
+    var DELEGATED_GUARD_SEPARATOR = '-';
+    
+    /**
+     * The suffix of the name of the data attribute that holds the guard of a delegated event producer, in the name of
+     * the data attribute that holds its key.
+     */
+    var DELEGATED_KEY_SUFFIX = '-key';
+    
+    /**
+     * The name of the request parameter that lists the client IDs of the updates discarded from the response of a
+     * superseded request.
+     */
+    var DISCARDED_UPDATES_PARAMETER = 'steappe.eventing.discarded';
+    
+    /**
+     * The pattern of the client IDs of the updates that carry the state of the view, which are never discarded.
+     */
+    var STATE_UPDATE_PATTERN = /(^|[^\w.])javax\.faces\.(ViewState|ClientWindow)([^\w.]|$)/;
+    
+    /**
+     * The pattern of the client IDs of the updates that replace the whole view, left to the JSF implementation.
+     */
+    var VIEW_UPDATE_PATTERN = /(^|[^\w.])javax\.faces\.View(Root|Head|Body)([^\w.]|$)/;
+    
+    /**
+     * The options of a JSF AJAX request that are not sent as request parameters.
+     */
+    var REQUEST_OPTIONS = [
+        'execute', 'render', 'onevent', 'onerror', 'params', 'delay', 'resetValues', 'partialSubmit'
+    ];
+    
+    /**
+     * The name of the data attribute that holds the speculative event producers attached to an element.
+     */
+    var SPECULATIVE_ATTRIBUTE = 'data-steappe-speculative';
+    
+    /**
+     * The name of the request parameter that lists the events of a speculative request.
+     */
+    var SPECULATIVE_EVENTS_PARAMETER = 'steappe.eventing.speculative';
+    
+    /**
+     * The delay, in milliseconds, after which the response of a speculative request is discarded.
+     */
+    var SPECULATION_TIMEOUT = 3000;
+    
+    /**
+     * The delay, in milliseconds, during which an element must stay hovered to trigger a speculation.
+     */
+    var HOVER_INTENT_DELAY = 100;
+    
+    /**
+     * The maximum number of speculative requests sent for a generation of the state of the view.
+     */
+    var MAX_SPECULATIONS = 4;
+    
+    /**
+     * The name of the request parameter that holds the trace context of a request, as a W3C traceparent.
+     */
+    var TRACE_PARAMETER = 'steappe.eventing.traceparent';
+    
+    /**
+     * The name of the request parameter that lists the events whose model is requested.
+     */
+    var MODEL_EVENTS_PARAMETER = 'steappe.eventing.model';
+    
+    /**
+     * The name of the request parameter that lists the keys of the rows targeted by the request of a row-aware event
+     * observer.
+     */
+    var ROWS_PARAMETER = 'steappe.eventing.rows';
+    
+    /**
+     * The placeholder of the key of the row in the client IDs registered by a row-aware event observer.
+     */
+    var ROW_PLACEHOLDER = '{row}';
+    
+    /**
+     * The character that separates the name of a dispatched event from the key of the row it targets.
+     */
+    var ROW_SEPARATOR = '@';
+    
+    /**
+     * The name of the data attribute that binds an element to a value of a model: the name of the event and the path
+     * of the value in the model, separated by a colon; or, in a repeated element, the path of the value in the item,
+     * prefixed by a dot.
+     */
+    var BIND_ATTRIBUTE = 'data-steappe-bind';
+    
+    /**
+     * The name of the data attribute that names the attribute of a bound element that receives the bound value,
+     * instead of its text content or its value.
+     */
+    var BIND_TARGET_ATTRIBUTE = 'data-steappe-bind-attribute';
+    
+    /**
+     * The name of the data attribute that repeats the template of an element for each item of an array of a model:
+     * the name of the event and the path of the array in the model, separated by a colon.
+     */
+    var REPEAT_ATTRIBUTE = 'data-steappe-repeat';
+    
+    /**
+     * The maximum number of cached responses.
+     */
+    var RESPONSE_CACHE_MAX_ENTRIES = 64;
+    
+    /**
+     * The maximum total size of the cached responses, in characters.
+     */
+    var RESPONSE_CACHE_MAX_SIZE = 1048576;
+    
+    /**
+     * The pattern of the updates of the state of the view in a partial response, which are not cached.
+     */
+    var STATE_UPDATES_PATTERN = /<update id="[^"]*javax\.faces\.(ViewState|ClientWindow)[^"]*">[\s\S]*?<\/update>/g;
+    
+    /**
+     * The client behavior events handled by the delegated listener, by name of DOM event.
+     */
+    var DELEGATED_EVENTS = {
+        click: ['click', 'action'],
+        dblclick: ['dblclick'],
+        change: ['change', 'valuechange'],
+        input: ['input'],
+        keydown: ['keydown'],
+        keypress: ['keypress'],
+        keyup: ['keyup'],
+        mousedown: ['mousedown'],
+        mouseup: ['mouseup'],
+        mouseover: ['mouseover'],
+        mouseout: ['mouseout'],
+        focus: ['focus'],
+        blur: ['blur'],
+        select: ['select']
+    };
+    
     var self = {};
     
     
@@ -65,8 +376,9 @@ steappe.eventing = (function() {
          * @param {string} event The name of the event to observe.
          * @param {string} execute The space separated list of client IDs of JSF elements to execute during the AJAX request
          * @param {string} render The space separated list of client IDs of JSF element to render after the AJAX request
+         * @param {object} options The options of the observed event, or undefined.
          */
-        self.register = function(clientId, event, execute, render) {
+        self.register = function(clientId, event, execute, render, options) {
             var client = document.getElementById(clientId);
             
             if (client) {
@@ -86,7 +398,7 @@ steappe.eventing = (function() {
                 /**
                  * register the event
                  */
-                client.eventObserver.register(event, execute, render);
+                client.eventObserver.register(event, execute, render, options);
             }
         };
         
@@ -94,18 +406,58 @@ steappe.eventing = (function() {
          * Dispatches a list of events.
          * 
          * @param {string} events The space separated list of event names to dispatch.
+         * @param {object} updates The markup pushed by the server along with the events, by client ID, or null.
+         */
+        self.dispatch = function(events, updates) {
+            var templates = {};
+            
+            for (var i = 0; i < clientIds.length; i++) {
+                var clientId = clientIds[i];
+                var eventObserver = getEventObserver(clientId);
+                
+                if (eventObserver && !isRegisteredRow(eventObserver, templates)) {
+                    eventObserver.dispatch(clientId, events, updates);
+                }
+            }
+        };
+        
+        /**
+         * Sends speculatively the requests of the event observers for a list of events.
+         * 
+         * @param {string} events The space separated list of event names that are about to be dispatched.
          */
-        self.dispatch = function(events) {
+        self.speculate = function(events) {
+            var templates = {};
+            
             for (var i = 0; i < clientIds.length; i++) {
                 var clientId = clientIds[i];
                 var eventObserver = getEventObserver(clientId);
                 
-                if (eventObserver) {
-                    eventObserver.dispatch(clientId, events);
+                if (eventObserver && !isRegisteredRow(eventObserver, templates)) {
+                    eventObserver.speculate(clientId, events);
                 }
             }
         };
         
+        /**
+         * Indicates whether a row-aware event observer was already registered by another row: a row re-rendered alone
+         * registers the event observer again, and the rows must only be dispatched once.
+         * 
+         * @param {EventObserver} eventObserver The event observer.
+         * @param {object} templates The client ID templates of the row-aware event observers already dispatched.
+         * @returns {boolean} true if the event observer must be skipped.
+         */
+        function isRegisteredRow(eventObserver, templates) {
+            var template = eventObserver.getRows();
+            var registered = !!template && templates.hasOwnProperty(template);
+            
+            if (template) {
+                templates[template] = true;
+            }
+            
+            return registered;
+        }
+        
         /**
          * Gets a registered event observer.
          * 
@@ -139,16 +491,66 @@ steappe.eventing = (function() {
          */
         var eventPayloads = [];
         
+        /**
+         * Whether the requests of this event observer are sent with the streaming transport.
+         * 
+         * @type boolean
+         */
+        var streaming = false;
+        
+        /**
+         * The number of seconds during which the responses of this event observer may be cached, or 0.
+         * 
+         * @type number
+         */
+        var cacheTtl = 0;
+        
+        /**
+         * Whether this event observer applies the markup pushed by the server instead of sending a request.
+         * 
+         * @type boolean
+         */
+        var pushed = false;
+        
+        /**
+         * Whether the requests of this event observer post the fields of the executed components only.
+         * 
+         * @type boolean
+         */
+        var partialSubmit = false;
+        
+        /**
+         * The client ID template of a row-aware event observer, or null.
+         * 
+         * @type string
+         */
+        var rows = null;
+        
         /**
          * Registers an event to observe.
          * 
          * @param {string} event The name of the event to observe.
          * @param {string} execute The space separated list of client IDs of JSF elements to execute during the AJAX request.
          * @param {string} render The space separated list of client IDs of JSF element to render after the AJAX request.
+         * @param {object} options The options of the observed event, or undefined.
          */
-        self.register = function(event, execute, render) {
-            var eventPayload = new EventPayload(execute, render);
+        self.register = function(event, execute, render, options) {
+            var eventPayload = new EventPayload(execute, render, options);
             eventPayloads[event] = eventPayload;
+            streaming = !!(options && options.streaming);
+            cacheTtl = (options && options.cacheTtl) || 0;
+            rows = (options && options.rows) || null;
+            pushed = !!(options && options.pushed);
+            partialSubmit = !!(options && options.partialSubmit);
+        };
+        
+        /**
+         * Gets the client ID template of this event observer, if it is registered for all the rows of an iterator.
+         * 
+         * @returns {string} The client ID template, or null if this event observer is not row-aware.
+         */
+        self.getRows = function() {
+            return rows;
         };
         
         /**
@@ -156,67 +558,551 @@ steappe.eventing = (function() {
          * 
          * @param {string} clientId The client identifier of the JSF event observer component.
          * @param {string} events The space separated list of event names to dispatch.
+         * @param {object} updates The markup pushed by the server along with the events, by client ID, or null.
+         */
+        self.dispatch = function(clientId, events, updates) {
+            var request = createRequest(events);
+            
+            /**
+             * if this event observer is concerned by any of the events to dispatch, then schedule the AJAX request,
+             * unless the server pushed the markup of its targets, or its response was already requested speculatively
+             */
+            var pushedUpdates = pushed && updates && request.concerned ? selectUpdates(request.render, updates) : null;
+            var cacheKey = request.concerned && cacheTtl > 0 ? getCacheKey(clientId, request) : null;
+            
+            if (pushedUpdates) {
+                applyPushedUpdates(clientId, pushedUpdates);
+                statistics.pushedUpdates++;
+            }
+            else if (cacheKey && applyCachedResponse(clientId, cacheKey)) {
+                statistics.cacheHits++;
+            }
+            else if (request.concerned && commitSpeculation(clientId, request)) {
+                statistics.speculativeHits++;
+            }
+            else if (request.concerned && request.supersede) {
+                getSupersession(clientId).request(request, streaming);
+            }
+            else if (request.concerned) {
+                /**
+                 * the response is cached if the server marks it as cacheable; the streaming transport never hands the
+                 * whole response to the JSF implementation, hence it is not cached
+                 */
+                if (cacheKey && !streaming) {
+                    cacheableRequests[clientId] = cacheKey;
+                }
+                
+                sendRequest(clientId, createRequestOptions(request), streaming);
+            }
+        };
+        
+        /**
+         * Sends speculatively the request of this event observer for a list of events, if all the events it observes
+         * among them are free of side effects.
+         * 
+         * @param {string} clientId The client identifier of the JSF event observer component.
+         * @param {string} events The space separated list of event names that are about to be dispatched.
          */
-        self.dispatch = function(clientId, events) {
+        self.speculate = function(clientId, events) {
+            var request = createRequest(events);
+            
+            if (request.concerned && request.sideEffectFree) {
+                speculate(clientId, request);
+            }
+        };
+        
+        /**
+         * Creates the request of this event observer for a list of events.
+         * 
+         * @param {string} events The space separated list of event names, each one optionally followed by the key of
+         * the row it targets.
+         * @returns {object} The request: whether this event observer is concerned by any of the events, the events it
+         * observes, whether they all supersede and whether they are all free of side effects, the space separated
+         * lists of client IDs to execute and to render, the events whose model is requested, and whether the fields
+         * of the executed components only are posted.
+         */
+        function createRequest(events) {
             var eventsToDispatch = events.split(/\s+/g) || [];
-            var concernedByEvents = false;
-            var toExecute = '';
-            var toRender = '';
+            var allRows = false;
+            var targetedRows = [];
+            var request = {
+                concerned: false,
+                events: '',
+                supersede: true,
+                sideEffectFree: true,
+                execute: '',
+                render: '',
+                models: '',
+                rows: '',
+                partialSubmit: partialSubmit
+            };
             
             /**
              * build the list of components to update after the AJAX request
              */
             for (var i = 0; i < eventsToDispatch.length; i++) {
-                var event = eventsToDispatch[i];
+                var separator = eventsToDispatch[i].indexOf(ROW_SEPARATOR);
+                var event = separator > 0 ? eventsToDispatch[i].substring(0, separator) : eventsToDispatch[i];
                 var eventPayload = eventPayloads[event];
                 
                 if (eventPayload) {
-                    concernedByEvents = true;
-                    toExecute += ' ' + eventPayload.getExecute();
-                    toRender += ' ' + eventPayload.getRender();
+                    allRows = allRows || separator <= 0;
+                    
+                    if (separator > 0) {
+                        targetedRows.push(eventsToDispatch[i].substring(separator + 1));
+                    }
+                    
+                    request.concerned = true;
+                    request.events += ' ' + eventsToDispatch[i];
+                    request.supersede = request.supersede && eventPayload.isSupersede();
+                    request.sideEffectFree = request.sideEffectFree && eventPayload.isSideEffectFree();
+                    request.execute += ' ' + eventPayload.getExecute();
+                    request.render += ' ' + eventPayload.getRender();
+                    request.models += eventPayload.hasModel() ? ' ' + event : '';
                 }
             }
             
-            /**
-             * if this event observer is concerned by any of the events to dispatch, then schedule the AJAX request
-             */
-            if (concernedByEvents) {
-                var options = {};
-                options['javax.faces.behavior.event'] = 'action';
-                options.execute = toExecute;
-                options.render = toRender;
-                jsf.ajax.request(clientId, null, options);
+            request.events = request.events.substring(1);
+            request.models = request.models.substring(1);
+            
+            if (rows && request.concerned) {
+                expandRows(request, rows, allRows ? findRows(rows) : targetedRows);
             }
-        };
+            
+            return request;
+        }
     }
     
     /**
-     * An event payload.
+     * The supersession state of an event observer: at most one superseding request of the event observer is in
+     * progress, and the newer requests are merged into a single pending one until it completes.
      * 
-     * @param {string} execute The space separated list of client IDs of JSF elements to execute during the AJAX request.
-     * @param {string} render The space separated list of client IDs of JSF element to render after the AJAX request.
+     * @param {string} clientId The client identifier of the JSF event observer component.
      * @constructor
      */
-    function EventPayload(execute, render) {
+    function Supersession(clientId) {
         var self = this;
         
         /**
-         * Gets the space separated list of client IDs of JSF elements to execute during the AJAX request.
+         * Whether a request is in progress.
          * 
-         * @returns {string} The space separated list of client IDs.
+         * @type boolean
          */
-        self.getExecute = function() {
-            return execute;
-        };
+        var inProgress = false;
         
         /**
-         * Gets the space separated list of client IDs of JSF element to render after the AJAX request.
+         * The request merging the newer requests, or null if none.
          * 
-         * @returns {string} The space separated list of client IDs.
+         * @type object
          */
-        self.getRender = function() {
-            return render;
+        var pending = null;
+        
+        /**
+         * Sends a request, or merges it into the pending one if a request is in progress; the request in progress is
+         * then superseded.
+         * 
+         * @param {object} request The request of the event observer.
+         * @param {boolean} streaming Whether the request is sent with the streaming transport.
+         */
+        self.request = function(request, streaming) {
+            if (!inProgress) {
+                send(request, streaming);
+            }
+            else if (pending) {
+                pending.request = mergeRequests(pending.request, request);
+                pending.streaming = pending.streaming || streaming;
+                statistics.supersededRequests++;
+            }
+            else {
+                pending = {request: request, streaming: streaming};
+                statistics.supersededRequests++;
+            }
         };
+        
+        /**
+         * Indicates whether the request in progress is superseded by a newer one.
+         * 
+         * @returns {boolean} true if the response of the request in progress must be ignored.
+         */
+        self.isSuperseded = function() {
+            return inProgress && pending !== null;
+        };
+        
+        /**
+         * Removes from the response of the superseded request everything but the state of the view, which the next
+         * request must post back.
+         * 
+         * @param {Document} responseXML The partial response.
+         */
+        self.discard = function(responseXML) {
+            var changes = responseXML ? responseXML.getElementsByTagName('changes')[0] : null;
+            var node = changes ? changes.firstChild : null;
+            
+            while (node) {
+                var next = node.nextSibling;
+                
+                if (node.nodeType === 1) {
+                    var id = node.getAttribute('id') || '';
+                    
+                    if (node.nodeName !== 'update' || !STATE_UPDATE_PATTERN.test(id)) {
+                        changes.removeChild(node);
+                        staleUpdates += node.nodeName === 'update' ? ' ' + id : '';
+                    }
+                }
+                
+                node = next;
+            }
+        };
+        
+        /**
+         * Sends a request.
+         * 
+         * @param {object} request The request of the event observer.
+         * @param {boolean} streaming Whether the request is sent with the streaming transport.
+         */
+        function send(request, streaming) {
+            var options = createRequestOptions(request);
+            options.onevent = function(data) {
+                if (data.status === 'success') {
+                    complete();
+                }
+            };
+            options.onerror = complete;
+            
+            inProgress = true;
+            sendRequest(clientId, options, streaming);
+        }
+        
+        /**
+         * Completes the request in progress, then sends the pending one if any.
+         */
+        function complete() {
+            var next = pending;
+            inProgress = false;
+            pending = null;
+            
+            if (next && document.getElementById(clientId)) {
+                send(next.request, next.streaming);
+            }
+        }
+    }
+    
+    /**
+     * An event payload.
+     * 
+     * @param {string} execute The space separated list of client IDs of JSF elements to execute during the AJAX request.
+     * @param {string} render The space separated list of client IDs of JSF element to render after the AJAX request.
+     * @param {object} options The options of the observed event, or undefined.
+     * @constructor
+     */
+    function EventPayload(execute, render, options) {
+        var self = this;
+        
+        /**
+         * Gets the space separated list of client IDs of JSF elements to execute during the AJAX request.
+         * 
+         * @returns {string} The space separated list of client IDs.
+         */
+        self.getExecute = function() {
+            return execute;
+        };
+        
+        /**
+         * Gets the space separated list of client IDs of JSF element to render after the AJAX request.
+         * 
+         * @returns {string} The space separated list of client IDs.
+         */
+        self.getRender = function() {
+            return render;
+        };
+        
+        /**
+         * Indicates whether a newer request for this event supersedes a stale one.
+         * 
+         * @returns {boolean} true if the stale requests are superseded.
+         */
+        self.isSupersede = function() {
+            return !!(options && options.supersede);
+        };
+        
+        /**
+         * Indicates whether the request for this event is free of side effects, and can be sent speculatively.
+         * 
+         * @returns {boolean} true if the request is free of side effects.
+         */
+        self.isSideEffectFree = function() {
+            return !!(options && options.sideEffectFree);
+        };
+        
+        /**
+         * Indicates whether the server sends a model for this event, applied to the bound elements.
+         * 
+         * @returns {boolean} true if a model is sent.
+         */
+        self.hasModel = function() {
+            return !!(options && options.model);
+        };
+    }
+    
+    /**
+     * An incremental parser of a partial response, which applies each change as soon as it is complete.
+     * <p>
+     * The updates of the components and of the state of the view, the scripts to evaluate and the extension of the
+     * eventing framework are applied by the parser. The other changes (insertions, deletions, attributes, updates of
+     * the whole view, errors, redirections) are deferred and handed to the JSF implementation at the end of the
+     * response, which also notifies the listeners of the JSF AJAX events of the success of the request.
+     * 
+     * @param {string} clientId The client identifier of the JSF event observer component that sent the request.
+     * @param {object} context The context of the request, as expected by the JSF implementation.
+     * @constructor
+     */
+    function PartialResponseParser(clientId, context) {
+        var self = this;
+        
+        /**
+         * The received text not parsed yet.
+         * 
+         * @type string
+         */
+        var text = '';
+        
+        /**
+         * The start tag of the partial response, or null if not received yet.
+         * 
+         * @type string
+         */
+        var root = null;
+        
+        /**
+         * Whether the parser is inside the changes of the partial response.
+         * 
+         * @type boolean
+         */
+        var inChanges = false;
+        
+        /**
+         * The deferred changes.
+         * 
+         * @type string
+         */
+        var deferredChanges = '';
+        
+        /**
+         * The deferred children of the partial response that are not changes (error, redirect).
+         * 
+         * @type string
+         */
+        var deferredElements = '';
+        
+        /**
+         * The elements replaced by the applied updates.
+         * 
+         * @type Array
+         */
+        var updatedElements = [];
+        
+        /**
+         * Parses the next chunk of the partial response.
+         * 
+         * @param {string} chunk The chunk.
+         */
+        self.push = function(chunk) {
+            text += chunk;
+            parse();
+        };
+        
+        /**
+         * Parses the last chunk of the partial response, then hands the deferred changes to the JSF implementation.
+         * 
+         * @param {string} chunk The last chunk.
+         */
+        self.end = function(chunk) {
+            text += chunk;
+            parse();
+            
+            var xml = (root || '<partial-response>') + (deferredElements ||
+                    '<changes>' + deferredChanges + '</changes>') + '</partial-response>';
+            
+            applyResponse(createResponse(xml), context);
+        };
+        
+        /**
+         * Parses and applies the complete elements of the received text.
+         */
+        function parse() {
+            var position = 0;
+            
+            if (root === null) {
+                var match = /<partial-response[^>]*>/.exec(text);
+                
+                if (match) {
+                    root = match[0];
+                    position = match.index + root.length;
+                }
+                else {
+                    return;
+                }
+            }
+            
+            for (var start = text.indexOf('<', position); start !== -1; start = text.indexOf('<', position)) {
+                var tagEnd = findTagEnd(text, start);
+                var name = /^<\/?([\w\-]*)/.exec(text.substring(start, start + 64))[1];
+                var end = -1;
+                
+                if (tagEnd === -1) {
+                    break;
+                }
+                else if (text.charAt(start + 1) === '/') {
+                    inChanges = inChanges && name !== 'changes';
+                    end = tagEnd + 1;
+                }
+                else if (name === 'changes') {
+                    inChanges = text.charAt(tagEnd - 1) !== '/';
+                    end = tagEnd + 1;
+                }
+                else {
+                    end = text.charAt(tagEnd - 1) === '/' ? tagEnd + 1 : findElementEnd(text, tagEnd + 1, name);
+                    
+                    if (end === -1) {
+                        break;
+                    }
+                    
+                    apply(name, text.substring(start, end));
+                }
+                
+                position = end;
+            }
+            
+            text = text.substring(position);
+        }
+        
+        /**
+         * Applies a complete element of the partial response, or defers it.
+         * 
+         * @param {string} name The name of the element.
+         * @param {string} xml The element.
+         */
+        function apply(name, xml) {
+            if (!inChanges) {
+                deferredElements += xml;
+                return;
+            }
+            
+            var changes = parseXml(root + '<changes>' + xml + '</changes></partial-response>');
+            var supersession = supersessions[clientId];
+            
+            if (supersession && supersession.isSuperseded()) {
+                supersession.discard(changes);
+            }
+            
+            var node = changes.getElementsByTagName('changes')[0].firstChild;
+            
+            if (!node) {
+                return;
+            }
+            else if (name === 'update' && applyUpdate(node.getAttribute('id'), node.textContent)) {
+                return;
+            }
+            else if (name === 'eval') {
+                (0, eval)(node.textContent);
+            }
+            else if (name === 'extension' && node.getAttribute('id') === EXTENSION_ID) {
+                readExtension(node);
+            }
+            else {
+                deferredChanges += xml;
+            }
+        }
+        
+        /**
+         * Applies an update.
+         * 
+         * @param {string} id The client ID of the update.
+         * @param {string} markup The markup of the update.
+         * @returns {boolean} true if the update was applied, false if it must be deferred.
+         */
+        function applyUpdate(id, markup) {
+            var applied = true;
+            
+            if (STATE_UPDATE_PATTERN.test(id)) {
+                applyStateUpdate(id, markup);
+            }
+            else {
+                var target = VIEW_UPDATE_PATTERN.test(id) ? null : document.getElementById(id);
+                
+                if (target && target.parentNode) {
+                    /**
+                     * the markup is parsed in the context of the target (e.g. a table row), and the scripts of a
+                     * contextual fragment are executed once inserted
+                     */
+                    var range = document.createRange();
+                    range.selectNode(target);
+                    var fragment = range.createContextualFragment(markup);
+                    var parent = target.parentNode;
+                    
+                    for (var child = fragment.firstChild; child; child = child.nextSibling) {
+                        updatedElements.push(child);
+                    }
+                    
+                    parent.replaceChild(fragment, target);
+                }
+                else {
+                    applied = false;
+                }
+            }
+            
+            return applied;
+        }
+        
+        /**
+         * Applies an update of the state of the view to the forms of the document: the state fields are updated, and
+         * a state field is added to the form of the event observer and to the updated forms that lack one.
+         * 
+         * @param {string} id The client ID of the update.
+         * @param {string} value The state.
+         */
+        function applyStateUpdate(id, value) {
+            var name = /ViewState/.test(id) ? 'javax.faces.ViewState' : 'javax.faces.ClientWindow';
+            var source = document.getElementById(clientId);
+            
+            for (var i = 0; i < document.forms.length; i++) {
+                var form = document.forms[i];
+                var found = false;
+                
+                for (var j = 0; j < form.elements.length; j++) {
+                    var field = form.elements[j];
+                    
+                    if (field.name && field.name.substring(field.name.length - name.length) === name) {
+                        field.value = value;
+                        found = true;
+                    }
+                }
+                
+                if (!found && (form.contains(source) || isUpdated(form))) {
+                    var input = document.createElement('input');
+                    input.type = 'hidden';
+                    input.name = name;
+                    input.value = value;
+                    form.appendChild(input);
+                }
+            }
+        }
+        
+        /**
+         * Indicates whether an element was replaced or is contained by an element replaced by an applied update.
+         * 
+         * @param {Element} element The element.
+         * @returns {boolean} true if the element was updated.
+         */
+        function isUpdated(element) {
+            for (var i = 0; i < updatedElements.length; i++) {
+                if (updatedElements[i] === element || updatedElements[i].contains(element)) {
+                    return true;
+                }
+            }
+            
+            return false;
+        }
     }
 
     
@@ -231,10 +1117,22 @@ steappe.eventing = (function() {
      * @param {string} event the name of the event to observe.
      * @param {string} execute The space separated list of client IDs of JSF elements to execute during the AJAX request
      * @param {string} render The space separated list of client IDs of JSF element to render after the AJAX request
+     * @param {object} options The options of the observed event (optional): supersede (boolean), whether a newer
+     * request of the event observer supersedes a stale one; sideEffectFree (boolean), whether the request can be sent
+     * speculatively; streaming (boolean), whether the streaming transport is used; cacheTtl (number), the number of
+     * seconds during which the responses can be cached; cacheInvalidatedBy (string), the space separated list of the
+     * events that invalidate the cached responses, each one being an event name of the group, or a group name and an
+     * event name separated by a colon; model (boolean), whether the server sends a model for the event; pushed
+     * (boolean), whether the markup pushed by the server is applied instead of sending a request; rows (string),
+     * the client ID template of a row-aware event observer, registered once for all the rows of an iterator
      */
-    self.register = function(clientId, group, event, execute, render) {
+    self.register = function(clientId, group, event, execute, render, options) {
         var eventGroup = getEventGroup(group, true);
-        eventGroup.register(clientId, event, execute, render);
+        eventGroup.register(clientId, event, execute, render, options);
+        
+        if (options && options.cacheInvalidatedBy) {
+            registerCacheInvalidations(clientId, group, options.cacheInvalidatedBy);
+        }
     };
     
     /**
@@ -242,29 +1140,207 @@ steappe.eventing = (function() {
      * 
      * @param {string} group The name of the group of events.
      * @param {string} events The space separated list of event names to dispatch.
+     * @param {object} updates The markup pushed by the server along with the events, by client ID (optional): the
+     * pushed event observers apply it instead of sending a request, if it covers all their render targets. While the
+     * page is hidden, the events of the groups suspended when hidden are deferred until it becomes visible again, and
+     * the pushed markup is ignored.
+     */
+    self.dispatch = function(group, events, updates) {
+        var eventGroup = getEventGroup(group, false);
+        
+        invalidateCachedResponses(group, events);
+        
+        if (eventGroup && isSuspended(group)) {
+            suspend(group, events);
+        }
+        else if (eventGroup) {
+            traceId = createTraceId(32);
+            dispatchGeneration = viewGeneration;
+            eventGroup.dispatch(events, updates || null);
+        }
+    };
+    
+    /**
+     * Sends speculatively the requests of the event observers for a list of events that is about to be dispatched.
+     * <p>
+     * Only the observers whose concerned events are all free of side effects send a request. Their responses are held
+     * off the document, and applied when the same events are dispatched to them; they are discarded if the events are
+     * not dispatched in time, or if the state of the view changed in between.
+     * 
+     * @param {string} group The name of the group of events.
+     * @param {string} events The space separated list of event names.
      */
-    self.dispatch = function(group, events) {
+    self.speculate = function(group, events) {
         var eventGroup = getEventGroup(group, false);
         
         if (eventGroup) {
-            eventGroup.dispatch(events);
+            eventGroup.speculate(events);
+        }
+    };
+    
+    /**
+     * Dispatches a list of events, unless the guard of the event producer suppresses the dispatch.
+     * <p>
+     * The dispatch is suppressed when the filter of the guard is false, or when the unchanged dispatches are
+     * suppressed and the tracked value did not change since the last dispatch. With an explicit key, the tracked value
+     * is the key and it is shared by all the producers of the same group and list of events (e.g. re-clicking the
+     * selected tab); otherwise, it is the value of the element and it is tracked per element (e.g. retyping the same
+     * value).
+     * 
+     * @param {Element} element The element of the event producer.
+     * @param {Event} event The DOM event at the origin of the dispatch.
+     * @param {string} group The name of the group of events.
+     * @param {string} events The space separated list of event names to dispatch.
+     * @param {object} guard The guard: suppressUnchanged (boolean), key (string) and filter (function evaluated with
+     * the element as 'this' and the DOM event as argument).
+     */
+    self.produce = function(element, event, group, events, guard) {
+        if (isSuppressed(element, event, group + ' ' + events, guard)) {
+            statistics.suppressedDispatches++;
+        }
+        else {
+            self.dispatch(group, events);
         }
     };
     
     /**
      * Dispatches a message received by a Web Socket.
      * 
-     * @param {string} message The message to dispatch.
+     * @param {string|object} message The message to dispatch: either the space separated list of event names, or an
+     * object whose 'events' property holds the event names and whose 'updates' property holds the markup rendered by
+     * the server, by client ID (see EventBroadcaster.renderUpdates).
      * @param {string} channel The name of the web socket channel at the origin of the event.
      */
     self.dispatchSocketMessage = function(message, channel) {
         if (typeof message === 'string') {
-            self.dispatch(channel, message);
+            coalesce(channel, message, null);
+        }
+        else if (message && typeof message.events === 'string') {
+            coalesce(channel, message.events, message.updates || null);
         }
         else {
             console.log("message must be a string: " + message);
         }
     };
+    
+    /**
+     * Opens the stream of the events published by the server, as Server-Sent Events.
+     * <p>
+     * Each message of the stream holds the name of a group of events on its first line, the space separated list of
+     * event names on its second line, and optionally the markup rendered by the server as a JSON object on its third
+     * line. The browser reconnects by itself when the connection is lost, and the server
+     * resumes the stream from the last received event. A stream already open with the same URL and groups is reused.
+     * 
+     * @param {string} url The URL of the event stream.
+     * @param {string} groups The space separated list of the names of the groups of events to subscribe.
+     */
+    self.openEventStream = function(url, groups) {
+        var streamUrl = url + (url.indexOf('?') === -1 ? '?' : '&') + 'groups=' + encodeURIComponent(groups);
+        
+        if (typeof EventSource === 'undefined') {
+            console.log("event streams are not supported by this browser");
+        }
+        else if (!eventStreams[streamUrl]) {
+            var eventSource = new EventSource(streamUrl);
+            
+            eventSource.onmessage = function(message) {
+                var lines = message.data.split('\n');
+                
+                if (lines.length > 1 && lines[0]) {
+                    coalesce(lines[0], lines[1], lines.length > 2 ? JSON.parse(lines[2]) : null);
+                }
+            };
+            
+            eventStreams[streamUrl] = eventSource;
+        }
+    };
+    
+    /**
+     * Gets a snapshot of the runtime counters of the eventing framework.
+     * <p>
+     * The counters are:
+     * <ul>
+     * <li>skippedUpdates: the number of target updates omitted by the server because their markup was unchanged</li>
+     * <li>savedBytes: the number of bytes of markup that the omitted updates would have cost</li>
+     * <li>suppressedDispatches: the number of dispatches suppressed by the guards of the event producers</li>
+     * <li>supersededRequests: the number of observer requests merged into a newer one instead of being sent</li>
+     * <li>speculativeHits: the number of dispatches served by the response of a speculative request</li>
+     * <li>speculativeDiscards: the number of speculative responses discarded</li>
+     * <li>cacheHits: the number of observer requests served from the response cache</li>
+     * <li>appliedModels: the number of models applied to the bound elements</li>
+     * <li>coalescedMessages: the number of messages received from the server and merged into a pending dispatch</li>
+     * <li>pushedUpdates: the number of observer requests replaced by the markup pushed by the server</li>
+     * <li>suspendedDispatches: the number of dispatches deferred because the page was hidden</li>
+     * <li>catchUpDispatches: the number of dispatches of the deferred events when the page became visible</li>
+     * <li>partialSubmits: the number of observer requests that posted the fields of the executed components only</li>
+     * <li>omittedFields: the number of form fields left out of these requests</li>
+     * </ul>
+     * 
+     * @returns {object} The runtime counters.
+     */
+    self.getStatistics = function() {
+        var snapshot = {};
+        
+        for (var counter in statistics) {
+            if (statistics.hasOwnProperty(counter)) {
+                snapshot[counter] = statistics[counter];
+            }
+        }
+        
+        return snapshot;
+    };
+    
+    /**
+     * Configures the coalescing of the events received from the server, through a Web Socket or an event stream.
+     * <p>
+     * The events received for the same group are merged without duplicates, and dispatched once: on the next animation
+     * frame by default, or when no event was received for the group during the window. A received event is never
+     * delayed for more than the maximum latency, even if the window keeps sliding or the page is not rendered.
+     * 
+     * @param {object} options The options (all optional): enabled (boolean), false to dispatch each received message
+     * immediately; window (number), the window in milliseconds, 0 for the next animation frame; maxLatency (number),
+     * the maximum delay of the dispatch of a received event, in milliseconds.
+     */
+    self.configureCoalescing = function(options) {
+        for (var option in coalescing) {
+            if (coalescing.hasOwnProperty(option) && options && options.hasOwnProperty(option)) {
+                coalescing[option] = options[option];
+            }
+        }
+    };
+    
+    /**
+     * Configures a group of events.
+     * 
+     * @param {string} group The name of the group of events.
+     * @param {object} options The options (all optional): suspendWhenHidden (boolean), false to dispatch the events of
+     * the group while the page is hidden, instead of deferring them until it becomes visible again (defaults to true).
+     */
+    self.configureGroup = function(group, options) {
+        var current = groupOptions[group] || {};
+        
+        for (var option in options || {}) {
+            if (options.hasOwnProperty(option)) {
+                current[option] = options[option];
+            }
+        }
+        
+        groupOptions[group] = current;
+        
+        if (!isSuspended(group)) {
+            resume(group);
+        }
+    };
+    
+    /**
+     * Gets the ID of the trace of the last dispatch of events. The requests sent by the event observers for this
+     * dispatch carry it to the server, where their spans are recorded under it when tracing is enabled.
+     * 
+     * @returns {string} The trace ID, as 32 hexadecimal digits, or null if no event was dispatched yet.
+     */
+    self.getTraceId = function() {
+        return traceId;
+    };
 
     
     // ------------- PRIVATE METHODS ------------------
@@ -288,6 +1364,1713 @@ steappe.eventing = (function() {
         return eventGroup;
     }
     
+    /**
+     * Gets or creates the supersession state of an event observer.
+     * 
+     * @param {string} clientId The client ID of the JSF event observer component.
+     * @returns {Supersession} The supersession state.
+     */
+    function getSupersession(clientId) {
+        var supersession = supersessions[clientId];
+        
+        if (!supersession) {
+            supersession = new Supersession(clientId);
+            supersessions[clientId] = supersession;
+        }
+        
+        return supersession;
+    }
+    
+    /**
+     * Merges two requests of an event observer into a single one, so that none of their fields is lost.
+     * 
+     * @param {object} request The pending request.
+     * @param {object} newer The newer request.
+     * @returns {object} The merged request: it is concerned if any of them is, it supersedes, is free of side effects
+     * and posts the fields of the executed components only if both do, and its lists are the unions of theirs.
+     */
+    function mergeRequests(request, newer) {
+        return {
+            concerned: request.concerned || newer.concerned,
+            events: unionOf(request.events, newer.events),
+            supersede: request.supersede && newer.supersede,
+            sideEffectFree: request.sideEffectFree && newer.sideEffectFree,
+            execute: unionOf(request.execute, newer.execute),
+            render: unionOf(request.render, newer.render),
+            models: unionOf(request.models, newer.models),
+            rows: unionOf(request.rows, newer.rows),
+            partialSubmit: request.partialSubmit && newer.partialSubmit
+        };
+    }
+    
+    /**
+     * Computes the union of two space separated lists, in the order of their first occurrences.
+     * 
+     * @param {string} list The first list.
+     * @param {string} other The second list.
+     * @returns {string} The space separated union of the lists.
+     */
+    function unionOf(list, other) {
+        var tokens = ((list || '') + ' ' + (other || '')).split(/\s+/g);
+        var union = [];
+        
+        for (var i = 0; i < tokens.length; i++) {
+            if (tokens[i] && union.indexOf(tokens[i]) === -1) {
+                union.push(tokens[i]);
+            }
+        }
+        
+        return union.join(' ');
+    }
+    
+    /**
+     * Applies a partial response, after discarding the changes it carries if the request was superseded.
+     * 
+     * @param {function} response The function of the JSF implementation that applies a partial response.
+     * @returns {function} The function that replaces it.
+     */
+    function wrapResponse(response) {
+        return function(request, context) {
+            var supersession = context ? supersessions[context.sourceid] : null;
+            
+            viewGeneration++;
+            appliedResponses++;
+            
+            var cacheKey = context ? cacheableRequests[context.sourceid] : null;
+            
+            if (supersession && supersession.isSuperseded()) {
+                supersession.discard(request.responseXML);
+            }
+            else if (cacheKey) {
+                cacheResponse(context.sourceid, cacheKey, request);
+            }
+            
+            if (cacheKey) {
+                delete cacheableRequests[context.sourceid];
+            }
+            
+            return response.apply(this, arguments);
+        };
+    }
+    
+    /**
+     * Indicates whether the dispatches of a group of events are deferred: the page is hidden, and the group is
+     * suspended when the page is hidden.
+     * 
+     * @param {string} group The name of the group of events.
+     * @returns {boolean} true if the dispatches are deferred.
+     */
+    function isSuspended(group) {
+        var options = groupOptions[group];
+        return typeof document !== 'undefined' && document.hidden === true &&
+                !(options && options.suspendWhenHidden === false);
+    }
+    
+    /**
+     * Defers the dispatch of events of a group until the page becomes visible, merging them with the events already
+     * deferred.
+     * 
+     * @param {string} group The name of the group of events.
+     * @param {string} events The space separated list of event names.
+     */
+    function suspend(group, events) {
+        var names = events.split(/\s+/g);
+        var suspended = suspendedEvents[group] || [];
+        
+        for (var i = 0; i < names.length; i++) {
+            if (names[i] && suspended.indexOf(names[i]) === -1) {
+                suspended.push(names[i]);
+            }
+        }
+        
+        suspendedEvents[group] = suspended;
+        statistics.suspendedDispatches++;
+    }
+    
+    /**
+     * Dispatches at once the events of a group deferred while the page was hidden, so that each concerned event
+     * observer sends a single catch-up request.
+     * 
+     * @param {string} group The name of the group of events.
+     */
+    function resume(group) {
+        var suspended = suspendedEvents[group];
+        
+        if (suspended) {
+            delete suspendedEvents[group];
+            statistics.catchUpDispatches++;
+            self.dispatch(group, suspended.join(' '));
+        }
+    }
+    
+    /**
+     * Handles the changes of the visibility of the page: once it is visible, the deferred events are dispatched.
+     */
+    function onVisibilityChange() {
+        if (!document.hidden) {
+            for (var group in suspendedEvents) {
+                if (suspendedEvents.hasOwnProperty(group)) {
+                    resume(group);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Merges the events received from the server for a group into its pending dispatch, which is scheduled by the
+     * first of them.
+     * 
+     * @param {string} group The name of the group of events.
+     * @param {string} events The space separated list of event names.
+     * @param {object} updates The markup pushed by the server along with the events, by client ID, or null.
+     */
+    function coalesce(group, events, updates) {
+        var buffer = coalescedEvents[group];
+        var names = events.split(/\s+/g);
+        
+        if (!coalescing.enabled) {
+            self.dispatch(group, events, updates);
+            return;
+        }
+        else if (buffer) {
+            statistics.coalescedMessages++;
+        }
+        else {
+            buffer = {events: [], updates: updates ? {} : null, timer: null, frame: null, time: new Date().getTime()};
+            coalescedEvents[group] = buffer;
+        }
+        
+        for (var i = 0; i < names.length; i++) {
+            if (names[i] && buffer.events.indexOf(names[i]) === -1) {
+                buffer.events.push(names[i]);
+            }
+        }
+        
+        /**
+         * the later markup of a component overrides the earlier one; if any of the merged messages carries no markup,
+         * the observers must render their targets themselves
+         */
+        if (buffer.updates && updates) {
+            for (var clientId in updates) {
+                if (updates.hasOwnProperty(clientId)) {
+                    buffer.updates[clientId] = updates[clientId];
+                }
+            }
+        }
+        else {
+            buffer.updates = null;
+        }
+        
+        /**
+         * the window slides with each received message, within the maximum latency since the first one; the frame
+         * is bounded by the maximum latency too, because no frame is rendered while the page is hidden
+         */
+        var delay = Math.max(0, coalescing.maxLatency - (new Date().getTime() - buffer.time));
+        
+        if (coalescing.window > 0 || typeof requestAnimationFrame !== 'function') {
+            clearTimeout(buffer.timer);
+            buffer.timer = setTimeout(function() {
+                flushCoalescedEvents(group);
+            }, Math.min(coalescing.window || 16, delay));
+        }
+        else if (buffer.frame === null) {
+            buffer.frame = requestAnimationFrame(function() {
+                flushCoalescedEvents(group);
+            });
+            buffer.timer = setTimeout(function() {
+                flushCoalescedEvents(group);
+            }, delay);
+        }
+    }
+    
+    /**
+     * Dispatches the events received from the server for a group, if any.
+     * 
+     * @param {string} group The name of the group of events.
+     */
+    function flushCoalescedEvents(group) {
+        var buffer = coalescedEvents[group];
+        
+        if (buffer) {
+            delete coalescedEvents[group];
+            clearTimeout(buffer.timer);
+            
+            if (buffer.frame !== null) {
+                cancelAnimationFrame(buffer.frame);
+            }
+            
+            self.dispatch(group, buffer.events.join(' '), buffer.updates);
+        }
+    }
+    
+    /**
+     * Selects the markup pushed by the server for the render targets of an event observer.
+     * 
+     * @param {string} render The space separated list of client IDs of the render targets.
+     * @param {object} updates The markup pushed by the server, by client ID.
+     * @returns {object} The markup of the render targets, by client ID, or null if the pushed markup does not cover
+     * all the render targets.
+     */
+    function selectUpdates(render, updates) {
+        var clientIds = render ? render.split(/\s+/g) : [];
+        var selected = null;
+        var covered = true;
+        
+        for (var i = 0; i < clientIds.length && covered; i++) {
+            if (clientIds[i] && clientIds[i] !== '@none') {
+                covered = updates.hasOwnProperty(clientIds[i]);
+                selected = selected || {};
+                selected[clientIds[i]] = updates[clientIds[i]];
+            }
+        }
+        
+        return covered ? selected : null;
+    }
+    
+    /**
+     * Applies the markup pushed by the server for the render targets of an event observer, through the JSF
+     * implementation, as the partial response of a request of the event observer.
+     * 
+     * @param {string} clientId The client ID of the JSF event observer component.
+     * @param {object} updates The markup of the render targets, by client ID.
+     */
+    function applyPushedUpdates(clientId, updates) {
+        var source = document.getElementById(clientId);
+        var responseText = '<?xml version="1.0" encoding="UTF-8"?>\n<partial-response><changes>';
+        
+        for (var id in updates) {
+            if (updates.hasOwnProperty(id)) {
+                responseText += '<update id="' + id.replace(/&/g, '&amp;').replace(/"/g, '&quot;') + '"><![CDATA[';
+                responseText += updates[id].replace(/]]>/g, ']]]]><![CDATA[>') + ']]></update>';
+                
+                /**
+                 * the server does not know that the markup of the updated targets changed
+                 */
+                staleUpdates += ' ' + id;
+            }
+        }
+        
+        responseText += '</changes></partial-response>';
+        applyResponse(createResponse(responseText), {source: source, element: source, sourceid: clientId});
+    }
+    
+    /**
+     * Computes the key of the cached response of an event observer: the client ID of the observer, the events it
+     * observes among the dispatched ones, and the values of the fields of its form except the state of the view.
+     * 
+     * @param {string} clientId The client ID of the JSF event observer component.
+     * @param {object} request The request of the event observer.
+     * @returns {string} The key, or null if the observer is not in a form.
+     */
+    function getCacheKey(clientId, request) {
+        var payload = getFormPayload(clientId);
+        return payload !== null ? clientId + '\n' + request.events + '\n' + request.rows + '\n' + payload : null;
+    }
+    
+    /**
+     * Serializes the values of the fields of the form of an event observer, except the state of the view.
+     * 
+     * @param {string} clientId The client ID of the JSF event observer component.
+     * @returns {string} The serialized values, or null if the observer is not in a form.
+     */
+    function getFormPayload(clientId) {
+        var source = document.getElementById(clientId);
+        var form = source ? getForm(source) : null;
+        var payload = null;
+        
+        if (form && jsf.getViewState) {
+            var fields = jsf.getViewState(form).split('&');
+            payload = [];
+            
+            for (var i = 0; i < fields.length; i++) {
+                if (!/javax\.faces\.(ViewState|ClientWindow)/.test(decodeURIComponent(fields[i].split('=')[0]))) {
+                    payload.push(fields[i]);
+                }
+            }
+            
+            payload = payload.join('&');
+        }
+        
+        return payload;
+    }
+    
+    /**
+     * Caches the response of a cacheable request, if the server marked it as cacheable. The updates of the state of the
+     * view are not cached: the cached response is replayed with the current state of the view.
+     * 
+     * @param {string} clientId The client ID of the JSF event observer component.
+     * @param {string} key The key of the response.
+     * @param {object} request The request that holds the response.
+     */
+    function cacheResponse(clientId, key, request) {
+        var extensions = request.responseXML ? request.responseXML.getElementsByTagName('extension') : [];
+        var ttl = 0;
+        
+        for (var i = 0; i < extensions.length; i++) {
+            if (extensions[i].getAttribute('id') === EXTENSION_ID) {
+                ttl = parseInt(extensions[i].getAttribute('cacheTtl') || '0', 10);
+            }
+        }
+        
+        if (ttl > 0 && request.responseText) {
+            var responseText = request.responseText.replace(STATE_UPDATES_PATTERN, '');
+            
+            removeCachedResponse(key);
+            responseCache.push({
+                key: key,
+                clientId: clientId,
+                responseText: responseText,
+                expires: new Date().getTime() + ttl * 1000
+            });
+            responseCacheSize += responseText.length;
+            
+            while (responseCache.length > RESPONSE_CACHE_MAX_ENTRIES || responseCacheSize > RESPONSE_CACHE_MAX_SIZE) {
+                responseCacheSize -= responseCache.shift().responseText.length;
+            }
+        }
+    }
+    
+    /**
+     * Applies the cached response of an event observer, if any and not expired.
+     * 
+     * @param {string} clientId The client ID of the JSF event observer component.
+     * @param {string} key The key of the response.
+     * @returns {boolean} true if a cached response was applied.
+     */
+    function applyCachedResponse(clientId, key) {
+        var entry = removeCachedResponse(key);
+        var source = document.getElementById(clientId);
+        
+        if (!entry || entry.expires <= new Date().getTime() || !source) {
+            return false;
+        }
+        
+        /**
+         * the entry becomes the most recently used one
+         */
+        responseCache.push(entry);
+        responseCacheSize += entry.responseText.length;
+        
+        var request = {
+            responseXML: parseXml(entry.responseText),
+            responseText: entry.responseText,
+            status: 200,
+            readyState: 4,
+            getResponseHeader: function() {
+                return null;
+            }
+        };
+        var updates = request.responseXML.getElementsByTagName('update');
+        
+        /**
+         * the server does not know that the markup of the updated targets changed, so it must not skip them as
+         * unchanged in its next response
+         */
+        for (var i = 0; i < updates.length; i++) {
+            staleUpdates += ' ' + updates[i].getAttribute('id');
+        }
+        
+        applyResponse(request, {source: source, element: source, sourceid: clientId});
+        return true;
+    }
+    
+    /**
+     * Removes a cached response.
+     * 
+     * @param {string} key The key of the response.
+     * @returns {object} The removed cache entry, or null if none.
+     */
+    function removeCachedResponse(key) {
+        for (var i = 0; i < responseCache.length; i++) {
+            if (responseCache[i].key === key) {
+                var entry = responseCache.splice(i, 1)[0];
+                responseCacheSize -= entry.responseText.length;
+                return entry;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Registers the events that invalidate the cached responses of an event observer.
+     * 
+     * @param {string} clientId The client ID of the JSF event observer component.
+     * @param {string} group The name of the group of events of the event observer.
+     * @param {string} events The space separated list of events, each one being an event name of the group, or a
+     * group name and an event name separated by a colon.
+     */
+    function registerCacheInvalidations(clientId, group, events) {
+        var tokens = events.split(/\s+/g);
+        
+        for (var i = 0; i < tokens.length; i++) {
+            var token = tokens[i].indexOf(':') === -1 ? group + ':' + tokens[i] : tokens[i];
+            var clientIds = cacheInvalidations[token] || (cacheInvalidations[token] = []);
+            
+            if (tokens[i] && clientIds.indexOf(clientId) === -1) {
+                clientIds.push(clientId);
+            }
+        }
+    }
+    
+    /**
+     * Removes the cached responses invalidated by a list of dispatched events.
+     * 
+     * @param {string} group The name of the group of events.
+     * @param {string} events The space separated list of event names.
+     */
+    function invalidateCachedResponses(group, events) {
+        var tokens = events.split(/\s+/g);
+        
+        for (var i = 0; i < tokens.length; i++) {
+            var clientIds = cacheInvalidations[group + ':' + tokens[i]];
+            
+            for (var j = 0; clientIds && j < clientIds.length; j++) {
+                for (var k = responseCache.length - 1; k >= 0; k--) {
+                    if (responseCache[k].clientId === clientIds[j]) {
+                        responseCacheSize -= responseCache.splice(k, 1)[0].responseText.length;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Indicates whether the guard of an event producer suppresses a dispatch.
+     * 
+     * @param {Element} element The element of the event producer.
+     * @param {Event} event The DOM event at the origin of the dispatch.
+     * @param {string} id The identifier of the dispatch: the group followed by the list of events.
+     * @param {object} guard The guard of the event producer.
+     * @returns {boolean} true if the dispatch is suppressed.
+     */
+    function isSuppressed(element, event, id, guard) {
+        var suppressed = false;
+        
+        if (guard.filter && !guard.filter.call(element, event)) {
+            suppressed = true;
+        }
+        else if (guard.suppressUnchanged) {
+            var keyed = typeof guard.key === 'string';
+            var value = keyed ? guard.key : getTrackedValue(element);
+            var lastValues = keyed ? lastKeys : (element.steappeLastValues || (element.steappeLastValues = {}));
+            var lastValue = lastValues.hasOwnProperty(id) ? lastValues[id] : undefined;
+            
+            if (lastValue === undefined && !keyed) {
+                lastValue = getInitialValue(element);
+            }
+            
+            suppressed = lastValue !== undefined && lastValue === value;
+            lastValues[id] = value;
+        }
+        
+        return suppressed;
+    }
+    
+    /**
+     * Gets the current value of an element, tracked by the guards without an explicit key.
+     * 
+     * @param {Element} element The element.
+     * @returns {*} The checked state of a checkbox or a radio button, or else the value of the element.
+     */
+    function getTrackedValue(element) {
+        return (element.type === 'checkbox' || element.type === 'radio') ? element.checked : element.value;
+    }
+    
+    /**
+     * Gets the value of an element when it was rendered, so that a first dispatch that does not change it is
+     * suppressed too.
+     * 
+     * @param {Element} element The element.
+     * @returns {*} The initial value of a text input or of a checkbox, or undefined if unknown.
+     */
+    function getInitialValue(element) {
+        var initialValue;
+        
+        if (element.type === 'checkbox' || element.type === 'radio') {
+            initialValue = element.defaultChecked;
+        }
+        else if (typeof element.defaultValue === 'string') {
+            initialValue = element.defaultValue;
+        }
+        
+        return initialValue;
+    }
+    
+    /**
+     * Gets the guard of a delegated event producer.
+     * 
+     * @param {Element} element The element of the event producer.
+     * @param {string} attribute The name of the data attribute of the delegated event producers.
+     * @param {number} index The index of the event producer.
+     * @returns {object} The guard, or null if the event producer is not guarded.
+     */
+    function getDelegatedGuard(element, attribute, index) {
+        var name = attribute + DELEGATED_GUARD_SEPARATOR + index;
+        var json = element.getAttribute(name);
+        var key = element.getAttribute(name + DELEGATED_KEY_SUFFIX);
+        var guard = null;
+        
+        if (json) {
+            guard = JSON.parse(json);
+            
+            if (key !== null) {
+                guard.key = key;
+            }
+            
+            if (typeof guard.filter === 'string') {
+                var source = guard.filter;
+                
+                if (!compiledFilters.hasOwnProperty(source)) {
+                    compiledFilters[source] = new Function('event', 'return (' + source + ');');
+                }
+                
+                guard.filter = compiledFilters[source];
+            }
+        }
+        
+        return guard;
+    }
+    
+    /**
+     * Creates the options of the AJAX request of an event observer.
+     * 
+     * @param {object} request The request of the event observer: the space separated lists of client IDs of JSF
+     * elements to execute and to render, of the events whose model is requested, and of the targeted rows, and whether
+     * the fields of the executed components only are posted.
+     * @returns {object} The options of the request.
+     */
+    function createRequestOptions(request) {
+        var options = {};
+        options['javax.faces.behavior.event'] = 'action';
+        options.execute = request.execute;
+        options.render = request.render;
+        
+        if (request.models) {
+            options[MODEL_EVENTS_PARAMETER] = request.models;
+        }
+        
+        if (request.rows) {
+            options[ROWS_PARAMETER] = request.rows;
+        }
+        
+        if (request.partialSubmit) {
+            options.partialSubmit = true;
+        }
+        
+        if (traceId) {
+            options[TRACE_PARAMETER] = '00-' + traceId + '-' + createTraceId(16) + '-01';
+        }
+        
+        return options;
+    }
+    
+    /**
+     * Generates a random trace or span ID.
+     * 
+     * @param {number} length The number of hexadecimal digits of the ID.
+     * @returns {string} The ID, never made of zeros only.
+     */
+    function createTraceId(length) {
+        var cryptoApi = typeof crypto !== 'undefined' && crypto.getRandomValues ? crypto : null;
+        var bytes = cryptoApi ? cryptoApi.getRandomValues(new Uint8Array(length / 2)) : null;
+        var id = '';
+        
+        for (var i = 0; i < length / 2; i++) {
+            var value = bytes ? bytes[i] : Math.floor(Math.random() * 256);
+            id += (value < 16 ? '0' : '') + value.toString(16);
+        }
+        
+        return /^0+$/.test(id) ? createTraceId(length) : id;
+    }
+    
+    /**
+     * Sends the AJAX request of an event observer.
+     * 
+     * @param {string} clientId The client ID of the JSF event observer component.
+     * @param {object} options The options of the request.
+     * @param {boolean} streaming Whether the request is sent with the streaming transport, if supported.
+     */
+    function sendRequest(clientId, options, streaming) {
+        var source = document.getElementById(clientId);
+        var form = source ? getForm(source) : null;
+        
+        viewGeneration++;
+        
+        if (staleUpdates) {
+            options[DISCARDED_UPDATES_PARAMETER] = staleUpdates;
+            staleUpdates = '';
+        }
+        
+        if (streaming && form && isStreamingSupported()) {
+            queueRequest(function() {
+                return fetchRequest(clientId, options, true);
+            });
+        }
+        else if (options.partialSubmit && form && isFetchSupported()) {
+            queueRequest(function() {
+                return fetchRequest(clientId, options, false);
+            });
+        }
+        else {
+            /**
+             * the JSF implementation posts all the fields of the form, and would send the unknown option as a request
+             * parameter
+             */
+            delete options.partialSubmit;
+            jsf.ajax.request(clientId, null, options);
+        }
+    }
+    
+    /**
+     * Queues a request, so that the requests posted to the view are sent one after another, like the JSF
+     * implementation sends its own requests: the request is sent once the requests in progress completed, whether
+     * they are posted with fetch or sent by the JSF implementation, so that it posts the latest state of the view.
+     * 
+     * @param {function} send The function that sends the request, and returns the promise of its completion if it is
+     * posted with fetch.
+     */
+    function queueRequest(send) {
+        requestQueue.push(send);
+        processRequestQueue();
+    }
+    
+    /**
+     * Sends the queued requests, until a request is in progress.
+     */
+    function processRequestQueue() {
+        while (!fetchInProgress && pendingAjaxRequests === 0 && requestQueue.length > 0) {
+            var completion = requestQueue.shift()();
+            
+            if (completion && typeof completion.then === 'function') {
+                fetchInProgress = true;
+                completion.then(completeFetch, completeFetch);
+            }
+        }
+    }
+    
+    /**
+     * Completes the request posted with fetch in progress, then sends the next queued request.
+     */
+    function completeFetch() {
+        fetchInProgress = false;
+        setTimeout(processRequestQueue, 0);
+    }
+    
+    /**
+     * Completes a request sent by the JSF implementation, then sends the next queued request: it is sent
+     * asynchronously, because the JSF implementation sends its own next request right after the current one
+     * completes, and this request must be counted first.
+     */
+    function completeAjaxRequest() {
+        pendingAjaxRequests = Math.max(0, pendingAjaxRequests - 1);
+        setTimeout(processRequestQueue, 0);
+    }
+    
+    /**
+     * Sends the requests of the JSF implementation through the queue while requests are queued or a request posted
+     * with fetch is in progress, so that they do not post a state of the view that is about to be replaced.
+     * 
+     * @param {function} request The function of the JSF implementation that sends a request.
+     * @returns {function} The function that replaces it.
+     */
+    function wrapRequest(request) {
+        return function() {
+            var that = this;
+            var args = arguments;
+            
+            if (!fetchInProgress && requestQueue.length === 0) {
+                return request.apply(that, args);
+            }
+            
+            queueRequest(function() {
+                request.apply(that, args);
+            });
+        };
+    }
+    
+    /**
+     * Applies a partial response that the JSF implementation did not request through the JSF implementation.
+     * 
+     * @param {object} request The object that holds the partial response.
+     * @param {object} context The context of the request, as expected by the JSF implementation.
+     */
+    function applyResponse(request, context) {
+        applyingResponse = true;
+        
+        try {
+            jsf.ajax.response(request, context);
+        }
+        finally {
+            applyingResponse = false;
+        }
+    }
+    
+    /**
+     * Indicates whether the browser supports the requests posted with fetch, whose response is handed to the JSF
+     * implementation once it is completely received.
+     * 
+     * @returns {boolean} true if fetch is supported.
+     */
+    function isFetchSupported() {
+        return typeof fetch === 'function' && typeof DOMParser === 'function' && !!jsf.getViewState;
+    }
+    
+    /**
+     * Indicates whether the browser supports the streaming transport.
+     * 
+     * @returns {boolean} true if the streaming transport is supported.
+     */
+    function isStreamingSupported() {
+        return typeof fetch === 'function' && typeof TextDecoder === 'function' && typeof DOMParser === 'function' &&
+                typeof ReadableStream === 'function' && !!document.createRange && !!jsf.getViewState;
+    }
+    
+    /**
+     * Sends the AJAX request of an event observer with fetch: only the fields of the executed components are posted if
+     * the request is a partial submit, and the partial response is either parsed and applied while it is received with
+     * the streaming transport, or handed to the JSF implementation once it is completely received.
+     * 
+     * @param {string} clientId The client ID of the JSF event observer component.
+     * @param {object} options The options of the request.
+     * @param {boolean} streaming Whether the request is sent with the streaming transport.
+     * @returns {Promise} The promise of the completion of the request, or null if it was not sent.
+     */
+    function fetchRequest(clientId, options, streaming) {
+        var posted = postRequest(clientId, options);
+        
+        if (!posted) {
+            notifyError(document.getElementById(clientId), options, new Error(clientId + ' is not in a form'));
+            return null;
+        }
+        
+        var source = posted.context.source;
+        var context = posted.context;
+        
+        return posted.response.then(function(response) {
+            if (!response.ok || (streaming && !response.body)) {
+                throw new Error('HTTP status ' + response.status);
+            }
+            else if (!streaming) {
+                return response.text().then(function(responseText) {
+                    applyResponse(createResponse(responseText), context);
+                });
+            }
+            
+            var parser = new PartialResponseParser(clientId, context);
+            var reader = response.body.getReader();
+            var decoder = new TextDecoder('utf-8');
+            
+            function read() {
+                return reader.read().then(function(result) {
+                    if (result.done) {
+                        parser.end(decoder.decode());
+                    }
+                    else {
+                        parser.push(decoder.decode(result.value, {stream: true}));
+                        return read();
+                    }
+                });
+            }
+            
+            return read();
+        }).catch(function(error) {
+            notifyError(source, options, error);
+        });
+    }
+    
+    /**
+     * Creates the object that holds a partial response received with fetch, as expected by the JSF implementation.
+     * 
+     * @param {string} responseText The partial response.
+     * @returns {object} The object that mimics a completed XMLHttpRequest.
+     */
+    function createResponse(responseText) {
+        return {
+            responseXML: parseXml(responseText),
+            responseText: responseText,
+            status: 200,
+            readyState: 4,
+            getResponseHeader: function() {
+                return null;
+            }
+        };
+    }
+    
+    /**
+     * Notifies the failure of a request posted with fetch to its error listener, or logs it.
+     * 
+     * @param {Element} source The element of the JSF event observer component.
+     * @param {object} options The options of the request.
+     * @param {*} error The error.
+     */
+    function notifyError(source, options, error) {
+        var data = {type: 'error', status: 'httpError', description: String(error), source: source};
+        
+        if (options.onerror) {
+            options.onerror(data);
+        }
+        else {
+            console.log("request failed: " + error);
+        }
+    }
+    
+    /**
+     * Posts the AJAX request of an event observer with fetch. The event observer and its form are looked up, and the
+     * state of the view is read, when the request is posted.
+     * 
+     * @param {string} clientId The client ID of the JSF event observer component.
+     * @param {object} options The options of the request.
+     * @returns {object} The context of the request, as expected by the JSF implementation, and the promise of the
+     * response; or null if the event observer is not in a form anymore.
+     */
+    function postRequest(clientId, options) {
+        var source = document.getElementById(clientId);
+        var form = source ? getForm(source) : null;
+        
+        if (!form) {
+            return null;
+        }
+        
+        var execute = resolveClientIds(options.execute, clientId, form);
+        var render = resolveClientIds(options.render, clientId, form);
+        var parameters = {};
+        
+        for (var option in options) {
+            if (options.hasOwnProperty(option) && REQUEST_OPTIONS.indexOf(option) === -1) {
+                parameters[option] = options[option];
+            }
+        }
+        
+        parameters['javax.faces.source'] = clientId;
+        parameters['javax.faces.partial.ajax'] = 'true';
+        parameters['javax.faces.partial.execute'] = execute;
+        parameters['javax.faces.partial.render'] = render;
+        
+        var body = options.partialSubmit ? serializeExecutedFields(form, execute) : jsf.getViewState(form);
+        
+        for (var parameter in parameters) {
+            if (parameters.hasOwnProperty(parameter)) {
+                body += '&' + encodeURIComponent(parameter) + '=' + encodeURIComponent(parameters[parameter]);
+            }
+        }
+        
+        var context = {
+            source: source,
+            element: source,
+            sourceid: clientId,
+            formid: form.id,
+            render: render,
+            onevent: options.onevent,
+            onerror: options.onerror
+        };
+        
+        var response = fetch(form.action, {
+            method: 'POST',
+            credentials: 'same-origin',
+            headers: {
+                'Faces-Request': 'partial/ajax',
+                'Content-Type': 'application/x-www-form-urlencoded;charset=UTF-8'
+            },
+            body: body
+        });
+        
+        return {context: context, response: response};
+    }
+    
+    /**
+     * Sends the speculative request of an event observer, unless the same request is already in progress.
+     * 
+     * @param {string} clientId The client ID of the JSF event observer component.
+     * @param {object} request The request of the event observer.
+     */
+    function speculate(clientId, request) {
+        var speculation = speculations[clientId];
+        var source = document.getElementById(clientId);
+        var form = source ? getForm(source) : null;
+        
+        if (speculation && speculation.events === request.events && isValidSpeculation(speculation, viewGeneration)
+                && speculation.payload === getFormPayload(clientId)) {
+            return;
+        }
+        else if (!form || !isStreamingSupported()) {
+            return;
+        }
+        
+        if (speculationGeneration !== viewGeneration) {
+            speculationGeneration = viewGeneration;
+            speculationCount = 0;
+        }
+        
+        /**
+         * each speculative request is a full postback for the server, even if its response is discarded
+         */
+        if (speculationCount >= MAX_SPECULATIONS) {
+            return;
+        }
+        
+        speculationCount++;
+        
+        var options = createRequestOptions(request);
+        options[SPECULATIVE_EVENTS_PARAMETER] = request.events;
+        
+        /**
+         * a speculative request precedes its dispatch, so it does not belong to the trace of the last one
+         */
+        options[TRACE_PARAMETER] = '00-' + createTraceId(32) + '-' + createTraceId(16) + '-01';
+        
+        speculation = {
+            events: request.events,
+            generation: viewGeneration,
+            time: new Date().getTime(),
+            payload: getFormPayload(clientId),
+            context: null,
+            responseText: null,
+            failed: false,
+            fallback: null
+        };
+        speculations[clientId] = speculation;
+        
+        queueRequest(function() {
+            var posted = postRequest(clientId, options);
+            var response = posted ? posted.response : Promise.reject(new Error(clientId + ' is not in a form'));
+            
+            /**
+             * the fields are serialized when the request is sent, which may be later than the speculation
+             */
+            speculation.payload = getFormPayload(clientId);
+            speculation.context = posted ? posted.context : null;
+            
+            return response.then(function(response) {
+                if (!response.ok) {
+                    throw new Error('HTTP status ' + response.status);
+                }
+                
+                return response.text();
+            }).then(function(responseText) {
+                speculation.responseText = responseText;
+                speculation.failed = responseText.indexOf('<partial-response') === -1;
+            }).catch(function() {
+                speculation.failed = true;
+            }).then(function() {
+                if (speculation.fallback) {
+                    applySpeculation(speculation);
+                }
+            });
+        });
+    }
+    
+    /**
+     * Commits the speculative request of an event observer when the events it was sent for are dispatched: its
+     * response is applied now, or as soon as it is received.
+     * 
+     * @param {string} clientId The client ID of the JSF event observer component.
+     * @param {object} request The request of the event observer.
+     * @returns {boolean} true if the speculative request was committed, false if the request must be sent.
+     */
+    function commitSpeculation(clientId, request) {
+        var speculation = speculations[clientId];
+        var committed = false;
+        
+        delete speculations[clientId];
+        
+        /**
+         * the requests sent to the other observers by the same dispatch do not invalidate the speculative request;
+         * a field changed since the request was sent does, since the response was rendered from the posted values
+         */
+        if (speculation && speculation.events === request.events
+                && isValidSpeculation(speculation, dispatchGeneration)
+                && speculation.payload === getFormPayload(clientId)) {
+            speculation.appliedResponses = appliedResponses;
+            speculation.fallback = function() {
+                sendRequest(clientId, createRequestOptions(request), false);
+            };
+            committed = true;
+            
+            if (speculation.responseText !== null) {
+                applySpeculation(speculation);
+            }
+        }
+        else if (speculation) {
+            statistics.speculativeDiscards++;
+        }
+        
+        return committed;
+    }
+    
+    /**
+     * Applies the response of a committed speculative request, or sends the request again if the response cannot be
+     * applied anymore: the request failed, or another response was applied since the commit. The server did not save
+     * the state of the view for the speculative request, so the updates of the state of the view are not applied: the
+     * page keeps the state it posted.
+     * 
+     * @param {object} speculation The committed speculative request.
+     */
+    function applySpeculation(speculation) {
+        if (!speculation.failed && speculation.appliedResponses === appliedResponses) {
+            var responseText = speculation.responseText.replace(STATE_UPDATES_PATTERN, '');
+            applyResponse(createResponse(responseText), speculation.context);
+        }
+        else {
+            statistics.speculativeDiscards++;
+            speculation.fallback();
+        }
+    }
+    
+    /**
+     * Indicates whether the response of a speculative request can still be applied: the request did not fail, it is
+     * recent, and the state of the view did not change since it was sent. The values of the fields are checked when
+     * the speculative request is committed.
+     * 
+     * @param {object} speculation The speculative request.
+     * @param {number} generation The current generation of the state of the view.
+     * @returns {boolean} true if the response can be applied.
+     */
+    function isValidSpeculation(speculation, generation) {
+        return !speculation.failed && speculation.generation === generation &&
+                new Date().getTime() - speculation.time < SPECULATION_TIMEOUT;
+    }
+    
+    /**
+     * Triggers the speculative event producers of an element that the user is about to activate: on pointer down,
+     * or when the element stays hovered for a short delay.
+     * 
+     * @param {Event} event The DOM event.
+     */
+    function onSpeculativeEvent(event) {
+        var element = event.target;
+        
+        while (element && element.getAttribute && !element.getAttribute(SPECULATIVE_ATTRIBUTE)) {
+            element = element.parentNode;
+        }
+        
+        element = element && element.getAttribute ? element : null;
+        
+        if (event.type === 'pointerdown' && element) {
+            cancelHoverIntent();
+            speculateProducers(element);
+        }
+        else if (event.type === 'mouseover' && element && (!hoverIntent || hoverIntent.element !== element)) {
+            cancelHoverIntent();
+            hoverIntent = {
+                element: element,
+                timer: setTimeout(function() {
+                    hoverIntent = null;
+                    speculateProducers(element);
+                }, HOVER_INTENT_DELAY)
+            };
+        }
+        else if (event.type === 'mouseout' && hoverIntent && !hoverIntent.element.contains(event.relatedTarget)) {
+            cancelHoverIntent();
+        }
+    }
+    
+    /**
+     * Cancels the pending hover intent, if any.
+     */
+    function cancelHoverIntent() {
+        if (hoverIntent) {
+            clearTimeout(hoverIntent.timer);
+            hoverIntent = null;
+        }
+    }
+    
+    /**
+     * Sends the speculative requests for the speculative event producers of an element.
+     * 
+     * @param {Element} element The element.
+     */
+    function speculateProducers(element) {
+        var entries = element.getAttribute(SPECULATIVE_ATTRIBUTE).split('|');
+        
+        for (var i = 0; i < entries.length; i++) {
+            var entry = entries[i].replace(/^\s+/, '');
+            var index = entry.indexOf(' ');
+            
+            if (index > 0) {
+                self.speculate(entry.substring(0, index), entry.substring(index + 1));
+            }
+        }
+    }
+    
+    /**
+     * Resolves the keywords of a list of client IDs that only the client side knows.
+     * 
+     * @param {string} clientIds The space separated list of client IDs and keywords.
+     * @param {string} clientId The client ID of the JSF event observer component.
+     * @param {Element} form The form of the event observer.
+     * @returns {string} The space separated list of client IDs, without duplicates.
+     */
+    function resolveClientIds(clientIds, clientId, form) {
+        var tokens = clientIds ? clientIds.split(/\s+/g) : [];
+        var resolved = [];
+        
+        for (var i = 0; i < tokens.length; i++) {
+            var token = tokens[i] === '@this' ? clientId : (tokens[i] === '@form' ? form.id : tokens[i]);
+            
+            if (token && resolved.indexOf(token) === -1) {
+                resolved.push(token);
+            }
+        }
+        
+        return resolved.join(' ');
+    }
+    
+    /**
+     * Serializes the fields of a form that belong to the executed components, like the JSF implementation serializes
+     * all of them: the fields whose name is the client ID of an executed component or starts with it, and the fields
+     * nested in the element of an executed component. The state of the view and the field that identifies the form
+     * are always serialized, so that the server restores the view and decodes the form.
+     * 
+     * @param {Element} form The form of the event observer.
+     * @param {string} execute The space separated list of the client IDs of the executed components.
+     * @returns {string} The URL encoded fields.
+     */
+    function serializeExecutedFields(form, execute) {
+        var clientIds = execute ? execute.split(/\s+/g) : [];
+        var separator = jsf.separatorchar || ':';
+        var elements = [];
+        var fields = [];
+        var omitted = 0;
+        
+        /**
+         * the whole form is serialized when it is executed
+         */
+        if (clientIds.indexOf(form.id) !== -1 || clientIds.indexOf('@all') !== -1) {
+            return jsf.getViewState(form);
+        }
+        
+        for (var i = 0; i < clientIds.length; i++) {
+            var element = document.getElementById(clientIds[i]);
+            
+            if (element) {
+                elements.push(element);
+            }
+        }
+        
+        for (var j = 0; j < form.elements.length; j++) {
+            var field = form.elements[j];
+            
+            if (field.name && !field.disabled) {
+                if (field.name === form.id || STATE_UPDATE_PATTERN.test(field.name) ||
+                        isExecutedField(field, clientIds, elements, separator)) {
+                    appendField(fields, field);
+                }
+                else {
+                    omitted++;
+                }
+            }
+        }
+        
+        statistics.partialSubmits++;
+        statistics.omittedFields += omitted;
+        return fields.join('&');
+    }
+    
+    /**
+     * Indicates whether a field of a form belongs to one of the executed components.
+     * 
+     * @param {Element} field The field.
+     * @param {Array} clientIds The client IDs of the executed components.
+     * @param {Array} elements The elements of the executed components present in the document.
+     * @param {string} separator The separator of the client IDs.
+     * @returns {boolean} true if the field belongs to an executed component.
+     */
+    function isExecutedField(field, clientIds, elements, separator) {
+        for (var i = 0; i < clientIds.length; i++) {
+            if (field.name === clientIds[i] || field.name.indexOf(clientIds[i] + separator) === 0) {
+                return true;
+            }
+        }
+        
+        for (var j = 0; j < elements.length; j++) {
+            if (elements[j].contains(field)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Appends the URL encoded values of a field, if it is successful: the buttons and the file inputs are never
+     * posted by an AJAX request, and the check boxes and radio buttons only when they are checked.
+     * 
+     * @param {Array} fields The URL encoded fields.
+     * @param {Element} field The field.
+     */
+    function appendField(fields, field) {
+        var name = encodeURIComponent(field.name);
+        var type = field.type;
+        var checkable = type === 'checkbox' || type === 'radio';
+        
+        if (type === 'select-multiple') {
+            for (var i = 0; i < field.options.length; i++) {
+                if (field.options[i].selected) {
+                    fields.push(name + '=' + encodeURIComponent(field.options[i].value));
+                }
+            }
+        }
+        else if (!/^(submit|reset|button|image|file)$/.test(type) && (!checkable || field.checked)) {
+            fields.push(name + '=' + encodeURIComponent(field.value));
+        }
+    }
+    
+    /**
+     * Expands the request of a row-aware event observer to a list of rows: the client IDs of its row are replaced by
+     * the ones of each row, and the event observers of the rows are executed, so that they invoke their action
+     * listeners. The request is only concerned if at least one of the rows is present in the document.
+     * 
+     * @param {object} request The request of the event observer.
+     * @param {string} template The client ID template of the event observer.
+     * @param {Array} keys The keys of the targeted rows.
+     */
+    function expandRows(request, template, keys) {
+        var present = [];
+        
+        for (var i = 0; i < keys.length; i++) {
+            var row = document.getElementById(template.replace(ROW_PLACEHOLDER, keys[i]));
+            
+            if (row && present.indexOf(keys[i]) === -1) {
+                present.push(keys[i]);
+            }
+        }
+        
+        request.concerned = present.length > 0;
+        request.rows = present.join(' ');
+        request.execute = expandRowIds(template + ' ' + request.execute, template, present);
+        request.render = expandRowIds(request.render, template, present);
+    }
+    
+    /**
+     * Replaces the client ID templates of a list by the client IDs of a list of rows.
+     * 
+     * @param {string} clientIds The space separated list of client IDs and client ID templates.
+     * @param {string} template The client ID template of the event observer, which replaces the '@this' keyword.
+     * @param {Array} keys The keys of the rows.
+     * @returns {string} The space separated list of client IDs, without duplicates.
+     */
+    function expandRowIds(clientIds, template, keys) {
+        var tokens = clientIds ? clientIds.split(/\s+/g) : [];
+        var expanded = [];
+        
+        for (var i = 0; i < tokens.length; i++) {
+            var token = tokens[i] === '@this' ? template : tokens[i];
+            var templated = token.indexOf(ROW_PLACEHOLDER) !== -1;
+            
+            for (var j = 0; j < (templated ? keys.length : 1); j++) {
+                var clientId = templated ? token.replace(ROW_PLACEHOLDER, keys[j]) : token;
+                
+                if (clientId && expanded.indexOf(clientId) === -1) {
+                    expanded.push(clientId);
+                }
+            }
+        }
+        
+        return expanded.join(' ');
+    }
+    
+    /**
+     * Finds the keys of the rows of a row-aware event observer present in the document.
+     * 
+     * @param {string} template The client ID template of the event observer.
+     * @returns {Array} The keys of the rows, in the order of the document.
+     */
+    function findRows(template) {
+        var index = template.indexOf(ROW_PLACEHOLDER);
+        var prefix = template.substring(0, index);
+        var suffix = template.substring(index + ROW_PLACEHOLDER.length);
+        var separatorChar = (typeof jsf !== 'undefined' && jsf.separatorchar) || ':';
+        var elements = document.querySelectorAll('[id^="' + prefix + '"]');
+        var keys = [];
+        
+        for (var i = 0; i < elements.length; i++) {
+            var id = elements[i].id;
+            var key = id.length > prefix.length + suffix.length && id.substring(id.length - suffix.length) === suffix ?
+                    id.substring(prefix.length, id.length - suffix.length) : '';
+            
+            if (key && key.indexOf(separatorChar) === -1) {
+                keys.push(key);
+            }
+        }
+        
+        return keys;
+    }
+    
+    /**
+     * Gets the form that contains an element.
+     * 
+     * @param {Element} element The element.
+     * @returns {Element} The form, or null if the element is not in a form.
+     */
+    function getForm(element) {
+        var form = element;
+        
+        while (form && form.nodeName !== 'FORM') {
+            form = form.parentNode;
+        }
+        
+        return form;
+    }
+    
+    /**
+     * Parses an XML document.
+     * 
+     * @param {string} xml The XML document.
+     * @returns {Document} The parsed document.
+     */
+    function parseXml(xml) {
+        return new DOMParser().parseFromString(xml, 'text/xml');
+    }
+    
+    /**
+     * Finds the end of a tag, whose attribute values may contain the '>' character.
+     * 
+     * @param {string} text The text.
+     * @param {number} start The index of the beginning of the tag.
+     * @returns {number} The index of the '>' character that ends the tag, or -1 if the tag is not complete.
+     */
+    function findTagEnd(text, start) {
+        var quote = null;
+        
+        for (var i = start + 1; i < text.length; i++) {
+            var c = text.charAt(i);
+            
+            if (quote) {
+                quote = c === quote ? null : quote;
+            }
+            else if (c === '"' || c === "'") {
+                quote = c;
+            }
+            else if (c === '>') {
+                return i;
+            }
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Finds the end of an element, whose character data sections may contain any markup.
+     * 
+     * @param {string} text The text.
+     * @param {number} position The index of the content of the element.
+     * @param {string} name The name of the element.
+     * @returns {number} The index following the end tag of the element, or -1 if the element is not complete.
+     */
+    function findElementEnd(text, position, name) {
+        var endTag = '</' + name + '>';
+        
+        for (var i = text.indexOf('<', position); i !== -1; i = text.indexOf('<', i + 1)) {
+            if (text.substring(i, i + 9) === '<![CDATA[') {
+                var cdataEnd = text.indexOf(']]>', i + 9);
+                
+                if (cdataEnd === -1) {
+                    return -1;
+                }
+                
+                i = cdataEnd + 2;
+            }
+            else if (text.substring(i, i + endTag.length) === endTag) {
+                return i + endTag.length;
+            }
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Reads the extensions written by the server-side eventing framework in a partial response.
+     * 
+     * @param {object} data The data of the JSF AJAX event.
+     */
+    function onAjaxEvent(data) {
+        if (data.status === 'begin') {
+            viewGeneration++;
+            pendingAjaxRequests++;
+        }
+        else if (data.status === 'success' && !applyingResponse) {
+            completeAjaxRequest();
+        }
+        
+        if (data.status === 'success' && data.responseXML) {
+            var extensions = data.responseXML.getElementsByTagName('extension');
+            
+            for (var i = 0; i < extensions.length; i++) {
+                var extension = extensions[i];
+                
+                if (extension.getAttribute('id') === EXTENSION_ID) {
+                    readExtension(extension);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Completes the request of the JSF implementation that failed.
+     * 
+     * @param {object} data The data of the JSF AJAX error.
+     */
+    function onAjaxError(data) {
+        if (!applyingResponse) {
+            completeAjaxRequest();
+        }
+    }
+    
+    /**
+     * Reads the extension written by the server-side eventing framework in a partial response.
+     * 
+     * @param {Element} extension The extension.
+     */
+    function readExtension(extension) {
+        var models = extension.getElementsByTagName('model');
+        
+        statistics.skippedUpdates += parseInt(extension.getAttribute('skippedUpdates') || '0', 10);
+        statistics.savedBytes += parseInt(extension.getAttribute('savedBytes') || '0', 10);
+        
+        for (var i = 0; i < models.length; i++) {
+            applyModel(models[i].getAttribute('event'), JSON.parse(models[i].textContent));
+        }
+    }
+    
+    /**
+     * Applies the model of an event to the elements bound to it: the repeated elements are first adjusted to the
+     * number of items of their arrays, then the value of each bound element is patched if it changed.
+     * 
+     * @param {string} event The name of the event.
+     * @param {*} model The model.
+     */
+    function applyModel(event, model) {
+        var prefix = event + ':';
+        var repeats = document.querySelectorAll('[' + REPEAT_ATTRIBUTE + ']');
+        var bindings = document.querySelectorAll('[' + BIND_ATTRIBUTE + ']');
+        
+        for (var i = 0; i < repeats.length; i++) {
+            var repeat = repeats[i].getAttribute(REPEAT_ATTRIBUTE);
+            
+            if (repeat.indexOf(prefix) === 0) {
+                applyRepeat(repeats[i], resolvePath(model, repeat.substring(prefix.length)));
+            }
+        }
+        
+        for (var j = 0; j < bindings.length; j++) {
+            var binding = bindings[j].getAttribute(BIND_ATTRIBUTE);
+            var path = binding.indexOf(prefix) === 0 ? binding.substring(prefix.length) : null;
+            var value = path !== null ? resolvePath(model, path) : undefined;
+            
+            if (value !== undefined) {
+                applyValue(bindings[j], value);
+            }
+        }
+        
+        statistics.appliedModels++;
+    }
+    
+    /**
+     * Applies an array of a model to a repeated element: one copy of the template of the element per item, whose
+     * elements bound to a path prefixed by a dot are bound to the item.
+     * 
+     * @param {Element} element The repeated element.
+     * @param {*} items The array of the model.
+     */
+    function applyRepeat(element, items) {
+        var template = null;
+        var rows = [];
+        
+        for (var child = element.firstElementChild; child; child = child.nextElementSibling) {
+            if (child.nodeName === 'TEMPLATE' && !template) {
+                template = child;
+            }
+            else {
+                rows.push(child);
+            }
+        }
+        
+        var prototype = template ? (template.content || template).firstElementChild : null;
+        
+        if (!prototype || !(items instanceof Array)) {
+            return;
+        }
+        
+        while (rows.length > items.length) {
+            element.removeChild(rows.pop());
+        }
+        
+        while (rows.length < items.length) {
+            rows.push(element.appendChild(document.importNode(prototype, true)));
+        }
+        
+        for (var i = 0; i < rows.length; i++) {
+            var nested = rows[i].querySelectorAll('[' + BIND_ATTRIBUTE + ']');
+            var bindings = [rows[i]].concat(Array.prototype.slice.call(nested));
+            
+            for (var j = 0; j < bindings.length; j++) {
+                var binding = bindings[j].getAttribute(BIND_ATTRIBUTE) || '';
+                var value = binding.charAt(0) === '.' ? resolvePath(items[i], binding.substring(1)) : undefined;
+                
+                if (value !== undefined) {
+                    applyValue(bindings[j], value);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Resolves a path in a model.
+     * 
+     * @param {*} model The model.
+     * @param {string} path The dot separated list of the property names or the array indexes; empty for the model.
+     * @returns {*} The value, or undefined if the path does not exist in the model.
+     */
+    function resolvePath(model, path) {
+        var names = path ? path.split('.') : [];
+        var value = model;
+        
+        for (var i = 0; i < names.length && value !== undefined; i++) {
+            value = value !== null && typeof value === 'object' ? value[names[i]] : undefined;
+        }
+        
+        return value;
+    }
+    
+    /**
+     * Applies a value to a bound element, unless the element already shows it: to the attribute named by the element,
+     * or else to the checked state of a checkbox or a radio button, to the value of a form field, or to the text
+     * content of any other element.
+     * 
+     * @param {Element} element The bound element.
+     * @param {*} value The value.
+     */
+    function applyValue(element, value) {
+        var text = value === null ? '' : typeof value === 'object' ? JSON.stringify(value) : String(value);
+        var attribute = element.getAttribute(BIND_TARGET_ATTRIBUTE);
+        
+        if (attribute) {
+            if (element.getAttribute(attribute) !== text) {
+                element.setAttribute(attribute, text);
+            }
+        }
+        else if (element.type === 'checkbox' || element.type === 'radio') {
+            element.checked = value === true || text === element.value;
+        }
+        else if (/^(INPUT|SELECT|TEXTAREA)$/.test(element.nodeName)) {
+            if (element.value !== text) {
+                element.value = text;
+            }
+        }
+        else if (element.textContent !== text) {
+            element.textContent = text;
+        }
+    }
+    
+    /**
+     * Dispatches the events of the delegated event producers reacting on a DOM event.
+     * <p>
+     * The DOM event is handled for the target element and for each of its ancestors, as inline event handlers would.
+     * The 'action' client behavior event prevents the default action of the DOM event, like a submitting client
+     * behavior does.
+     * 
+     * @param {Event} event The DOM event.
+     */
+    function onDelegatedEvent(event) {
+        var names = DELEGATED_EVENTS[event.type];
+        
+        for (var element = event.target; element && element.getAttribute; element = element.parentNode) {
+            var marker = element.getAttribute(DELEGATED_MARKER_ATTRIBUTE);
+            
+            if (marker) {
+                marker = ' ' + marker + ' ';
+                
+                for (var i = 0; i < names.length; i++) {
+                    var name = names[i];
+                    
+                    if (marker.indexOf(' ' + name + ' ') !== -1) {
+                        dispatchProducers(element, event, DELEGATED_ATTRIBUTE_PREFIX + name);
+                        
+                        if (name === 'action' && event.preventDefault) {
+                            event.preventDefault();
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Dispatches the events of delegated event producers.
+     * 
+     * @param {Element} element The element of the event producers.
+     * @param {Event} event The DOM event at the origin of the dispatch.
+     * @param {string} attribute The name of the data attribute that holds the delegated event producers, separated by
+     * '|'. Each one is made of the name of the group of events followed by the space separated list of event names.
+     */
+    function dispatchProducers(element, event, attribute) {
+        var producers = element.getAttribute(attribute);
+        var entries = producers ? producers.split('|') : [];
+        
+        for (var i = 0; i < entries.length; i++) {
+            var entry = entries[i].replace(/^\s+/, '');
+            var index = entry.indexOf(' ');
+            
+            if (index > 0) {
+                var group = entry.substring(0, index);
+                var events = entry.substring(index + 1);
+                var guard = getDelegatedGuard(element, attribute, i);
+                
+                if (guard) {
+                    self.produce(element, event, group, events, guard);
+                }
+                else {
+                    self.dispatch(group, events);
+                }
+            }
+        }
+    }
+    
+    if (jsf.ajax && jsf.ajax.addOnEvent) {
+        jsf.ajax.addOnEvent(onAjaxEvent);
+    }
+    
+    if (jsf.ajax && jsf.ajax.addOnError) {
+        jsf.ajax.addOnError(onAjaxError);
+    }
+    
+    /**
+     * the requests of the JSF implementation wait for the requests posted with fetch, which wait for them in turn
+     */
+    if (jsf.ajax && jsf.ajax.request) {
+        jsf.ajax.request = wrapRequest(jsf.ajax.request);
+    }
+    
+    /**
+     * the response of a superseded request is applied by the JSF implementation, so that the state of the view stays
+     * consistent, but without the changes that the pending request will render again
+     */
+    if (jsf.ajax && jsf.ajax.response) {
+        jsf.ajax.response = wrapResponse(jsf.ajax.response);
+    }
+    
+    /**
+     * a single listener per DOM event handles all the delegated event producers of the document; the listeners are
+     * registered in the capture phase because some events (focus, blur) do not bubble
+     */
+    if (typeof document !== 'undefined' && document.addEventListener) {
+        for (var type in DELEGATED_EVENTS) {
+            if (DELEGATED_EVENTS.hasOwnProperty(type)) {
+                document.addEventListener(type, onDelegatedEvent, true);
+            }
+        }
+        
+        document.addEventListener('pointerdown', onSpeculativeEvent, true);
+        document.addEventListener('mouseover', onSpeculativeEvent, true);
+        document.addEventListener('mouseout', onSpeculativeEvent, true);
+        
+        /**
+         * the events deferred while the page was hidden are dispatched when it becomes visible again
+         */
+        document.addEventListener('visibilitychange', onVisibilityChange, false);
+    }
+    
     return self;
 })();
 
@@ -0,0 +1,369 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The tests of the history and of the fan-out of {@link EventBroadcaster}.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventBroadcasterTest {
+
+    /**
+     * The maximum time to wait for the fan-out of the messages, in milliseconds.
+     */
+    static private final long TIMEOUT = 5000;
+
+    /**
+     * The tested broadcaster, which keeps the last 4 messages.
+     */
+    private EventBroadcaster broadcaster;
+
+    @Before
+    public void setUp() {
+        broadcaster = new EventBroadcaster(new LoopbackBackplane(), 4);
+    }
+
+    @After
+    public void tearDown() {
+        broadcaster.stop();
+    }
+
+    @Test
+    public void testReplayAcrossWrapOfRing() {
+        for (int i = 1; i <= 10; i++) {
+            broadcaster.publish("g1", "e" + i);
+        }
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        /**
+         * the ring wrapped twice: only the messages 7 to 10 are kept
+         */
+        assertEquals(10, broadcaster.replay(2, Collections.singleton("g1"), subscriber));
+        assertEquals(Arrays.asList("7:e7", "8:e8", "9:e9", "10:e10"), subscriber.getDelivered());
+    }
+
+    @Test
+    public void testReplayOnlyDeliversUnknownMessagesOfSubscribedGroups() {
+        broadcaster.publish("g1", "a");
+        broadcaster.publish("g2", "x");
+        broadcaster.publish("g1", "b");
+        broadcaster.publish("g2", "y");
+        broadcaster.publish("g1", "c");
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        assertEquals(5, broadcaster.replay(3, Collections.singleton("g1"), subscriber));
+        assertEquals(Collections.singletonList("5:c"), subscriber.getDelivered());
+    }
+
+    @Test
+    public void testReplayFromUnknownIdDeliversNothing() {
+        broadcaster.publish("g1", "a");
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        /**
+         * e.g. a client resuming a stream of the node before it restarted
+         */
+        assertEquals(1, broadcaster.replay(42, Collections.singleton("g1"), subscriber));
+        assertEquals(Collections.emptyList(), subscriber.getDelivered());
+    }
+
+    @Test
+    public void testFanOutDoesNotRunOnPublisherThread() throws InterruptedException {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        broadcaster.subscribe(Collections.singleton("g1"), subscriber);
+        broadcaster.publish("g1", "a");
+
+        assertTrue(subscriber.await(1));
+        assertEquals(Collections.singletonList("1:a"), subscriber.getDelivered());
+        assertNotSame(Thread.currentThread(), subscriber.getThread());
+    }
+
+    @Test
+    public void testFanOutKeepsOrderOfIdsWithinGroup() throws InterruptedException {
+        int messages = 500;
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        broadcaster.subscribe(Arrays.asList("g1", "g2"), subscriber);
+
+        List<Thread> threads = new ArrayList<>();
+
+        for (String group : Arrays.asList("g1", "g1", "g2", "g2")) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < messages; i++) {
+                    broadcaster.publish(group, group);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(subscriber.awaitFannedOut(broadcaster));
+
+        /**
+         * the groups are fanned out independently, and the messages may be merged when a queue is full
+         */
+        Map<String, Long> lastIds = new HashMap<>();
+
+        for (String delivered : subscriber.getDelivered()) {
+            String[] parts = delivered.split(":");
+            long id = Long.parseLong(parts[0]);
+            Long lastId = lastIds.put(parts[1], id);
+            assertTrue(delivered, lastId == null || lastId < id);
+        }
+
+        assertEquals(4L * messages, Math.max(lastIds.get("g1"), lastIds.get("g2")));
+    }
+
+    @Test
+    public void testSlowSubscriberDoesNotDelayOtherGroups() throws InterruptedException {
+        BlockingSubscriber slow = new BlockingSubscriber();
+        RecordingSubscriber fast = new RecordingSubscriber();
+        broadcaster.subscribe(Collections.singleton("slow"), slow);
+        broadcaster.subscribe(Collections.singleton("fast"), fast);
+
+        try {
+            broadcaster.publish("slow", "a");
+            assertTrue(slow.awaitEntered());
+            broadcaster.publish("fast", "b");
+
+            assertTrue(fast.await(1));
+            assertEquals(Collections.singletonList("2:b"), fast.getDelivered());
+        }
+        finally {
+            slow.release();
+        }
+    }
+
+    @Test
+    public void testResumeIdDoesNotAcknowledgeMessagesOfOtherGroupsWaitingForFanOut() throws InterruptedException {
+        BlockingSubscriber slow = new BlockingSubscriber();
+        RecordingSubscriber fast = new RecordingSubscriber();
+        broadcaster.subscribe(Collections.singleton("slow"), slow);
+        broadcaster.subscribe(Collections.singleton("fast"), fast);
+
+        broadcaster.publish("slow", "a");
+        assertTrue(slow.awaitEntered());
+        broadcaster.publish("fast", "b");
+        assertTrue(fast.await(1));
+
+        /**
+         * the message 1 is still being fanned out: a client that received the message 2 must get it again
+         */
+        assertEquals(0, broadcaster.getResumeId(2));
+
+        slow.release();
+
+        assertTrue(new RecordingSubscriber().awaitFannedOut(broadcaster));
+        assertEquals(2, broadcaster.getResumeId(2));
+    }
+
+    @Test
+    public void testFullQueueMergesLaterMessagesIntoLastOne() throws InterruptedException {
+        BlockingSubscriber subscriber = new BlockingSubscriber();
+        broadcaster.subscribe(Collections.singleton("g1"), subscriber);
+
+        broadcaster.publish("g1", "e0");
+        assertTrue(subscriber.awaitEntered());
+
+        int count = EventBroadcaster.MAX_QUEUED_MESSAGES + 2;
+
+        for (int i = 1; i <= count; i++) {
+            broadcaster.publish("g1", "e" + i);
+        }
+
+        subscriber.release();
+        assertTrue(subscriber.awaitFannedOut(broadcaster));
+
+        List<String> delivered = subscriber.getDelivered();
+        int max = EventBroadcaster.MAX_QUEUED_MESSAGES;
+
+        assertEquals(max + 1, delivered.size());
+        assertEquals("1:e0", delivered.get(0));
+        assertEquals((max - 1 + 1) + ":e" + (max - 1), delivered.get(max - 1));
+        assertEquals((count + 1) + ":e" + max + " e" + (max + 1) + " e" + (max + 2), delivered.get(max));
+    }
+
+    @Test
+    public void testMergedMessageCarriesUpdatesOnlyIfBothCarryThem() {
+        BroadcastMessage first = new BroadcastMessage("g1", "a b", Collections.singletonMap("x", "1"));
+        BroadcastMessage second = new BroadcastMessage("g1", "b c", Collections.singletonMap("x", "2"));
+        BroadcastMessage third = new BroadcastMessage("g1", "d");
+
+        BroadcastMessage merged = first.merge(second);
+
+        assertEquals("a b c", merged.getEvents());
+        assertEquals(Collections.singletonMap("x", "2"), merged.getUpdates());
+        assertEquals(Collections.emptyMap(), merged.merge(third).getUpdates());
+        assertEquals("a b c d", merged.merge(third).getEvents());
+    }
+
+    /**
+     * A subscriber that records the messages delivered to it.
+     */
+    static private class RecordingSubscriber implements EventSubscriber {
+
+        /**
+         * The delivered messages, as their ID and events separated by a colon.
+         */
+        private final List<String> delivered = new ArrayList<>();
+
+        /**
+         * The thread that delivered the last message.
+         */
+        private volatile Thread thread;
+
+        @Override
+        public void deliver(long id, BroadcastMessage message) {
+            synchronized (this) {
+                delivered.add(id + ":" + message.getEvents());
+                notifyAll();
+            }
+
+            thread = Thread.currentThread();
+        }
+
+        /**
+         * Waits until some messages are delivered.
+         *
+         * @param count the number of awaited messages.
+         * @return true if they were delivered in time.
+         * @throws InterruptedException if the test is interrupted.
+         */
+        synchronized boolean await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+
+            while (delivered.size() < count && System.currentTimeMillis() < deadline) {
+                wait(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+
+            return delivered.size() >= count;
+        }
+
+        /**
+         * Waits until all the messages delivered by a broadcaster are fanned out.
+         *
+         * @param broadcaster the broadcaster.
+         * @return true if they were fanned out in time.
+         * @throws InterruptedException if the test is interrupted.
+         */
+        boolean awaitFannedOut(EventBroadcaster broadcaster) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            long lastId = broadcaster.getLastMessageId();
+
+            while (broadcaster.getResumeId(lastId + 1) <= lastId && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            return broadcaster.getResumeId(lastId + 1) > lastId;
+        }
+
+        /**
+         * Gets the delivered messages.
+         *
+         * @return the delivered messages, as their ID and events separated by a colon.
+         */
+        synchronized List<String> getDelivered() {
+            return new ArrayList<>(delivered);
+        }
+
+        /**
+         * Gets the thread that delivered the last message.
+         *
+         * @return the thread.
+         */
+        Thread getThread() {
+            return this.thread;
+        }
+    }
+
+    /**
+     * A subscriber that records the messages delivered to it, and blocks the delivery of the first one until it is
+     * released.
+     */
+    static private final class BlockingSubscriber extends RecordingSubscriber {
+
+        /**
+         * The latch counted down when the first message is being delivered.
+         */
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        /**
+         * The latch counted down when the delivery may go on.
+         */
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public void deliver(long id, BroadcastMessage message) {
+            super.deliver(id, message);
+            entered.countDown();
+
+            try {
+                released.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Waits until the delivery of the first message is blocked.
+         *
+         * @return true if it was blocked in time.
+         * @throws InterruptedException if the test is interrupted.
+         */
+        boolean awaitEntered() throws InterruptedException {
+            return entered.await(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Lets the deliveries go on.
+         */
+        void release() {
+            released.countDown();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The tests of {@link EventStreamConnection}.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventStreamConnectionTest {
+
+    /**
+     * The output stream of the connection.
+     */
+    private RecordingOutputStream output;
+
+    /**
+     * The asynchronous context of the connection.
+     */
+    private CompletableAsyncContext asyncContext;
+
+    /**
+     * The tested connection, subscribed to the groups "g1" and "g2".
+     */
+    private EventStreamConnection connection;
+
+    @Before
+    public void setUp() {
+        EventStreamHub hub = new EventStreamHub(new EventBroadcaster(new LoopbackBackplane(), 16), 3600);
+        output = new RecordingOutputStream();
+        asyncContext = new CompletableAsyncContext();
+        connection = new EventStreamConnection(
+                asyncContext, output, new LinkedHashSet<>(Arrays.asList("g1", "g2")), hub);
+        output.setWriteListener(connection);
+    }
+
+    @Test
+    public void testDeliveredMessageIsWrittenAsFrame() {
+        connection.deliver(1, new BroadcastMessage("g1", "a b"));
+
+        assertEquals("id: 1\ndata: g1\ndata: a b\n\n", output.takeWritten());
+        assertTrue(connection.isIdle());
+    }
+
+    @Test
+    public void testMessagesOfSameGroupAreCoalescedWhileClientIsSlow() {
+        output.setReady(false);
+        connection.deliver(1, new BroadcastMessage("g1", "a"));
+        connection.deliver(2, new BroadcastMessage("g1", "b a"));
+        connection.deliver(3, new BroadcastMessage("g1", "c"));
+        assertFalse(connection.isIdle());
+
+        output.setReady(true);
+
+        assertEquals("id: 3\ndata: g1\ndata: a b c\n\n", output.takeWritten());
+        assertTrue(connection.isIdle());
+    }
+
+    @Test
+    public void testCoalescedMessagesAreWrittenInOrderOfFirstMessage() {
+        output.setReady(false);
+        connection.deliver(1, new BroadcastMessage("g2", "x"));
+        connection.deliver(2, new BroadcastMessage("g1", "a"));
+        connection.deliver(3, new BroadcastMessage("g2", "y"));
+
+        output.setReady(true);
+
+        assertEquals("id: 1\ndata: g2\ndata: x y\n\n" + "id: 2\ndata: g1\ndata: a\n\n", output.takeWritten());
+    }
+
+    @Test
+    public void testResumeIdDoesNotAcknowledgeMessagesStillPending() {
+        output.setReady(false);
+        connection.deliver(1, new BroadcastMessage("g1", "a"));
+        connection.deliver(2, new BroadcastMessage("g2", "x"));
+        connection.deliver(3, new BroadcastMessage("g1", "b"));
+
+        output.setReady(true);
+
+        /**
+         * the frame of g1 carries the message 3, but the message 2 of g2 is still pending when it is written: a client
+         * resuming from its ID must get the message 2 again
+         */
+        assertEquals("id: 1\ndata: g1\ndata: a b\n\n" + "id: 2\ndata: g2\ndata: x\n\n", output.takeWritten());
+    }
+
+    @Test
+    public void testCoalescedUpdatesAreMergedByClientId() {
+        Map<String, String> first = new LinkedHashMap<>();
+        first.put("a", "1");
+        first.put("b", "2");
+        Map<String, String> second = Collections.singletonMap("a", "3");
+
+        output.setReady(false);
+        connection.deliver(1, new BroadcastMessage("g1", "e", first));
+        connection.deliver(2, new BroadcastMessage("g1", "f", second));
+        output.setReady(true);
+
+        assertEquals("id: 2\ndata: g1\ndata: e f\ndata: {\"a\":\"3\",\"b\":\"2\"}\n\n", output.takeWritten());
+    }
+
+    @Test
+    public void testCoalescedMessageWithoutUpdatesDropsUpdates() {
+        output.setReady(false);
+        connection.deliver(1, new BroadcastMessage("g1", "e", Collections.singletonMap("a", "1")));
+        connection.deliver(2, new BroadcastMessage("g1", "f"));
+        output.setReady(true);
+
+        /**
+         * the client renders the components itself, since the markup does not reflect the second message
+         */
+        assertEquals("id: 2\ndata: g1\ndata: e f\n\n", output.takeWritten());
+    }
+
+    @Test
+    public void testCoalescedMessageWithUpdatesAfterOneWithoutKeepsNoUpdates() {
+        output.setReady(false);
+        connection.deliver(1, new BroadcastMessage("g1", "e"));
+        connection.deliver(2, new BroadcastMessage("g1", "f", Collections.singletonMap("a", "1")));
+        output.setReady(true);
+
+        /**
+         * the markup of the second message does not reflect the first one
+         */
+        assertEquals("id: 2\ndata: g1\ndata: e f\n\n", output.takeWritten());
+    }
+
+    @Test
+    public void testMessagesMergedAfterFrameWasWrittenStartNewFrame() {
+        connection.deliver(1, new BroadcastMessage("g1", "a"));
+        output.setReady(false);
+        connection.deliver(2, new BroadcastMessage("g1", "b"));
+        connection.deliver(3, new BroadcastMessage("g1", "a"));
+        output.setReady(true);
+
+        assertEquals("id: 1\ndata: g1\ndata: a\n\n" + "id: 3\ndata: g1\ndata: b a\n\n", output.takeWritten());
+    }
+
+    @Test
+    public void testMessagesDeliveredWhileResumingAreWrittenOnceInOrder() {
+        BroadcastMessage message = new BroadcastMessage("g1", "a");
+
+        connection.startResuming(1);
+        connection.deliver(1, message);
+        connection.deliver(3, message);
+        connection.deliver(4, message);
+        connection.replay(2, message);
+        connection.replay(3, message);
+
+        /**
+         * the replayed messages are written first, the live ones once the connection is resumed
+         */
+        assertEquals("id: 2\ndata: g1\ndata: a\n\n" + "id: 3\ndata: g1\ndata: a\n\n", output.takeWritten());
+
+        connection.endResuming(3);
+        assertEquals("id: 4\ndata: g1\ndata: a\n\n", output.takeWritten());
+
+        /**
+         * the fan-out of the replayed messages may deliver them again once the connection is resumed
+         */
+        connection.deliver(3, message);
+        connection.deliver(5, message);
+        assertEquals("id: 5\ndata: g1\ndata: a\n\n", output.takeWritten());
+    }
+
+    @Test
+    public void testControlFramesAreWrittenFirstAndBounded() {
+        output.setReady(false);
+        connection.deliver(1, new BroadcastMessage("g1", "a"));
+
+        for (int i = 0; i < 10; i++) {
+            connection.sendControlFrame(":\n\n");
+        }
+
+        output.setReady(true);
+
+        assertEquals(":\n\n:\n\n:\n\n:\n\n" + "id: 1\ndata: g1\ndata: a\n\n", output.takeWritten());
+    }
+
+    @Test
+    public void testClosedConnectionWritesNothing() {
+        connection.close();
+        connection.deliver(1, new BroadcastMessage("g1", "a"));
+
+        assertTrue(asyncContext.isCompleted());
+        assertEquals("", output.takeWritten());
+    }
+}
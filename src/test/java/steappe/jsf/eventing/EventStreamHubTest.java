@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.OptionalLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The tests of the resumption of the event streams by {@link EventStreamHub}.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class EventStreamHubTest {
+
+    /**
+     * The frame sent first on every connection.
+     */
+    static private final String RETRY_FRAME = "retry: 3000\n\n";
+
+    /**
+     * The maximum time to wait for the fan-out of the messages, in milliseconds.
+     */
+    static private final long TIMEOUT = 5000;
+
+    /**
+     * The broadcaster of the hub.
+     */
+    private EventBroadcaster broadcaster;
+
+    /**
+     * The tested hub.
+     */
+    private EventStreamHub hub;
+
+    /**
+     * The output stream of the connection.
+     */
+    private RecordingOutputStream output;
+
+    /**
+     * The connection, subscribed to the group "g1".
+     */
+    private EventStreamConnection connection;
+
+    @Before
+    public void setUp() {
+        broadcaster = new EventBroadcaster(new LoopbackBackplane(), 4);
+        hub = new EventStreamHub(broadcaster, 3600);
+        output = new RecordingOutputStream();
+        connection = new EventStreamConnection(
+                new CompletableAsyncContext(), output, Collections.singleton("g1"), hub);
+        output.setWriteListener(connection);
+    }
+
+    @After
+    public void tearDown() {
+        broadcaster.stop();
+    }
+
+    /**
+     * Asserts the text written to the connection, once the messages are fanned out.
+     *
+     * @param expected the expected text.
+     * @throws InterruptedException if the test is interrupted.
+     */
+    private void assertWritten(String expected) throws InterruptedException {
+        assertEquals(expected, output.awaitWritten(expected.getBytes(StandardCharsets.UTF_8).length, TIMEOUT));
+    }
+
+    @Test
+    public void testNewConnectionOnlyReceivesLaterMessages() throws InterruptedException {
+        broadcaster.publish("g1", "a");
+        hub.subscribe(connection, OptionalLong.empty());
+        broadcaster.publish("g1", "b");
+
+        assertWritten(RETRY_FRAME + "id: 2\ndata: g1\ndata: b\n\n");
+    }
+
+    @Test
+    public void testResumedConnectionReceivesMissedMessagesOfItsGroups() throws InterruptedException {
+        broadcaster.publish("g1", "a");
+        broadcaster.publish("g2", "x");
+        broadcaster.publish("g1", "b");
+        broadcaster.publish("g1", "c");
+        hub.subscribe(connection, OptionalLong.of(1));
+
+        assertWritten(RETRY_FRAME + "id: 3\ndata: g1\ndata: b\n\n" + "id: 4\ndata: g1\ndata: c\n\n");
+    }
+
+    @Test
+    public void testResumedConnectionReceivesLaterMessagesOnce() throws InterruptedException {
+        broadcaster.publish("g1", "a");
+        broadcaster.publish("g1", "b");
+        hub.subscribe(connection, OptionalLong.of(1));
+        broadcaster.publish("g1", "c");
+
+        /**
+         * the message 2 may be both replayed and fanned out after the subscription
+         */
+        assertWritten(RETRY_FRAME + "id: 2\ndata: g1\ndata: b\n\n" + "id: 3\ndata: g1\ndata: c\n\n");
+        assertEquals("", output.awaitWritten(1, 100));
+    }
+
+    @Test
+    public void testResumedConnectionOnlyReceivesMessagesStillInHistory() throws InterruptedException {
+        for (int i = 1; i <= 6; i++) {
+            broadcaster.publish("g1", "e" + i);
+        }
+
+        hub.subscribe(connection, OptionalLong.of(0));
+
+        /**
+         * the history keeps the last 4 messages only
+         */
+        assertWritten(RETRY_FRAME + "id: 3\ndata: g1\ndata: e3\n\n" + "id: 4\ndata: g1\ndata: e4\n\n"
+                + "id: 5\ndata: g1\ndata: e5\n\n" + "id: 6\ndata: g1\ndata: e6\n\n");
+    }
+}
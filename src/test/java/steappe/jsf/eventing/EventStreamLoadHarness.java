@@ -0,0 +1,379 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * A local load test of the event stream servlet: it opens many idle event streams against an embedded Jetty, whose
+ * thread pool is much smaller than the number of connections, and reports the threads and the heap used by the JVM.
+ * <p>
+ * All the clients are handled by a single selector thread of the harness, so that the reported threads are the ones
+ * of the container and of the eventing framework. Once all the streams are open, an event is published and the
+ * harness waits until every client received it. The numbers also include the memory of the client side of the
+ * sockets, which lives in the same JVM.
+ * <p>
+ * It is not run by the build; run it after resolving the test dependencies, e.g. with 10,000 connections and a pool
+ * of 50 threads (the limit of open files of the shell must allow twice the number of connections):
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test.classpath
+ * ulimit -n 65536
+ * java -cp target/classes:target/test-classes:$(cat target/test.classpath) \
+ *     steappe.jsf.eventing.EventStreamLoadHarness 10000 50
+ * </pre>
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public final class EventStreamLoadHarness {
+
+    /**
+     * The default number of connections.
+     */
+    static private final int DEFAULT_CONNECTIONS = 5000;
+
+    /**
+     * The default maximum number of threads of the container.
+     */
+    static private final int DEFAULT_CONTAINER_THREADS = 50;
+
+    /**
+     * The maximum number of connections being established at the same time.
+     */
+    static private final int MAX_PENDING_CONNECTS = 256;
+
+    /**
+     * The delay, in milliseconds, after which a phase of the test fails.
+     */
+    static private final long PHASE_TIMEOUT = 120000;
+
+    /**
+     * The group of events subscribed by the clients.
+     */
+    static private final String GROUP = "load";
+
+    /**
+     * The request that opens an event stream.
+     */
+    static private final byte[] REQUEST = ("GET " + EventStreamServlet.URL_PATTERN + "?groups=" + GROUP + " HTTP/1.1\r\n"
+            + "Host: localhost\r\nAccept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * This class is not instantiable.
+     */
+    private EventStreamLoadHarness() {
+    }
+
+    /**
+     * The authorizer of the harness, which accepts every subscription.
+     */
+    public static final class OpenAuthorizer implements EventStreamAuthorizer {
+
+        @Override
+        public boolean isAuthorized(HttpServletRequest request, String group) {
+            return true;
+        }
+    }
+
+    /**
+     * The client side of an event stream.
+     */
+    static private final class Client {
+
+        /**
+         * The text received after the last recognized marker, kept to find the markers split between two reads.
+         */
+        private String tail = "";
+
+        /**
+         * Whether the connection is established.
+         */
+        private boolean connected;
+
+        /**
+         * Whether the stream is open: its retry frame was received.
+         */
+        private boolean open;
+
+        /**
+         * Whether the published event was received.
+         */
+        private boolean received;
+
+        /**
+         * Reads the text received on the stream.
+         *
+         * @param text the received text.
+         */
+        private void read(String text) {
+            String unread = tail + text;
+            open = open || unread.contains("retry: ");
+            received = received || unread.contains("data: " + GROUP);
+            tail = unread.substring(Math.max(0, unread.length() - 16));
+        }
+    }
+
+    /**
+     * The clients of the harness, multiplexed on a single selector.
+     */
+    static private final class Clients {
+
+        /**
+         * The selector of the sockets of the clients.
+         */
+        private final Selector selector;
+
+        /**
+         * The address of the container.
+         */
+        private final InetSocketAddress address;
+
+        /**
+         * The buffer of the reads.
+         */
+        private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+        /**
+         * The clients.
+         */
+        private final List<Client> clients = new ArrayList<>();
+
+        /**
+         * The number of connections being established.
+         */
+        private int pendingConnects;
+
+        /**
+         * The number of clients whose connection failed.
+         */
+        private int failed;
+
+        /**
+         * Constructs the clients.
+         *
+         * @param address the address of the container.
+         * @throws IOException if the selector cannot be opened.
+         */
+        private Clients(InetSocketAddress address) throws IOException {
+            this.selector = Selector.open();
+            this.address = address;
+        }
+
+        /**
+         * Opens event streams, a limited number of connections being established at the same time.
+         *
+         * @param count the number of event streams to open.
+         * @throws IOException if a socket cannot be opened.
+         */
+        private void open(int count) throws IOException {
+            long deadline = System.currentTimeMillis() + PHASE_TIMEOUT;
+
+            while (clients.size() < count && System.currentTimeMillis() < deadline) {
+                while (pendingConnects < MAX_PENDING_CONNECTS && clients.size() < count) {
+                    SocketChannel channel = SocketChannel.open();
+                    channel.configureBlocking(false);
+                    channel.connect(address);
+                    Client client = new Client();
+                    channel.register(selector, SelectionKey.OP_CONNECT, client);
+                    clients.add(client);
+                    pendingConnects++;
+                }
+
+                select();
+            }
+
+            await(client -> client.open, "open");
+        }
+
+        /**
+         * Waits until every client satisfies a condition, or the phase times out.
+         *
+         * @param condition the condition.
+         * @param phase the name of the phase, reported if it times out.
+         * @throws IOException if a socket cannot be read.
+         */
+        private void await(Predicate<Client> condition, String phase) throws IOException {
+            long deadline = System.currentTimeMillis() + PHASE_TIMEOUT;
+
+            while (clients.stream().filter(condition).count() + failed < clients.size()) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("timed out: " + phase);
+                }
+
+                select();
+            }
+        }
+
+        /**
+         * Handles the ready sockets.
+         *
+         * @throws IOException if the selector failed.
+         */
+        private void select() throws IOException {
+            selector.select(100);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                SocketChannel channel = (SocketChannel) key.channel();
+                Client client = (Client) key.attachment();
+
+                try {
+                    if (key.isConnectable() && channel.finishConnect()) {
+                        client.connected = true;
+                        pendingConnects--;
+                        channel.write(ByteBuffer.wrap(REQUEST));
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                    else if (key.isReadable()) {
+                        buffer.clear();
+
+                        if (channel.read(buffer) < 0) {
+                            throw new IOException("connection closed by the container");
+                        }
+
+                        buffer.flip();
+                        client.read(StandardCharsets.ISO_8859_1.decode(buffer).toString());
+                    }
+                }
+                catch (IOException e) {
+                    pendingConnects -= client.connected ? 0 : 1;
+                    failed++;
+                    key.cancel();
+                    channel.close();
+                }
+            }
+        }
+
+        /**
+         * Closes all the sockets.
+         *
+         * @throws IOException if the selector cannot be closed.
+         */
+        private void close() throws IOException {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+
+            selector.close();
+        }
+    }
+
+    /**
+     * Gets the used heap, after a garbage collection.
+     *
+     * @param memory the memory bean of the JVM.
+     * @return the used heap, in bytes.
+     */
+    static private long usedHeap(MemoryMXBean memory) {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Runs the load test, and prints the threads and the heap used with all the event streams open.
+     *
+     * @param args the optional number of connections, and the optional maximum number of threads of the container.
+     * @throws Exception if the container failed.
+     */
+    static public void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CONNECTIONS;
+        int containerThreads = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CONTAINER_THREADS;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        QueuedThreadPool threadPool = new QueuedThreadPool(containerThreads, Math.min(8, containerThreads));
+        Server server = new Server(threadPool);
+        ServerConnector connector = new ServerConnector(server);
+        connector.setPort(0);
+        connector.setAcceptQueueSize(MAX_PENDING_CONNECTS);
+        server.addConnector(connector);
+
+        ServletContextHandler handler = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        handler.setContextPath("/");
+        handler.setInitParameter(ContextParameter.EVENT_STREAM.getName(), "true");
+        handler.setInitParameter(ContextParameter.EVENT_STREAM_AUTHORIZER.getName(), OpenAuthorizer.class.getName());
+        ServletHolder holder = new ServletHolder(new EventStreamServlet());
+        holder.setAsyncSupported(true);
+        holder.setInitOrder(1);
+        handler.addServlet(holder, EventStreamServlet.URL_PATTERN);
+        server.setHandler(handler);
+        server.start();
+
+        ServletContext servletContext = handler.getServletContext();
+        Clients clients = new Clients(new InetSocketAddress("localhost", connector.getLocalPort()));
+
+        try {
+            int threadsBefore = threads.getThreadCount();
+            long heapBefore = usedHeap(memory);
+            long start = System.nanoTime();
+
+            clients.open(connections);
+
+            long opened = (System.nanoTime() - start) / 1000000;
+            int threadsOpen = threads.getThreadCount();
+            long heapOpen = usedHeap(memory);
+            int open = connections - clients.failed;
+
+            System.out.printf("%d event streams open in %d ms (%d failed)%n", open, opened, clients.failed);
+            System.out.printf("threads: %d before, %d with the streams open (container pool: %d max, %d busy)%n",
+                    threadsBefore, threadsOpen, threadPool.getMaxThreads(), threadPool.getBusyThreads());
+            System.out.printf("heap: %d KB before, %d KB with the streams open (%d bytes per stream, both sides)%n",
+                    heapBefore / 1024, heapOpen / 1024, open > 0 ? (heapOpen - heapBefore) / open : 0);
+
+            start = System.nanoTime();
+            EventBroadcaster.getInstance(servletContext).publish(GROUP, "tick");
+            clients.await(client -> client.received, "publish");
+
+            System.out.printf("event received by all the open streams in %d ms%n",
+                    (System.nanoTime() - start) / 1000000);
+        }
+        finally {
+            clients.close();
+            server.stop();
+            EventBroadcaster.destroy(servletContext);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The tests of {@link Json}.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class JsonTest {
+
+    /**
+     * Serializes a value.
+     *
+     * @param value the value.
+     * @return the JSON document.
+     */
+    static private String toJson(Object value) {
+        StringBuilder builder = new StringBuilder();
+        Json.appendValue(builder, value);
+        return builder.toString();
+    }
+
+    /**
+     * Asserts that a value cannot be serialized.
+     *
+     * @param value the value.
+     * @param message the expected start of the message of the exception.
+     */
+    static private void assertRejected(Object value, String message) {
+        try {
+            toJson(value);
+            fail("the value was serialized");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+
+    @Test
+    public void testStringsEscapeQuotesAndBackslashes() {
+        assertEquals("\"a\\\"b\\\\c'd\"", toJson("a\"b\\c'd"));
+    }
+
+    @Test
+    public void testStringsEscapeMarkupCharacters() {
+        assertEquals("\"\\u003c/script\\u003e \\u0026amp;\"", toJson("</script> &amp;"));
+    }
+
+    @Test
+    public void testStringsEscapeControlCharacters() {
+        assertEquals("\"a\\u000ab\\u0000c\\u001f\\u0009\"", toJson("a\nb\u0000c\u001f\t"));
+    }
+
+    @Test
+    public void testNonFiniteNumbersAreNull() {
+        assertEquals("[null,null,null,1.5]",
+                toJson(Arrays.asList(Double.NaN, Double.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, 1.5)));
+    }
+
+    @Test
+    public void testBigDecimalsAreWrittenWithoutExponent() {
+        assertEquals("[1000,0.00000123,-12.50]", toJson(Arrays.asList(
+                new BigDecimal("1E+3"), new BigDecimal("1.23E-6"), new BigDecimal("-12.50"))));
+    }
+
+    @Test
+    public void testMapsCollectionsArraysAndBeans() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("list", Collections.emptyList());
+        map.put("array", new int[] {1, 2});
+        map.put("bean", new Node("n"));
+        map.put("none", null);
+
+        assertEquals("{\"list\":[],\"array\":[1,2],\"bean\":{\"children\":[],\"name\":\"n\",\"parent\":null},"
+                + "\"none\":null}", toJson(map));
+    }
+
+    @Test
+    public void testSharedValueIsNotCyclic() {
+        Node shared = new Node("s");
+
+        assertEquals("[{\"children\":[],\"name\":\"s\",\"parent\":null},{\"children\":[],\"name\":\"s\",\"parent\":null}]",
+                toJson(Arrays.asList(shared, shared)));
+    }
+
+    @Test
+    public void testBidirectionalBeansAreRejectedAsCyclic() {
+        Node parent = new Node("parent");
+
+        /**
+         * each child refers to its parent, which lists all the children: the expansion would grow exponentially
+         */
+        for (int i = 0; i < 20; i++) {
+            Node child = new Node("child" + i);
+            child.setParent(parent);
+            parent.getChildren().add(child);
+        }
+
+        assertRejected(parent, "the value is cyclic");
+    }
+
+    @Test
+    public void testSelfContainingMapIsRejectedAsCyclic() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("self", map);
+
+        assertRejected(map, "the value is cyclic");
+    }
+
+    @Test
+    public void testTooDeepValueIsRejected() {
+        List<Object> root = new ArrayList<>();
+        List<Object> list = root;
+
+        for (int i = 0; i < 40; i++) {
+            List<Object> nested = new ArrayList<>();
+            list.add(nested);
+            list = nested;
+        }
+
+        assertRejected(root, "the value is too deep");
+    }
+
+    /**
+     * A JavaBean of a tree, whose nodes refer to their parent.
+     */
+    static public final class Node {
+
+        /**
+         * The name of the node.
+         */
+        private final String name;
+
+        /**
+         * The children of the node.
+         */
+        private final List<Node> children = new ArrayList<>();
+
+        /**
+         * The parent of the node, or null if it is the root.
+         */
+        private Node parent;
+
+        /**
+         * Constructs a node.
+         *
+         * @param name the name of the node.
+         */
+        Node(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public List<Node> getChildren() {
+            return this.children;
+        }
+
+        public Node getParent() {
+            return this.parent;
+        }
+
+        public void setParent(Node parent) {
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/**
+ * An output stream of a response, which records the bytes written to it, and whose readiness is controlled by the
+ * tests to simulate a slow client.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+class RecordingOutputStream extends ServletOutputStream {
+
+    /**
+     * The written bytes.
+     */
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+    /**
+     * Whether the stream accepts writes.
+     */
+    private volatile boolean ready = true;
+
+    /**
+     * The listener called back when the stream can be written again, or null if none.
+     */
+    private WriteListener writeListener;
+
+    /**
+     * Sets whether the stream accepts writes; when it accepts writes again, the write listener is called back, like a
+     * container does.
+     *
+     * @param ready true if the stream accepts writes.
+     */
+    void setReady(boolean ready) {
+        this.ready = ready;
+
+        if (ready && writeListener != null) {
+            try {
+                writeListener.onWritePossible();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Gets the text written to this stream, and forgets it.
+     *
+     * @return the written text.
+     */
+    synchronized String takeWritten() {
+        String text = new String(written.toByteArray(), StandardCharsets.UTF_8);
+        written.reset();
+        return text;
+    }
+
+    /**
+     * Waits until some text is written to this stream by another thread, then gets the text written to this stream
+     * and forgets it.
+     *
+     * @param length the length of the awaited text, in bytes.
+     * @param timeout the maximum time to wait, in milliseconds.
+     * @return the written text, possibly shorter than awaited if the time elapsed.
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    synchronized String awaitWritten(int length, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        while (written.size() < length && System.currentTimeMillis() < deadline) {
+            wait(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+
+        return takeWritten();
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        if (!ready) {
+            throw new IllegalStateException("not ready");
+        }
+
+        written.write(b);
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        if (!ready) {
+            throw new IllegalStateException("not ready");
+        }
+
+        written.write(b, off, len);
+        notifyAll();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reproducible measurement of the throughput of {@link ScriptWriter}, compared to the former rendering of the event
+ * observers, which appended the raw values between quotes directly to the response writer.
+ * <p>
+ * Each iteration renders the registrations of an event observer that observes 4 events, to a print writer over a UTF-8
+ * stream, like a response writer. It is not run by the build; run it after compiling the test sources with:
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes steappe.jsf.eventing.ScriptWriterBenchmark [iterations]
+ * </pre>
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public final class ScriptWriterBenchmark {
+
+    /**
+     * The default number of iterations of a measured round.
+     */
+    static private final int DEFAULT_ITERATIONS = 500000;
+
+    /**
+     * The number of rounds, the first ones warming up the JIT compiler.
+     */
+    static private final int ROUNDS = 5;
+
+    /**
+     * The number of events observed by the rendered event observer.
+     */
+    static private final int EVENTS = 4;
+
+    /**
+     * The output stream is reset every time this number of iterations is written, so that it does not grow.
+     */
+    static private final int RESET_INTERVAL = 1024;
+
+    /**
+     * This class is not instantiable.
+     */
+    private ScriptWriterBenchmark() {
+    }
+
+    /**
+     * Renders the registrations the way the former code did: the raw values are appended between quotes, piece by
+     * piece, to the response writer.
+     *
+     * @param writer the response writer.
+     * @throws IOException if an I/O error occurred.
+     */
+    static private void renderAppended(Writer writer) throws IOException {
+        writer.append('\n');
+
+        for (int i = 0; i < EVENTS; i++) {
+            writer.append("steappe.eventing.register(");
+            writer.append('\'').append("form:list:observer").append('\'').append(',');
+            writer.append('\'').append("global").append('\'').append(',');
+            writer.append('\'').append("item-selected").append('\'').append(',');
+            writer.append('\'').append("form:list:observer form:detail").append('\'').append(',');
+            writer.append('\'').append("form:detail form:summary").append('\'').append(',');
+            writer.append('{').append("supersede:true,cacheTtl:30").append('}');
+            writer.append(");");
+        }
+    }
+
+    /**
+     * Renders the registrations the way the event observer renderer does: the values are escaped into a script
+     * writer, which is written to the response writer in a single chunk.
+     *
+     * @param writer the response writer.
+     * @throws IOException if an I/O error occurred.
+     */
+    static private void renderScript(Writer writer) throws IOException {
+        ScriptWriter script = new ScriptWriter(256 * EVENTS + 1);
+        script.append('\n');
+
+        for (int i = 0; i < EVENTS; i++) {
+            ScriptWriter options = new ScriptWriter(64);
+            options.append("supersede:").append("true").comma().append("cacheTtl:").append("30");
+
+            script.append("steappe.eventing.register(");
+            script.string("form:list:observer").comma();
+            script.name("global").comma();
+            script.name("item-selected").comma();
+            script.string("form:list:observer form:detail").comma();
+            script.string("form:detail form:summary").comma();
+            script.append('{').append(options.toString()).append('}');
+            script.append(");");
+        }
+
+        script.writeTo(writer);
+    }
+
+    /**
+     * A rendering measured by this benchmark.
+     */
+    @FunctionalInterface
+    private static interface Rendering {
+
+        /**
+         * Renders the registrations of the event observer.
+         *
+         * @param writer the response writer.
+         * @throws IOException if an I/O error occurred.
+         */
+        void render(Writer writer) throws IOException;
+    }
+
+    /**
+     * Measures a rendering.
+     *
+     * @param rendering the rendering.
+     * @param iterations the number of iterations.
+     * @return the elapsed time, in milliseconds.
+     * @throws IOException if an I/O error occurred.
+     */
+    static private long measure(Rendering rendering, int iterations) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(1 << 20);
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            rendering.render(writer);
+
+            if (i % RESET_INTERVAL == 0) {
+                writer.flush();
+                output.reset();
+            }
+        }
+
+        writer.flush();
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * Runs the benchmark, and prints the elapsed time of each rendering per round.
+     *
+     * @param args the optional number of iterations of a round.
+     * @throws IOException if an I/O error occurred.
+     */
+    static public void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long appended = measure(ScriptWriterBenchmark::renderAppended, iterations);
+            long script = measure(ScriptWriterBenchmark::renderScript, iterations);
+            System.out.printf("round %d: appended %d ms, script writer %d ms (%d iterations)%n",
+                    round, appended, script, iterations);
+        }
+    }
+}
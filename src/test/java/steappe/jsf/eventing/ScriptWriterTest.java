@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Steappe Open Source.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package steappe.jsf.eventing;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The tests of {@link ScriptWriter}.
+ *
+ * @author Stéphane Appercel - creation.
+ */
+public class ScriptWriterTest {
+
+    /**
+     * Gets the literal of a value appended by a script writer.
+     *
+     * @param value the value.
+     * @return the literal.
+     */
+    static private String string(String value) {
+        return new ScriptWriter(16).string(value).toString();
+    }
+
+    @Test
+    public void testQuotesAndBackslashesAreEscaped() {
+        assertEquals("'it\\'s \\\"a\\\" c:\\\\dir'", string("it's \"a\" c:\\dir"));
+    }
+
+    @Test
+    public void testMarkupCharactersAreEscaped() {
+        assertEquals("'\\u003c/script\\u003e\\u003c!--x--\\u003e a\\u0026amp;b'", string("</script><!--x--> a&amp;b"));
+    }
+
+    @Test
+    public void testLineTerminatorsAreEscaped() {
+        assertEquals("'a\\u2028b\\u2029c'", string("a\u2028b\u2029c"));
+    }
+
+    @Test
+    public void testControlCharactersAreEscaped() {
+        assertEquals("'\\u0000\\u0009\\u000a\\u000d\\u001f '", string("\u0000\t\n\r\u001f "));
+    }
+
+    @Test
+    public void testPlainValueIsQuoted() {
+        assertEquals("''", string(""));
+        assertEquals("'form:list \u00e9t\u00e9'", string("form:list \u00e9t\u00e9"));
+    }
+
+    @Test
+    public void testNamesAreEscapedLikeStrings() {
+        String value = "name-test-</script>'\u2028";
+
+        assertEquals(string(value), new ScriptWriter(16).name(value).toString());
+    }
+
+    @Test
+    public void testCodeIsAppendedAsIsAndWrittenInOneChunk() throws IOException {
+        ScriptWriter script = new ScriptWriter(16);
+        assertTrue(script.isEmpty());
+
+        script.append("f(").string("<a>").comma().append('1').append(");");
+        assertFalse(script.isEmpty());
+
+        StringWriter writer = new StringWriter();
+        script.writeTo(writer);
+        assertEquals("f('\\u003ca\\u003e',1);", writer.toString());
+    }
+
+    @Test
+    public void testLiteralCacheIsBounded() {
+        String cached = ScriptWriter.literal("cache-test-cached");
+        assertSame(cached, ScriptWriter.literal("cache-test-cached"));
+
+        for (int i = 0; i <= ScriptWriter.MAX_CACHED_LITERALS; i++) {
+            ScriptWriter.literal("cache-test-" + i);
+        }
+
+        assertEquals(ScriptWriter.MAX_CACHED_LITERALS, ScriptWriter.getCachedLiterals());
+
+        String uncached = "cache-test-<uncached>";
+        assertEquals("'cache-test-\\u003cuncached\\u003e'", ScriptWriter.literal(uncached));
+        assertEquals(ScriptWriter.MAX_CACHED_LITERALS, ScriptWriter.getCachedLiterals());
+        assertSame(cached, ScriptWriter.literal("cache-test-cached"));
+    }
+}